@@ -694,8 +694,9 @@ public final class Skript extends JavaPlugin implements Listener {
 									// Don't attempt to run inner/anonymous classes as tests
 									classes.removeIf(Class::isAnonymousClass);
 									classes.removeIf(Class::isLocalClass);
-									// Test that requires package access. This is only present when compiling with src/test.
+									// Tests that require package access. These are only present when compiling with src/test.
 									classes.add(Class.forName("ch.njol.skript.variables.FlatFileStorageTest"));
+									classes.add(Class.forName("ch.njol.skript.variables.ParallelDeserializerTest"));
 									size = classes.size();
 									for (Class<?> clazz : classes) {
 										// Reset class SkriptJUnitTest which stores test requirements.
@@ -745,7 +746,7 @@ public final class Skript extends JavaPlugin implements Listener {
 									Skript.exception(e, "Failed to execute JUnit runtime tests.");
 								} catch (ClassNotFoundException e) {
 									// Should be the Skript test jar gradle task.
-									assert false : "Class 'ch.njol.skript.variables.FlatFileStorageTest' was not found.";
+									assert false : "Class '" + e.getMessage() + "' was not found.";
 								} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException e) {
 									Skript.exception(e, "Failed to initalize test JUnit classes.");
 								}
@@ -22,6 +22,7 @@ import ch.njol.skript.aliases.Aliases;
 import ch.njol.skript.command.CommandHelp;
 import ch.njol.skript.doc.Documentation;
 import ch.njol.skript.doc.HTMLGenerator;
+import ch.njol.skript.events.PeriodicalScheduler;
 import ch.njol.skript.localization.ArgsMessage;
 import ch.njol.skript.localization.Language;
 import ch.njol.skript.localization.PluralizingArgsMessage;
@@ -33,6 +34,8 @@ import ch.njol.skript.test.runner.TestTracker;
 import ch.njol.skript.util.ExceptionUtils;
 import ch.njol.skript.util.FileUtils;
 import ch.njol.skript.util.SkriptColor;
+import ch.njol.skript.variables.VariableStatistics;
+import ch.njol.skript.variables.VariablesStorage;
 import ch.njol.util.OpenCloseable;
 import ch.njol.util.StringUtils;
 import org.bukkit.Bukkit;
@@ -51,6 +54,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -79,6 +83,10 @@ public class SkriptCommand implements CommandExecutor {
 			.add("changes")
 			.add("download")
 		).add("info"
+		).add(new CommandHelp("variables", SkriptColor.DARK_CYAN)
+			.add("stats")
+		).add("periodicals"
+		).add("events"
 		).add("help");
 
 	static {
@@ -399,6 +407,19 @@ public class SkriptCommand implements CommandExecutor {
 
 			}
 
+			else if (args[0].equalsIgnoreCase("variables")) {
+				if (args[1].equalsIgnoreCase("stats"))
+					variableStatistics(sender, args.length > 2 ? args[2] : null);
+			}
+
+			else if (args[0].equalsIgnoreCase("periodicals")) {
+				periodicalStatistics(sender);
+			}
+
+			else if (args[0].equalsIgnoreCase("events")) {
+				eventStatistics(sender);
+			}
+
 			else if (args[0].equalsIgnoreCase("gen-docs")) {
 				File templateDir = Documentation.getDocsTemplateDirectory();
 				if (!templateDir.exists()) {
@@ -462,6 +483,67 @@ public class SkriptCommand implements CommandExecutor {
 		return true;
 	}
 	
+	/**
+	 * The amount of prefixes shown by '/skript variables stats' unless another amount is given.
+	 */
+	private static final int DEFAULT_HOT_PREFIXES = 10;
+
+	private static void variableStatistics(CommandSender sender, @Nullable String amountArgument) {
+		int amount = DEFAULT_HOT_PREFIXES;
+		if (amountArgument != null) {
+			try {
+				amount = Math.max(1, Integer.parseInt(amountArgument));
+			} catch (NumberFormatException e) {
+				error(sender, "variables.not a number", amountArgument);
+				return;
+			}
+		}
+
+		info(sender, "variables.queues", VariableStatistics.getQueuedChanges(), VariableStatistics.getChangeQueueLag(),
+			VariableStatistics.getQueuedSaves(), VariableStatistics.getSaveQueueLag());
+		for (Map.Entry<String, VariablesStorage> entry : VariableStatistics.getStorages().entrySet()) {
+			VariablesStorage storage = entry.getValue();
+			info(sender, "variables.storage", entry.getKey(), storage.getQueuedChanges(), storage.getQueueLag(),
+				storage.getSavedChanges(), storage.getSaveTime(), storage.getLastSaveLag(), storage.getMaxSaveLag());
+		}
+
+		if (!VariableStatistics.isEnabled()) {
+			info(sender, "variables.disabled");
+			return;
+		}
+		List<VariableStatistics.PrefixStatistics> prefixes = VariableStatistics.getTopPrefixes(amount);
+		info(sender, "variables.top prefixes", prefixes.size());
+		for (VariableStatistics.PrefixStatistics prefix : prefixes) {
+			info(sender, "variables.prefix", prefix.getPrefix(), prefix.getReads(), prefix.getWrites(),
+				prefix.getDeletes(), prefix.getSavedBytes());
+		}
+	}
+
+	/**
+	 * The amount of triggers shown by '/skript periodicals'.
+	 */
+	private static final int SHOWN_PERIODICAL_TRIGGERS = 10;
+
+	private static void periodicalStatistics(CommandSender sender) {
+		List<PeriodicalScheduler.TriggerStatistics> triggers = PeriodicalScheduler.getTopTriggers(SHOWN_PERIODICAL_TRIGGERS);
+		info(sender, "periodicals.tasks", PeriodicalScheduler.getScheduledTasks(), triggers.size());
+		for (PeriodicalScheduler.TriggerStatistics trigger : triggers) {
+			info(sender, "periodicals.trigger", trigger.getTrigger().getDebugLabel(), trigger.getTrigger().getEvent().toString(null, false),
+				trigger.getRuns(), trigger.getTotalTime() / 1000000. / Math.max(1, trigger.getRuns()),
+				trigger.getMaxTime() / 1000000., trigger.getOverruns());
+		}
+		if (SkriptConfig.periodicalEventBudget.value().getMilliSeconds() <= 0)
+			info(sender, "periodicals.no budget");
+	}
+
+	private static void eventStatistics(CommandSender sender) {
+		long syncWaits = SkriptEventHandler.getSyncWaits();
+		info(sender, "events.sync waits", syncWaits, SkriptEventHandler.getSyncWaitTime() / 1000000. / Math.max(1, syncWaits),
+			SkriptEventHandler.getIncompleteSyncWaits());
+		if (SkriptConfig.asyncEventSyncTimeout.value().getMilliSeconds() <= 0)
+			info(sender, "events.no timeout");
+	}
+
 	private static final ArgsMessage m_invalid_script = new ArgsMessage(CONFIG_NODE + ".invalid script");
 	private static final ArgsMessage m_invalid_folder = new ArgsMessage(CONFIG_NODE + ".invalid folder");
 	
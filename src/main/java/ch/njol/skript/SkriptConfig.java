@@ -5,6 +5,7 @@ import ch.njol.skript.config.EnumParser;
 import ch.njol.skript.config.Option;
 import ch.njol.skript.config.OptionSection;
 import ch.njol.skript.config.SectionNode;
+import ch.njol.skript.events.PeriodicalScheduler;
 import ch.njol.skript.hooks.Hook;
 import ch.njol.skript.hooks.VaultHook;
 import ch.njol.skript.hooks.regions.GriefPreventionHook;
@@ -22,6 +23,7 @@ import ch.njol.skript.util.Timespan;
 import ch.njol.skript.util.Version;
 import ch.njol.skript.util.chat.ChatMessages;
 import ch.njol.skript.util.chat.LinkParseMode;
+import ch.njol.skript.variables.VariableStatistics;
 import ch.njol.skript.variables.Variables;
 import co.aikar.timings.Timings;
 import org.bukkit.event.EventPriority;
@@ -158,6 +160,26 @@ public class SkriptConfig {
 	public static final Option<Boolean> listenCancelledByDefault = new Option<>("listen to cancelled events by default", false)
 			.optional(true);
 
+	/**
+	 * How long the thread of an asynchronous event waits for the triggers that must run on the main thread,
+	 * see {@link SkriptEventHandler}. Zero means no limit.
+	 */
+	public static final Option<Timespan> asyncEventSyncTimeout = new Option<>("async event sync timeout", new Timespan(0))
+			.optional(true);
+
+	/**
+	 * Whether periodical events of the same period are spread across ticks, see {@link PeriodicalScheduler}.
+	 */
+	public static final Option<Boolean> spreadPeriodicalEvents = new Option<>("spread periodical events", false)
+			.optional(true);
+
+	/**
+	 * How long a trigger of a periodical or time-of-day event may take before it's counted as an overrun.
+	 * Zero disables counting overruns.
+	 */
+	public static final Option<Timespan> periodicalEventBudget = new Option<>("periodical event budget", new Timespan(0))
+			.optional(true);
+
 	
 	/**
 	 * Maximum number of digits to display after the period for floats and doubles
@@ -234,6 +256,29 @@ public class SkriptConfig {
 	public static final Option<Boolean> caseInsensitiveVariables = new Option<>("case-insensitive variables", true)
 			.setter(t -> Variables.caseInsensitiveVariables = t);
 
+	/**
+	 * The implementation of the map storing global variables, only read when variables are loaded.
+	 */
+	public static final Option<String> variablesMapType = new Option<>("variables map type", "default")
+			.optional(true);
+
+	/**
+	 * Whether stored variables are deserialized when they're first accessed instead of when they're loaded.
+	 */
+	public static final Option<Boolean> lazyVariableDeserialization = new Option<>("lazy variable deserialization", false)
+			.optional(true);
+
+	/**
+	 * Whether accesses to global variables are counted, see {@link VariableStatistics}.
+	 */
+	public static final Option<Boolean> variableStatistics = new Option<>("variable statistics", false)
+			.optional(true)
+			.setter(VariableStatistics::setEnabled);
+
+	public static final Option<Integer> variableStatisticsDepth = new Option<>("variable statistics depth", 1)
+			.optional(true)
+			.setter(VariableStatistics::setPrefixDepth);
+
 	public static final Option<Boolean> caseInsensitiveCommands = new Option<>("case-insensitive commands", false)
 		.optional(true);
 	
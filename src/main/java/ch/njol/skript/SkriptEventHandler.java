@@ -39,6 +39,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -46,6 +47,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public final class SkriptEventHandler {
@@ -99,7 +102,178 @@ public final class SkriptEventHandler {
 		return triggers.asMap().entrySet().stream()
 				.filter(entry -> entry.getKey().isAssignableFrom(event) && getHandlerList(entry.getKey()) == eventHandlerList)
 				.flatMap(entry -> entry.getValue().stream())
-				.collect(Collectors.toList()); // forces evaluation now and prevents us from having to call getTriggers again if very high logging is enabled
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * The Triggers to execute for one concrete Event class, by priority and cancelled state,
+	 * so they don't have to be looked up and filtered every time the Event is called.
+	 */
+	private static final class DispatchTable {
+
+		private static final DispatchTable EMPTY = new DispatchTable(new TriggerIndex[EventPriority.values().length * 2]);
+
+		/**
+		 * The Triggers at index {@code priority.ordinal() * 2 + (cancelled ? 1 : 0)}.
+		 */
+		private final TriggerIndex[] triggers;
+
+		private DispatchTable(TriggerIndex[] triggers) {
+			this.triggers = triggers;
+		}
+
+		static DispatchTable create(List<Trigger> triggers) {
+			if (triggers.isEmpty())
+				return EMPTY;
+			EventPriority[] priorities = EventPriority.values();
+			TriggerIndex[] table = new TriggerIndex[priorities.length * 2];
+			for (EventPriority priority : priorities) {
+				for (int cancelled = 0; cancelled < 2; cancelled++) {
+					boolean isCancelled = cancelled == 1;
+					table[priority.ordinal() * 2 + cancelled] = TriggerIndex.create(triggers.stream()
+						.filter(trigger -> trigger.getEvent().getEventPriority() == priority
+							&& trigger.getEvent().getListeningBehavior().matches(isCancelled))
+						.collect(Collectors.toList()));
+				}
+			}
+			return new DispatchTable(table);
+		}
+
+		boolean isEmpty() {
+			return this == EMPTY;
+		}
+
+		Trigger[] get(Event event, EventPriority priority, boolean cancelled) {
+			return triggers[priority.ordinal() * 2 + (cancelled ? 1 : 0)].get(event);
+		}
+
+	}
+
+	/**
+	 * The Triggers of one priority and cancelled state, indexed by the {@link SkriptEvent#getDispatchKeys() dispatch keys}
+	 * of their SkriptEvents, so e.g. breaking stone only checks the Triggers that can match stone.
+	 * Triggers without dispatch keys are always checked, and all Triggers keep their registration order.
+	 */
+	private static final class TriggerIndex {
+
+		/**
+		 * All Triggers, used for events without a dispatch key.
+		 */
+		private final Trigger[] all;
+
+		/**
+		 * The SkriptEvent used to get the dispatch key of an event, or null if no Trigger has dispatch keys.
+		 */
+		@Nullable
+		private final SkriptEvent keySource;
+
+		/**
+		 * The Triggers to check for each dispatch key.
+		 */
+		private final Map<Object, Trigger[]> keyed;
+
+		/**
+		 * The Triggers without dispatch keys, used for events whose dispatch key no Trigger has.
+		 */
+		private final Trigger[] unkeyed;
+
+		private TriggerIndex(Trigger[] all, @Nullable SkriptEvent keySource, Map<Object, Trigger[]> keyed, Trigger[] unkeyed) {
+			this.all = all;
+			this.keySource = keySource;
+			this.keyed = keyed;
+			this.unkeyed = unkeyed;
+		}
+
+		static TriggerIndex create(List<Trigger> triggers) {
+			Trigger[] all = triggers.toArray(new Trigger[0]);
+
+			// Different SkriptEvent classes may use different keys for the same event,
+			// so only the keys of the class with the most keyed Triggers are used
+			Map<Class<? extends SkriptEvent>, Integer> keyedCounts = new HashMap<>();
+			for (Trigger trigger : triggers) {
+				if (trigger.getEvent().getDispatchKeys() != null)
+					keyedCounts.merge(trigger.getEvent().getClass(), 1, Integer::sum);
+			}
+			Class<? extends SkriptEvent> keyedClass = keyedCounts.entrySet().stream()
+				.max(Entry.comparingByValue())
+				.map(Entry::getKey)
+				.orElse(null);
+			if (keyedClass == null)
+				return new TriggerIndex(all, null, Collections.emptyMap(), all);
+
+			SkriptEvent keySource = null;
+			Set<Object> keys = new HashSet<>();
+			for (Trigger trigger : triggers) {
+				Set<?> dispatchKeys = getDispatchKeys(trigger, keyedClass);
+				if (dispatchKeys != null) {
+					keySource = trigger.getEvent();
+					keys.addAll(dispatchKeys);
+				}
+			}
+
+			Map<Object, Trigger[]> keyed = new HashMap<>();
+			for (Object key : keys) {
+				keyed.put(key, triggers.stream()
+					.filter(trigger -> {
+						Set<?> dispatchKeys = getDispatchKeys(trigger, keyedClass);
+						return dispatchKeys == null || dispatchKeys.contains(key);
+					})
+					.toArray(Trigger[]::new));
+			}
+			Trigger[] unkeyed = triggers.stream()
+				.filter(trigger -> getDispatchKeys(trigger, keyedClass) == null)
+				.toArray(Trigger[]::new);
+			return new TriggerIndex(all, keySource, keyed, unkeyed);
+		}
+
+		/**
+		 * @return The dispatch keys of the Trigger's SkriptEvent, or null if it has none or isn't of the given class.
+		 */
+		@Nullable
+		private static Set<?> getDispatchKeys(Trigger trigger, Class<? extends SkriptEvent> keyedClass) {
+			SkriptEvent event = trigger.getEvent();
+			return event.getClass() == keyedClass ? event.getDispatchKeys() : null;
+		}
+
+		Trigger[] get(Event event) {
+			SkriptEvent keySource = this.keySource;
+			if (keySource == null)
+				return all;
+			Object key = keySource.getDispatchKey(event);
+			if (key == null)
+				return all;
+			return keyed.getOrDefault(key, unkeyed);
+		}
+
+	}
+
+	/**
+	 * The {@link DispatchTable}s of the Event classes called so far.
+	 * Replaced by an empty map whenever {@link #triggers} changes, so tables built from outdated Triggers are dropped with the old map.
+	 */
+	private static volatile Map<Class<? extends Event>, DispatchTable> dispatchTables = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the {@link DispatchTable} of the provided Event class, building it if needed.
+	 * @param event The concrete class of a called Event.
+	 * @return The DispatchTable of the Event class.
+	 */
+	private static DispatchTable getDispatchTable(Class<? extends Event> event) {
+		// Read before the triggers, so a table built from outdated triggers is never added to the current map
+		Map<Class<? extends Event>, DispatchTable> tables = dispatchTables;
+		DispatchTable table = tables.get(event);
+		if (table == null) {
+			table = DispatchTable.create(getTriggers(event));
+			tables.putIfAbsent(event, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Drops all {@link DispatchTable}s, must be called after {@link #triggers} changed.
+	 */
+	private static void invalidateDispatchTables() {
+		dispatchTables = new ConcurrentHashMap<>();
 	}
 
 	/**
@@ -111,8 +285,8 @@ public final class SkriptEventHandler {
 	 */
 	private static void check(Event event, EventPriority priority) {
 		// get all triggers for this event, return if none
-		List<Trigger> triggers = getTriggers(event.getClass());
-		if (triggers.isEmpty())
+		DispatchTable table = getDispatchTable(event.getClass());
+		if (table.isEmpty())
 			return;
 
 		// Check if this event should be treated as cancelled
@@ -123,22 +297,87 @@ public final class SkriptEventHandler {
 		// So the time will be logged even if no triggers pass check(), which is still useful information.
 		logEventStart(event, priority);
 
-		for (Trigger trigger : triggers) {
-			SkriptEvent triggerEvent = trigger.getEvent();
+		// Only the triggers at the right priority, listening to the cancel state of the event, and able to match its dispatch key
+		Trigger[] triggers = table.get(event, priority, isCancelled);
+
+		// On other threads, the triggers up to the first one that must run on the main thread are run here,
+		// and the rest in order in one task on the main thread, instead of waiting for the main thread for each trigger
+		int firstSync = 0;
+		if (Bukkit.isPrimaryThread()) {
+			firstSync = triggers.length;
+		} else {
+			while (firstSync < triggers.length && triggers[firstSync].getEvent().canExecuteAsynchronously())
+				firstSync++;
+		}
 
-			// check if the trigger is at the right priority
-			if (triggerEvent.getEventPriority() != priority)
-				continue;
+		for (int i = 0; i < firstSync; i++)
+			execute(triggers[i], event);
+		if (firstSync < triggers.length)
+			executeSync(triggers, firstSync, event);
 
-			// check if the cancel state of the event is correct
-			if (!triggerEvent.getListeningBehavior().matches(isCancelled))
-				continue;
+		logEventEnd();
+	}
 
-			// execute the trigger
-			execute(trigger, event);
-		}
+	/**
+	 * The number of times the thread of an asynchronous event waited for the main thread.
+	 */
+	private static final LongAdder syncWaits = new LongAdder();
 
-		logEventEnd();
+	/**
+	 * The total time asynchronous events waited for the main thread, in nanoseconds.
+	 */
+	private static final LongAdder syncWaitTime = new LongAdder();
+
+	/**
+	 * The number of times asynchronous events stopped waiting for the main thread before their triggers completed.
+	 */
+	private static final LongAdder incompleteSyncWaits = new LongAdder();
+
+	/**
+	 * Executes the provided Triggers from the provided index on in one task on the main thread,
+	 * waiting at most {@link SkriptConfig#asyncEventSyncTimeout} for them to complete.
+	 *
+	 * @param triggers The Triggers.
+	 * @param start The index of the first Trigger to execute.
+	 * @param event The asynchronous Event to execute the Triggers with.
+	 */
+	private static void executeSync(Trigger[] triggers, int start, Event event) {
+		long startWait = System.nanoTime();
+		Boolean completed = Task.callSync(() -> {
+			for (int i = start; i < triggers.length; i++)
+				execute(triggers[i], event);
+			return true;
+		}, Skript.getInstance(), SkriptConfig.asyncEventSyncTimeout.value().getMilliSeconds());
+		long waitTime = System.nanoTime() - startWait;
+
+		syncWaits.increment();
+		syncWaitTime.add(waitTime);
+		if (completed == null)
+			incompleteSyncWaits.increment();
+		if (Skript.logVeryHigh())
+			Skript.info("== waited " + 1. * waitTime / 1000000. + " milliseconds for the main thread" + (completed == null ? " (not completed)" : "") + " ==");
+	}
+
+	/**
+	 * @return The number of times the thread of an asynchronous event waited for its triggers to run on the main thread.
+	 */
+	public static long getSyncWaits() {
+		return syncWaits.sum();
+	}
+
+	/**
+	 * @return The total time asynchronous events waited for their triggers to run on the main thread, in nanoseconds.
+	 */
+	public static long getSyncWaitTime() {
+		return syncWaitTime.sum();
+	}
+
+	/**
+	 * @return The number of times asynchronous events stopped waiting for the main thread before their triggers completed,
+	 * usually due to {@link SkriptConfig#asyncEventSyncTimeout}.
+	 */
+	public static long getIncompleteSyncWaits() {
+		return incompleteSyncWaits.sum();
 	}
 
 	/**
@@ -176,25 +415,14 @@ public final class SkriptEventHandler {
 	 * @param event The Event to execute the Trigger with.
 	 */
 	private static void execute(Trigger trigger, Event event) {
-		// these methods need to be run on whatever thread the trigger is
-		Runnable execute = () -> {
-			logTriggerStart(trigger);
-			Object timing = SkriptTimings.start(trigger.getDebugLabel());
-			trigger.execute(event);
-			SkriptTimings.stop(timing);
-			logTriggerEnd(trigger);
-		};
-
-		if (trigger.getEvent().canExecuteAsynchronously()) {
-			if (trigger.getEvent().check(event))
-				execute.run();
-		} else { // Ensure main thread
-			Task.callSync(() -> {
-				if (trigger.getEvent().check(event))
-					execute.run();
-				return null; // we don't care about a return value
-			});
-		}
+		// Must be run on the main thread, unless the trigger can execute asynchronously
+		if (!trigger.getEvent().check(event))
+			return;
+		logTriggerStart(trigger);
+		Object timing = SkriptTimings.start(trigger.getDebugLabel());
+		trigger.execute(event);
+		SkriptTimings.stop(timing);
+		logTriggerEnd(trigger);
 	}
 
 
@@ -302,6 +530,7 @@ public final class SkriptEventHandler {
 			return;
 
 		triggers.put(event, trigger);
+		invalidateDispatchTables();
 
 		EventPriority priority = trigger.getEvent().getEventPriority();
 
@@ -325,6 +554,7 @@ public final class SkriptEventHandler {
 
 			// Remove the trigger from the map
 			entryIterator.remove();
+			invalidateDispatchTables();
 
 			// check if we can unregister the listener
 			EventPriority priority = trigger.getEvent().getEventPriority();
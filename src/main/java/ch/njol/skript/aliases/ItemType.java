@@ -44,6 +44,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -1414,6 +1415,20 @@ public class ItemType implements Unit, Iterable<ItemData>, Container<ItemStack>,
 		return data.getType();
 	}
 
+	/**
+	 * @return All Materials this ItemType represents, or null if it represents any item.
+	 */
+	@Nullable
+	public Set<Material> getMaterials() {
+		Set<Material> materials = EnumSet.noneOf(Material.class);
+		for (ItemData data : types) {
+			if (data.isAnything)
+				return null;
+			materials.add(data.getType());
+		}
+		return materials;
+	}
+
 	/**
 	 * Returns a base item type of this. Essentially, this calls
 	 * {@link ItemData#aliasCopy()} on all datas and creates a new type
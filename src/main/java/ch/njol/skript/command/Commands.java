@@ -208,7 +208,7 @@ public abstract class Commands {
 						if ((SkriptConfig.logEffectCommands.value() || SkriptConfig.logPlayerCommands.value()) && !(sender instanceof ConsoleCommandSender))
 							Skript.info(sender.getName() + " issued effect command: " + SkriptColor.replaceColorChar(command));
 						TriggerItem.walk(effect, effectCommand);
-						Variables.removeLocals(effectCommand);
+						Variables.removeLocalVariables(effectCommand);
 					} else {
 						sender.sendMessage(ChatColor.RED + "your effect command '" + SkriptColor.replaceColorChar(command) + "' was cancelled.");
 					}
@@ -31,15 +31,15 @@ import ch.njol.skript.lang.Trigger;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.timings.SkriptTimings;
 import ch.njol.skript.util.Timespan;
+import ch.njol.skript.util.TimerWheel;
 import ch.njol.skript.variables.Variables;
 import ch.njol.util.Kleenean;
-import org.bukkit.Bukkit;
+import com.google.common.collect.MapMaker;
 import org.bukkit.event.Event;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 @Name("Delay")
 @Description("Delays the script's execution by a given timespan. Please note that delays are not persistent, e.g. trying to create a tempban script with <code>ban player → wait 7 days → unban player</code> will not work if you restart your server anytime within these 7 days. You also have to be careful even when using small delays!")
@@ -53,6 +53,8 @@ public class Delay extends Effect {
 
 	static {
 		Skript.registerEffect(Delay.class, "(wait|halt) [for] %timespan%");
+		// Loaded before any scripts, see TimerWheel#start()
+		TimerWheel.start();
 	}
 
 	@SuppressWarnings("NotNullFieldNotInitialized")
@@ -88,9 +90,9 @@ public class Delay extends Effect {
 				return null;
 			
 			// Back up local variables
-			Object localVars = Variables.removeLocals(event);
+			Object localVars = Variables.removeLocalVariables(event);
 			
-			Bukkit.getScheduler().scheduleSyncDelayedTask(Skript.getInstance(), () -> {
+			TimerWheel.schedule(() -> {
 				Skript.debug(getIndentation() + "... continuing after " + (System.nanoTime() - start) / 1_000_000_000. + "s");
 
 				// Re-set local variables
@@ -105,7 +107,7 @@ public class Delay extends Effect {
 				}
 
 				TriggerItem.walk(next, event);
-				Variables.removeLocals(event); // Clean up local vars, we may be exiting now
+				Variables.removeLocalVariables(event); // Clean up local vars, we may be exiting now
 
 				SkriptTimings.stop(timing); // Stop timing if it was even started
 			}, Math.max(duration.getTicks(), 1)); // Minimum delay is one tick, less than it is useless!
@@ -123,8 +125,11 @@ public class Delay extends Effect {
 		return "wait for " + duration.toString(event, debug) + (event == null ? "" : "...");
 	}
 
-	private static final Set<Event> DELAYED =
-		Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+	/**
+	 * The delayed events. Compared by identity and weakly referenced, like all events should be,
+	 * and concurrent instead of synchronized, as it's checked often by many threads.
+	 */
+	private static final Set<Event> DELAYED = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
 
 	/**
 	 * The main method for checking if the execution of {@link TriggerItem}s has been delayed.
@@ -143,4 +148,11 @@ public class Delay extends Effect {
 		DELAYED.add(event);
 	}
 
+	/**
+	 * @return The number of delays waiting to continue their trigger.
+	 */
+	public static long getPendingDelays() {
+		return TimerWheel.getPending();
+	}
+
 }
@@ -0,0 +1,102 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.effects;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.doc.Description;
+import ch.njol.skript.doc.Examples;
+import ch.njol.skript.doc.Keywords;
+import ch.njol.skript.doc.Name;
+import ch.njol.skript.doc.Since;
+import ch.njol.skript.lang.Effect;
+import ch.njol.skript.lang.Expression;
+import ch.njol.skript.lang.SkriptParser.ParseResult;
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.util.Timespan;
+import ch.njol.skript.variables.Variables;
+import ch.njol.util.Kleenean;
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.Nullable;
+
+@Name("Expire Variable")
+@Description({
+	"Makes a global variable be deleted automatically after some time, e.g. for cooldowns, caches or temporary bans.",
+	"Making an entire list variable expire deletes the whole list at once.",
+	"Setting or deleting the variable makes it not expire anymore, making it expire again replaces its previous expiry time.",
+	"<strong>Note: Expiry times are not saved, so variables don't expire after the server restarts.</strong>"
+})
+@Examples({
+	"set {cooldown::%player's uuid%} to now",
+	"make {cooldown::%player's uuid%} expire in 10 seconds",
+	"",
+	"make {cache::*} expire after 5 minutes",
+	"make {cache::*} never expire"
+})
+@Since("INSERT VERSION")
+@Keywords({"ttl", "timeout", "cooldown", "variable"})
+public class EffExpireVariable extends Effect {
+
+	static {
+		Skript.registerEffect(EffExpireVariable.class,
+			"make %~objects% expire (in|after) %timespan%",
+			"make %~objects% (not|never) expire");
+	}
+
+	private Variable<?> variable;
+	@Nullable
+	private Expression<Timespan> delay;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean init(Expression<?>[] exprs, int matchedPattern, Kleenean isDelayed, ParseResult parseResult) {
+		if (!(exprs[0] instanceof Variable)) {
+			Skript.error("Only variables can expire");
+			return false;
+		}
+		variable = (Variable<?>) exprs[0];
+		if (variable.isLocal()) {
+			Skript.error("Only global variables can expire, local variables are deleted at the end of the trigger anyway");
+			return false;
+		}
+		if (matchedPattern == 0)
+			delay = (Expression<Timespan>) exprs[1];
+		return true;
+	}
+
+	@Override
+	protected void execute(Event event) {
+		String name = variable.getName().getSingle(event);
+		if (delay == null) {
+			Variables.cancelVariableExpiry(name);
+			return;
+		}
+		Timespan delay = this.delay.getSingle(event);
+		if (delay == null)
+			return;
+		Variables.expireVariable(name, delay.getMilliSeconds());
+	}
+
+	@Override
+	public String toString(@Nullable Event event, boolean debug) {
+		if (delay == null)
+			return "make " + variable.toString(event, debug) + " never expire";
+		return "make " + variable.toString(event, debug) + " expire in " + delay.toString(event, debug);
+	}
+
+}
@@ -144,7 +144,7 @@ public class EffTeleport extends Effect {
 		}
 		final Location fixed = loc;
 		Delay.addDelayedEvent(e);
-		Object localVars = Variables.removeLocals(e);
+		Object localVars = Variables.removeLocalVariables(e);
 		
 		// This will either fetch the chunk instantly if on Spigot or already loaded or fetch it async if on Paper.
 		PaperLib.getChunkAtAsync(loc).thenAccept(chunk -> {
@@ -169,7 +169,7 @@ public class EffTeleport extends Effect {
 
 				TriggerItem.walk(next, e);
 			}
-			Variables.removeLocals(e); // Clean up local vars, we may be exiting now
+			Variables.removeLocalVariables(e); // Clean up local vars, we may be exiting now
 			SkriptTimings.stop(timing);
 		});
 		return null;
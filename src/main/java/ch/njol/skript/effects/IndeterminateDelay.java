@@ -18,13 +18,13 @@
  */
 package ch.njol.skript.effects;
 
-import org.bukkit.Bukkit;
 import org.bukkit.event.Event;
 import org.jetbrains.annotations.Nullable;
 
 import ch.njol.skript.Skript;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.util.Timespan;
+import ch.njol.skript.util.TimerWheel;
 import ch.njol.skript.variables.Variables;
 
 /**
@@ -47,9 +47,9 @@ public class IndeterminateDelay extends Delay {
 				return null;
 			
 			// Back up local variables
-			Object localVars = Variables.removeLocals(event);
+			Object localVars = Variables.removeLocalVariables(event);
 			
-			Bukkit.getScheduler().scheduleSyncDelayedTask(Skript.getInstance(), () -> {
+			TimerWheel.schedule(() -> {
 				Skript.debug(getIndentation() + "... continuing after " + (System.nanoTime() - start) / 1_000_000_000. + "s");
 
 				// Re-set local variables
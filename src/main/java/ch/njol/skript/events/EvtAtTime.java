@@ -19,7 +19,7 @@
 package ch.njol.skript.events;
 
 import ch.njol.skript.Skript;
-import ch.njol.skript.SkriptEventHandler;
+import ch.njol.skript.events.PeriodicalScheduler.ScheduledTask;
 import ch.njol.skript.events.bukkit.ScheduledEvent;
 import ch.njol.skript.lang.Literal;
 import ch.njol.skript.lang.SkriptEvent;
@@ -87,6 +87,7 @@ public class EvtAtTime extends SkriptEvent implements Comparable<EvtAtTime> {
 			}
 			info.instances.add(this);
 		}
+		PeriodicalScheduler.addStatistics(trigger);
 		registerListener();
 		return true;
 	}
@@ -101,10 +102,11 @@ public class EvtAtTime extends SkriptEvent implements Comparable<EvtAtTime> {
 				iterator.remove();
 		}
 
-		if (taskID != -1 && TRIGGERS.isEmpty()) { // Unregister Bukkit listener if possible
-			Bukkit.getScheduler().cancelTask(taskID);
-			taskID = -1;
+		if (task != null && TRIGGERS.isEmpty()) { // Unregister listener if possible
+			PeriodicalScheduler.cancel(task);
+			task = null;
 		}
+		PeriodicalScheduler.removeStatistics(trigger);
 	}
 
 	@Override
@@ -117,14 +119,15 @@ public class EvtAtTime extends SkriptEvent implements Comparable<EvtAtTime> {
 		return false;
 	}
 
-	private static int taskID = -1;
+	@Nullable
+	private static ScheduledTask task;
 	
 	private static void registerListener() {
-		if (taskID != -1)
+		if (task != null)
 			return;
 		// For each world:
 		// check each instance in order until triggerTime > (worldTime + period)
-		taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(Skript.getInstance(), () -> {
+		task = PeriodicalScheduler.schedule(() -> {
 			for (Entry<World, EvtAtInfo> entry : TRIGGERS.entrySet()) {
 				EvtAtInfo info = entry.getValue();
 				int worldTime = (int) entry.getKey().getTime();
@@ -160,16 +163,11 @@ public class EvtAtTime extends SkriptEvent implements Comparable<EvtAtTime> {
 
 					// anything that makes it here must satisfy lastCheckedTime < eventTime <= worldTime
 					// and therefore should trigger this event.
-					ScheduledEvent scheduledEvent = new ScheduledEvent(entry.getKey());
-					SkriptEventHandler.logEventStart(scheduledEvent);
-					SkriptEventHandler.logTriggerEnd(event.trigger);
-					event.trigger.execute(scheduledEvent);
-					SkriptEventHandler.logTriggerEnd(event.trigger);
-					SkriptEventHandler.logEventEnd();
+					PeriodicalScheduler.execute(event.trigger, new ScheduledEvent(entry.getKey()));
 				}
 				info.lastCheckedTime = worldTime;
 			}
-		}, 0, CHECK_PERIOD);
+		}, 1, CHECK_PERIOD, false);
 	}
 	
 	@Override
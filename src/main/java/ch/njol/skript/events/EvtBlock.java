@@ -18,6 +18,7 @@
  */
 package ch.njol.skript.events;
 
+import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
@@ -33,6 +34,7 @@ import org.bukkit.event.hanging.HangingEvent;
 import org.bukkit.event.hanging.HangingPlaceEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
 import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.Nullable;
 
 import ch.njol.skript.Skript;
@@ -45,6 +47,9 @@ import ch.njol.skript.lang.SkriptEvent;
 import ch.njol.skript.lang.SkriptParser.ParseResult;
 import ch.njol.skript.registrations.Classes;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * @author Peter Güttinger
  */
@@ -81,13 +86,43 @@ public class EvtBlock extends SkriptEvent {
 	
 	private boolean mine = false;
 	
+	/**
+	 * The materials of {@link #types}, or null if they can't be listed.
+	 */
+	@Nullable
+	private Set<Material> dispatchKeys;
+	
 	@Override
 	public boolean init(final Literal<?>[] args, final int matchedPattern, final ParseResult parser) {
 		types = (Literal<Object>) args[0];
 		mine = parser.mark == 1;
+		if (types != null)
+			dispatchKeys = getMaterials(types.getAll());
 		return true;
 	}
 	
+	/**
+	 * @param types The item types and block datas to get the materials of.
+	 * @return The materials of the given types, or null if one of them represents any material.
+	 */
+	@Nullable
+	private static Set<Material> getMaterials(Object[] types) {
+		Set<Material> materials = EnumSet.noneOf(Material.class);
+		for (Object type : types) {
+			if (type instanceof ItemType) {
+				Set<Material> itemMaterials = ((ItemType) type).getMaterials();
+				if (itemMaterials == null)
+					return null;
+				materials.addAll(itemMaterials);
+			} else if (type instanceof BlockData) {
+				materials.add(((BlockData) type).getMaterial());
+			} else {
+				return null;
+			}
+		}
+		return materials;
+	}
+	
 	@SuppressWarnings("null")
 	@Override
 	public boolean check(final Event event) {
@@ -143,6 +178,30 @@ public class EvtBlock extends SkriptEvent {
 		});
 	}
 	
+	@Override
+	@Nullable
+	public Set<Material> getDispatchKeys() {
+		return dispatchKeys;
+	}
+	
+	@Override
+	@Nullable
+	public Material getDispatchKey(Event event) {
+		// Must match the item compared in check()
+		if (event instanceof BlockFormEvent)
+			return ((BlockFormEvent) event).getNewState().getType();
+		if (event instanceof BlockEvent)
+			return ((BlockEvent) event).getBlock().getType();
+		if (event instanceof PlayerBucketFillEvent)
+			return ((PlayerBucketFillEvent) event).getBlockClicked().getType();
+		if (event instanceof PlayerBucketEmptyEvent) {
+			ItemStack itemStack = ((PlayerBucketEmptyEvent) event).getItemStack();
+			return itemStack == null ? null : itemStack.getType();
+		}
+		// Hanging entities are compared as entities
+		return null;
+	}
+	
 	@Override
 	public String toString(final @Nullable Event e, final boolean debug) {
 		return "break/place/burn/fade/form of " + Classes.toString(types);
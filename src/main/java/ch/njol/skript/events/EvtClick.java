@@ -18,6 +18,7 @@
  */
 package ch.njol.skript.events;
 
+import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.ArmorStand;
 import org.bukkit.entity.Entity;
@@ -45,6 +46,9 @@ import ch.njol.skript.lang.SkriptParser.ParseResult;
 import ch.njol.util.Checker;
 import ch.njol.util.coll.CollectionUtils;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class EvtClick extends SkriptEvent {
 
 	/**
@@ -92,6 +96,12 @@ public class EvtClick extends SkriptEvent {
 	 */
 	private int click = ANY;
 
+	/**
+	 * The materials of the blocks that can be clicked, or null if they can't be listed.
+	 */
+	@Nullable
+	private Set<Material> dispatchKeys;
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public boolean init(Literal<?>[] args, int matchedPattern, ParseResult parseResult) {
@@ -117,6 +127,20 @@ public class EvtClick extends SkriptEvent {
 			}
 		}
 		tools = (Literal<ItemType>) args[1 - matchedPattern];
+
+		if (type != null) {
+			dispatchKeys = EnumSet.noneOf(Material.class);
+			for (Object clicked : type.getAll()) {
+				if (!(clicked instanceof ItemType))
+					continue; // Entities never match clicks on blocks
+				Set<Material> materials = ((ItemType) clicked).getMaterials();
+				if (materials == null) {
+					dispatchKeys = null;
+					break;
+				}
+				dispatchKeys.addAll(materials);
+			}
+		}
 		return true;
 	}
 
@@ -215,6 +239,25 @@ public class EvtClick extends SkriptEvent {
 		return true;
 	}
 
+	@Override
+	@Nullable
+	public Set<Material> getDispatchKeys() {
+		return dispatchKeys;
+	}
+
+	@Override
+	@Nullable
+	public Material getDispatchKey(Event event) {
+		// Clicks on entities may match item types too, so they can't be filtered by material.
+		// Skipping a trigger here doesn't change the deduplication of the interactTracker,
+		// as the events of one click all have the same clicked block and thus are filtered alike.
+		if (event instanceof PlayerInteractEvent) {
+			Block block = ((PlayerInteractEvent) event).getClickedBlock();
+			return block == null ? Material.AIR : block.getType();
+		}
+		return null;
+	}
+
 	@Override
 	public String toString(@Nullable Event e, boolean debug) {
 		return (click == LEFT ? "left" : click == RIGHT ? "right" : "") + "click" + (type != null ? " on " + type.toString(e, debug) : "") + (tools != null ? " holding " + tools.toString(e, debug) : "");
@@ -19,14 +19,14 @@
 package ch.njol.skript.events;
 
 import ch.njol.skript.Skript;
-import ch.njol.skript.SkriptEventHandler;
+import ch.njol.skript.SkriptConfig;
+import ch.njol.skript.events.PeriodicalScheduler.ScheduledTask;
 import ch.njol.skript.events.bukkit.ScheduledEvent;
 import ch.njol.skript.events.bukkit.ScheduledNoWorldEvent;
 import ch.njol.skript.lang.Literal;
 import ch.njol.skript.lang.SkriptEvent;
 import ch.njol.skript.lang.SkriptParser.ParseResult;
 import ch.njol.skript.util.Timespan;
-import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.event.Event;
 import org.jetbrains.annotations.Nullable;
@@ -57,7 +57,7 @@ public class EvtPeriodical extends SkriptEvent {
 	private Timespan period;
 
 	@SuppressWarnings("NotNullFieldNotInitialized")
-	private int[] taskIDs;
+	private ScheduledTask[] tasks;
 
 	private World @Nullable [] worlds;
 
@@ -73,20 +73,18 @@ public class EvtPeriodical extends SkriptEvent {
 	@Override
 	public boolean postLoad() {
 		long ticks = period.getTicks();
+		PeriodicalScheduler.addStatistics(trigger);
 
 		if (worlds == null) {
-			taskIDs = new int[]{
-				Bukkit.getScheduler().scheduleSyncRepeatingTask(
-					Skript.getInstance(), () -> execute(null), ticks, ticks
-				)
+			tasks = new ScheduledTask[]{
+				PeriodicalScheduler.schedule(() -> execute(null), ticks, ticks, SkriptConfig.spreadPeriodicalEvents.value())
 			};
 		} else {
-			taskIDs = new int[worlds.length];
+			// Aligned with the time of the world, so these are never spread
+			tasks = new ScheduledTask[worlds.length];
 			for (int i = 0; i < worlds.length; i++) {
 				World world = worlds[i];
-				taskIDs[i] = Bukkit.getScheduler().scheduleSyncRepeatingTask(
-					Skript.getInstance(), () -> execute(world), ticks - (world.getFullTime() % ticks), ticks
-				);
+				tasks[i] = PeriodicalScheduler.schedule(() -> execute(world), ticks - (world.getFullTime() % ticks), ticks, false);
 			}
 		}
 
@@ -95,8 +93,9 @@ public class EvtPeriodical extends SkriptEvent {
 
 	@Override
 	public void unload() {
-		for (int taskID : taskIDs)
-			Bukkit.getScheduler().cancelTask(taskID);
+		for (ScheduledTask task : tasks)
+			PeriodicalScheduler.cancel(task);
+		PeriodicalScheduler.removeStatistics(trigger);
 	}
 
 	@Override
@@ -116,11 +115,7 @@ public class EvtPeriodical extends SkriptEvent {
 
 	private void execute(@Nullable World world) {
 		ScheduledEvent event = world == null ? new ScheduledNoWorldEvent() : new ScheduledEvent(world);
-		SkriptEventHandler.logEventStart(event);
-		SkriptEventHandler.logTriggerStart(trigger);
-		trigger.execute(event);
-		SkriptEventHandler.logTriggerEnd(trigger);
-		SkriptEventHandler.logEventEnd();
+		PeriodicalScheduler.execute(trigger, event);
 	}
 	
 }
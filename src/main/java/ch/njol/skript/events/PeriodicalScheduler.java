@@ -0,0 +1,388 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.events;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptConfig;
+import ch.njol.skript.SkriptEventHandler;
+import ch.njol.skript.lang.Trigger;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Runs the tasks of periodical and time-of-day events from a single repeating Bukkit task,
+ * instead of one Bukkit task per trigger.
+ * <p>
+ * The tasks are kept in a timing wheel: they are grouped by period, and within a period by phase,
+ * i.e. the remainder of the ticks they run at divided by their period.
+ * Every tick, only the tasks of the current phase of each period are looked at.
+ * <p>
+ * Also keeps statistics on the triggers run by these events, to find the ones taking too long,
+ * see {@link SkriptConfig#periodicalEventBudget}.
+ */
+public final class PeriodicalScheduler {
+
+	private PeriodicalScheduler() { }
+
+	/**
+	 * The maximum amount of phases looked at to find the least used one when spreading a task.
+	 */
+	static final int MAX_SPREAD = 20 * 60;
+
+	/**
+	 * A task run by the scheduler.
+	 */
+	public static final class ScheduledTask {
+
+		private final Runnable runnable;
+		private final long period;
+		private final long phase;
+		private volatile boolean cancelled;
+
+		private ScheduledTask(Runnable runnable, long period, long phase) {
+			this.runnable = runnable;
+			this.period = period;
+			this.phase = phase;
+		}
+
+		/**
+		 * @return The period of this task in ticks.
+		 */
+		public long getPeriod() {
+			return period;
+		}
+
+		/**
+		 * @return Whether this task has been cancelled.
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+	}
+
+	/**
+	 * The tasks of one period, by phase. Never modified, but replaced by a modified copy.
+	 */
+	private static final class PeriodGroup {
+
+		private final long period;
+		private final Map<Long, ScheduledTask[]> phases;
+
+		private PeriodGroup(long period, Map<Long, ScheduledTask[]> phases) {
+			this.period = period;
+			this.phases = phases;
+		}
+
+		private int size(long phase) {
+			ScheduledTask[] tasks = phases.get(phase);
+			return tasks == null ? 0 : tasks.length;
+		}
+
+	}
+
+	/**
+	 * The groups of all periods that have tasks.
+	 * Replaced by a modified copy while holding the lock of this class, so a tick can iterate it while tasks change.
+	 */
+	private static volatile PeriodGroup[] groups = new PeriodGroup[0];
+
+	/**
+	 * The ticks counted by the scheduler, only written by its Bukkit task.
+	 */
+	private static volatile long currentTick;
+
+	private static int taskID = -1;
+
+	/**
+	 * Schedules a task.
+	 *
+	 * @param runnable The task, run on the main thread.
+	 * @param delay The ticks until the task runs for the first time, at most its period.
+	 * @param period The ticks between runs of the task.
+	 * @param spread Whether the first run may be delayed further, up to a period,
+	 *               to run the task on a tick with fewer tasks of the same period.
+	 * @return The scheduled task, to be {@link #cancel(ScheduledTask) cancelled} later.
+	 */
+	public static synchronized ScheduledTask schedule(Runnable runnable, long delay, long period, boolean spread) {
+		period = Math.max(1, period);
+		long phase = getPhase(currentTick, delay, period);
+
+		PeriodGroup[] groups = PeriodicalScheduler.groups;
+		int index = 0;
+		while (index < groups.length && groups[index].period != period)
+			index++;
+		PeriodGroup group = index < groups.length ? groups[index] : new PeriodGroup(period, new HashMap<>());
+
+		if (spread)
+			phase = spreadPhase(phase, period, group::size);
+
+		ScheduledTask task = new ScheduledTask(runnable, period, phase);
+		Map<Long, ScheduledTask[]> phases = new HashMap<>(group.phases);
+		ScheduledTask[] tasks = phases.get(phase);
+		if (tasks == null) {
+			tasks = new ScheduledTask[] {task};
+		} else {
+			tasks = Arrays.copyOf(tasks, tasks.length + 1);
+			tasks[tasks.length - 1] = task;
+		}
+		phases.put(phase, tasks);
+
+		if (index == groups.length)
+			groups = Arrays.copyOf(groups, groups.length + 1);
+		else
+			groups = groups.clone();
+		groups[index] = new PeriodGroup(period, phases);
+		PeriodicalScheduler.groups = groups;
+
+		if (taskID == -1)
+			taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(Skript.getInstance(), PeriodicalScheduler::tick, 1, 1);
+		return task;
+	}
+
+	/**
+	 * @param currentTick The current tick of the scheduler.
+	 * @param delay The ticks until the task runs for the first time.
+	 * @param period The ticks between runs of the task.
+	 * @return The phase of the task, i.e. the remainder of the ticks it runs at divided by its period.
+	 */
+	static long getPhase(long currentTick, long delay, long period) {
+		return (currentTick + Math.max(1, delay)) % period;
+	}
+
+	/**
+	 * Finds the phase with the fewest tasks among the given phase and the ones after it,
+	 * looking at no more than {@link #MAX_SPREAD} phases.
+	 *
+	 * @param phase The phase the task would run at without spreading.
+	 * @param period The ticks between runs of the task.
+	 * @param sizes The amount of tasks of each phase.
+	 * @return The first phase with the fewest tasks.
+	 */
+	static long spreadPhase(long phase, long period, LongToIntFunction sizes) {
+		long bestPhase = phase;
+		int bestSize = sizes.applyAsInt(phase);
+		for (long offset = 1; offset < Math.min(period, MAX_SPREAD) && bestSize > 0; offset++) {
+			long candidate = (phase + offset) % period;
+			int size = sizes.applyAsInt(candidate);
+			if (size < bestSize) {
+				bestPhase = candidate;
+				bestSize = size;
+			}
+		}
+		return bestPhase;
+	}
+
+	/**
+	 * Cancels a task. Does nothing if it has already been cancelled.
+	 *
+	 * @param task The task.
+	 */
+	public static synchronized void cancel(ScheduledTask task) {
+		if (task.cancelled)
+			return;
+		task.cancelled = true;
+
+		PeriodGroup[] groups = PeriodicalScheduler.groups;
+		for (int index = 0; index < groups.length; index++) {
+			PeriodGroup group = groups[index];
+			if (group.period != task.period)
+				continue;
+
+			Map<Long, ScheduledTask[]> phases = new HashMap<>(group.phases);
+			ScheduledTask[] tasks = phases.get(task.phase);
+			if (tasks == null)
+				return;
+			ScheduledTask[] remaining = Arrays.stream(tasks).filter(other -> other != task).toArray(ScheduledTask[]::new);
+			if (remaining.length == 0)
+				phases.remove(task.phase);
+			else
+				phases.put(task.phase, remaining);
+
+			if (phases.isEmpty()) {
+				PeriodGroup[] newGroups = new PeriodGroup[groups.length - 1];
+				System.arraycopy(groups, 0, newGroups, 0, index);
+				System.arraycopy(groups, index + 1, newGroups, index, groups.length - index - 1);
+				groups = newGroups;
+			} else {
+				groups = groups.clone();
+				groups[index] = new PeriodGroup(group.period, phases);
+			}
+			PeriodicalScheduler.groups = groups;
+			break;
+		}
+
+		if (taskID != -1 && groups.length == 0) {
+			Bukkit.getScheduler().cancelTask(taskID);
+			taskID = -1;
+		}
+	}
+
+	private static void tick() {
+		long tick = currentTick + 1;
+		currentTick = tick;
+		for (PeriodGroup group : groups) {
+			ScheduledTask[] tasks = group.phases.get(tick % group.period);
+			if (tasks == null)
+				continue;
+			for (ScheduledTask task : tasks) {
+				if (task.cancelled) // May have been cancelled by a task run before it
+					continue;
+				try {
+					task.runnable.run();
+				} catch (RuntimeException e) {
+					Skript.exception(e, "An error occurred while running a periodical task");
+				}
+			}
+		}
+	}
+
+	/**
+	 * The execution statistics of a trigger run by periodical or time-of-day events.
+	 * Only modified on the main thread.
+	 */
+	public static final class TriggerStatistics {
+
+		private final Trigger trigger;
+		private long runs;
+		private long totalTime;
+		private long maxTime;
+		private long overruns;
+
+		private TriggerStatistics(Trigger trigger) {
+			this.trigger = trigger;
+		}
+
+		public Trigger getTrigger() {
+			return trigger;
+		}
+
+		/**
+		 * @return How often the trigger was run.
+		 */
+		public long getRuns() {
+			return runs;
+		}
+
+		/**
+		 * @return The total time the trigger took, in nanoseconds.
+		 */
+		public long getTotalTime() {
+			return totalTime;
+		}
+
+		/**
+		 * @return The longest time the trigger took, in nanoseconds.
+		 */
+		public long getMaxTime() {
+			return maxTime;
+		}
+
+		/**
+		 * @return How often the trigger took longer than {@link SkriptConfig#periodicalEventBudget}.
+		 */
+		public long getOverruns() {
+			return overruns;
+		}
+
+	}
+
+	private static final Map<Trigger, TriggerStatistics> statistics = new ConcurrentHashMap<>();
+
+	/**
+	 * Executes a trigger of a periodical or time-of-day event and updates its statistics.
+	 *
+	 * @param trigger The trigger.
+	 * @param event The event to execute the trigger with.
+	 */
+	static void execute(Trigger trigger, Event event) {
+		SkriptEventHandler.logEventStart(event);
+		SkriptEventHandler.logTriggerStart(trigger);
+		long start = System.nanoTime();
+		trigger.execute(event);
+		long time = System.nanoTime() - start;
+		SkriptEventHandler.logTriggerEnd(trigger);
+		SkriptEventHandler.logEventEnd();
+
+		// The trigger may have been unloaded while it was running
+		TriggerStatistics triggerStatistics = statistics.get(trigger);
+		if (triggerStatistics == null)
+			return;
+		triggerStatistics.runs++;
+		triggerStatistics.totalTime += time;
+		triggerStatistics.maxTime = Math.max(triggerStatistics.maxTime, time);
+		long budget = SkriptConfig.periodicalEventBudget.value().getMilliSeconds();
+		if (budget > 0 && time > TimeUnit.MILLISECONDS.toNanos(budget))
+			triggerStatistics.overruns++;
+	}
+
+	/**
+	 * Starts keeping statistics on a loaded trigger. Does nothing if they are already kept.
+	 *
+	 * @param trigger The trigger.
+	 */
+	static void addStatistics(Trigger trigger) {
+		statistics.putIfAbsent(trigger, new TriggerStatistics(trigger));
+	}
+
+	/**
+	 * Removes the statistics of an unloaded trigger.
+	 *
+	 * @param trigger The trigger.
+	 */
+	static void removeStatistics(Trigger trigger) {
+		statistics.remove(trigger);
+	}
+
+	/**
+	 * @param amount The maximum amount of triggers to get.
+	 * @return The statistics of the triggers with the most overruns, then the longest time taken.
+	 */
+	public static List<TriggerStatistics> getTopTriggers(int amount) {
+		List<TriggerStatistics> triggers = new ArrayList<>(statistics.values());
+		triggers.sort(Comparator.comparingLong(TriggerStatistics::getOverruns)
+			.thenComparingLong(TriggerStatistics::getMaxTime)
+			.reversed());
+		return triggers.subList(0, Math.min(amount, triggers.size()));
+	}
+
+	/**
+	 * @return The amount of tasks run by the scheduler.
+	 */
+	public static int getScheduledTasks() {
+		int tasks = 0;
+		for (PeriodGroup group : groups) {
+			for (ScheduledTask[] phaseTasks : group.phases.values())
+				tasks += phaseTasks.length;
+		}
+		return tasks;
+	}
+
+}
@@ -34,8 +34,7 @@ import ch.njol.util.Pair;
 import org.bukkit.event.Event;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.List;
 
 @Name("Indices of List")
 @Description({
@@ -91,9 +90,8 @@ public class ExprIndices extends SimpleExpression<String> {
 
 	@Nullable
 	@Override
-	@SuppressWarnings({"unchecked", "ConstantConditions"})
 	protected String[] get(Event e) {
-		Map<String, Object> variable = (Map<String, Object>) list.getRaw(e);
+		List<Pair<String, Object>> variable = list.getListSnapshot(e);
 
 		if (variable == null) {
 			return null;
@@ -101,19 +99,16 @@ public class ExprIndices extends SimpleExpression<String> {
 
 		if (sort) {
 			int direction = descending ? -1 : 1;
-			return variable.entrySet().stream()
-				.map((entry) -> new Pair<>(
-					entry.getKey(),
-					entry.getValue() instanceof Map<?,?>
-						? ((Map<?,?>) entry.getValue()).get(null)
-						: entry.getValue()
-				))
+			return variable.stream()
 				.sorted((a, b) -> ExprSortedList.compare(a.getValue(), b.getValue()) * direction)
 				.map(Pair::getKey)
 				.toArray(String[]::new);
 		}
 
-		return variable.keySet().toArray(new String[0]);
+		String[] indices = new String[variable.size()];
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = variable.get(i).getKey();
+		return indices;
 	}
 
 	@Override
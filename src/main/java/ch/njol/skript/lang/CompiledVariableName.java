@@ -0,0 +1,227 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.lang;
+
+import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.util.StringMode;
+import ch.njol.skript.variables.Variables;
+import org.bukkit.event.Event;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * The name of a {@link Variable}, split into its parts at parse time.
+ * <p>
+ * Each part of the name is a sequence of literal strings and expressions, e.g.
+ * {@code stats::%player's uuid%::kills} consists of the parts {@code stats},
+ * {@code %player's uuid%} and {@code kills}. The literal strings are lowercased in advance,
+ * so {@link #getParts(Event)} only has to evaluate the expressions and lowercase their results,
+ * and parts without expressions are not built again on each access.
+ * <p>
+ * The parts are passed to the {@link Variables} methods taking the parts of a name,
+ * which neither lowercase nor split the name.
+ */
+final class CompiledVariableName {
+
+	/**
+	 * The literal strings and expressions of each part of the name.
+	 */
+	private final Object[][] parts;
+
+	/**
+	 * Same as {@link #parts}, but with lowercased literal strings.
+	 */
+	private final Object[][] lowerCaseParts;
+
+	/**
+	 * The parts of the name, {@code null} for parts containing expressions.
+	 */
+	private final String[] literalParts;
+
+	/**
+	 * Same as {@link #literalParts}, but lowercased.
+	 */
+	private final String[] lowerCaseLiteralParts;
+
+	/**
+	 * Whether the name contains any expressions.
+	 */
+	private final boolean hasExpressions;
+
+	/**
+	 * Compiles the given variable name.
+	 *
+	 * @param name the variable name, excluding the local variable token.
+	 */
+	CompiledVariableName(VariableString name) {
+		this(getStrings(name));
+	}
+
+	private static Object[] getStrings(VariableString name) {
+		Object[] strings = name.getStrings();
+		return strings != null ? strings : new Object[] {name.toString(null)};
+	}
+
+	/**
+	 * Compiles the variable name consisting of the given literal strings and expressions.
+	 *
+	 * @param strings the literal strings and expressions, see {@link VariableString#getStrings()}.
+	 */
+	CompiledVariableName(Object[] strings) {
+		List<List<Object>> parts = new ArrayList<>();
+		List<Object> part = new ArrayList<>();
+		parts.add(part);
+		for (int i = 0; i < strings.length; i++) {
+			if (!(strings[i] instanceof String)) {
+				part.add(strings[i]);
+				continue;
+			}
+
+			// Adjacent literal strings are split together, as a separator may span them
+			StringBuilder builder = new StringBuilder((String) strings[i]);
+			while (i + 1 < strings.length && strings[i + 1] instanceof String)
+				builder.append((String) strings[++i]);
+			String literal = builder.toString();
+			int start = 0;
+			int end;
+			while ((end = literal.indexOf(Variable.SEPARATOR, start)) != -1) {
+				if (end > start)
+					part.add(literal.substring(start, end));
+				part = new ArrayList<>();
+				parts.add(part);
+				start = end + Variable.SEPARATOR.length();
+			}
+			if (start < literal.length())
+				part.add(literal.substring(start));
+		}
+
+		// Trailing empty parts are removed when a name is split, see Variables#splitVariableName
+		int size = parts.size();
+		while (size > 1 && parts.get(size - 1).isEmpty())
+			size--;
+		this.parts = new Object[size][];
+		this.lowerCaseParts = new Object[size][];
+		this.literalParts = new String[size];
+		this.lowerCaseLiteralParts = new String[size];
+		boolean hasExpressions = false;
+		for (int i = 0; i < size; i++) {
+			Object[] pieces = parts.get(i).toArray();
+			Object[] lowerCasePieces = new Object[pieces.length];
+			StringBuilder literal = new StringBuilder();
+			for (int j = 0; j < pieces.length; j++) {
+				Object piece = pieces[j];
+				if (piece instanceof String) {
+					lowerCasePieces[j] = ((String) piece).toLowerCase(Locale.ENGLISH);
+					if (literal != null)
+						literal.append(piece);
+				} else {
+					lowerCasePieces[j] = piece;
+					literal = null;
+				}
+			}
+
+			this.parts[i] = pieces;
+			this.lowerCaseParts[i] = lowerCasePieces;
+			if (literal != null) {
+				String literalPart = literal.toString();
+				literalParts[i] = literalPart;
+				lowerCaseLiteralParts[i] = literalPart.toLowerCase(Locale.ENGLISH);
+			} else {
+				hasExpressions = true;
+			}
+		}
+		this.hasExpressions = hasExpressions;
+	}
+
+	/**
+	 * Gets the parts of the name for the given event,
+	 * lowercased if {@link Variables#caseInsensitiveVariables variables are case-insensitive}.
+	 * <p>
+	 * The returned array may be shared, and must not be modified.
+	 *
+	 * @param event the event to evaluate the expressions of the name in.
+	 * @return the parts of the name, or {@code null} if the name must be built and split as a whole,
+	 * see {@link #getParts(boolean, Function)}.
+	 */
+	String @Nullable [] getParts(Event event) {
+		return getParts(Variables.caseInsensitiveVariables,
+			expression -> Classes.toString(expression.getArray(event), true, StringMode.VARIABLE_NAME));
+	}
+
+	/**
+	 * Gets the parts of the name, given the values of its expressions.
+	 *
+	 * @param lowerCase whether to lowercase the parts.
+	 * @param values gets the value of an expression of the name.
+	 * @return the parts of the name, the same as splitting the built name, or {@code null} if the name must be built
+	 * and split as a whole, because an expression's value contains {@code :}, results in an empty part,
+	 * or moves the surrounding colons into a different separator.
+	 */
+	String @Nullable [] getParts(boolean lowerCase, Function<Expression<?>, String> values) {
+		String[] literalParts = lowerCase ? lowerCaseLiteralParts : this.literalParts;
+		if (!hasExpressions)
+			return literalParts;
+
+		Object[][] parts = lowerCase ? lowerCaseParts : this.parts;
+		String[] result = new String[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			if (literalParts[i] != null) {
+				result[i] = literalParts[i];
+				continue;
+			}
+
+			StringBuilder builder = new StringBuilder();
+			for (Object piece : parts[i]) {
+				if (piece instanceof String) {
+					builder.append((String) piece);
+					continue;
+				}
+
+				String value = values.apply((Expression<?>) piece);
+				// Separators in values create additional parts, and may join with the surrounding separators
+				if (value.indexOf(':') != -1)
+					return null;
+				builder.append(lowerCase ? value.toLowerCase(Locale.ENGLISH) : value);
+			}
+
+			String part = builder.toString();
+			// An empty value may join the colons of the literal strings around it into a separator, e.g. {a:%""%:b},
+			// and a colon ending a part is taken into the following separator when the name is split, e.g. {a:%""%::b}
+			if (part.isEmpty() || part.contains(Variable.SEPARATOR) || (i < parts.length - 1 && part.endsWith(":")))
+				return null;
+			result[i] = part;
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the given parts are the parts of a list variable's name.
+	 *
+	 * @param parts the parts of a name.
+	 * @return whether the name ends with {@link Variable#SEPARATOR} and {@code *}.
+	 */
+	static boolean isList(String[] parts) {
+		return parts.length > 1 && parts[parts.length - 1].equals("*");
+	}
+
+}
@@ -37,6 +37,7 @@ import org.skriptlang.skript.lang.structure.Structure;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * A SkriptEvent is like a condition. It is called when any of the registered events occurs.
@@ -201,6 +202,30 @@ public abstract class SkriptEvent extends Structure {
 	 */
 	public abstract boolean check(Event event);
 
+	/**
+	 * Returns the dispatch keys of this event, which allow {@link SkriptEventHandler} to skip calling {@link #check(Event)}
+	 * for events that can't match, e.g. the types of blocks of a block break event.
+	 * An event can only be matched if its {@link #getDispatchKey(Event) dispatch key} is one of these keys.
+	 * Should be computed once when this SkriptEvent is initialised, as it's called whenever the triggers of an event change.
+	 * @return The dispatch keys, or null if this SkriptEvent may match events with any key.
+	 * @see #getDispatchKey(Event)
+	 */
+	@Nullable
+	public Set<?> getDispatchKeys() {
+		return null;
+	}
+
+	/**
+	 * Gets the dispatch key of the given event, which is compared with the {@link #getDispatchKeys() dispatch keys}
+	 * of the SkriptEvents listening to it. Must only depend on the event, as it's called once for all SkriptEvents of this class.
+	 * @param event The event.
+	 * @return The dispatch key, or null if the event doesn't have one, in which case {@link #check(Event)} is always called.
+	 */
+	@Nullable
+	public Object getDispatchKey(Event event) {
+		return null;
+	}
+
 	/**
 	 * Script loader checks this before loading items in event. If false is
 	 * returned, they are not parsed and the event is not registered.
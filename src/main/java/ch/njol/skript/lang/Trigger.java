@@ -52,12 +52,12 @@ public class Trigger extends TriggerSection {
 		boolean success = TriggerItem.walk(this, event);
 
 		// Clear local variables
-		Variables.removeLocals(event);
+		Variables.removeLocalVariables(event);
 		/*
 		 * Local variables can be used in delayed effects by backing reference
 		 * of VariablesMap up. Basically:
 		 *
-		 * Object localVars = Variables.removeLocals(event);
+		 * Object localVars = Variables.removeLocalVariables(event);
 		 *
 		 * ... and when you want to continue execution:
 		 *
@@ -32,6 +32,7 @@ import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.structures.StructVariables.DefaultVariables;
 import ch.njol.skript.util.StringMode;
 import ch.njol.skript.util.Utils;
+import ch.njol.skript.variables.LocalVariableSlots;
 import ch.njol.skript.variables.TypeHints;
 import ch.njol.skript.variables.Variables;
 import ch.njol.util.Checker;
@@ -58,12 +59,13 @@ import org.skriptlang.skript.lang.script.ScriptWarning;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
-import java.util.TreeMap;
 import java.util.function.Function;
 
 public class Variable<T> implements Expression<T> {
@@ -83,6 +85,29 @@ public class Variable<T> implements Expression<T> {
 	 */
 	private final VariableString name;
 
+	/**
+	 * The name of this variable, split into its parts at parse time.
+	 */
+	private final CompiledVariableName compiledName;
+
+	/**
+	 * The slots of the script this local variable is used in,
+	 * {@code null} if this variable doesn't have a slot.
+	 */
+	@Nullable
+	private final LocalVariableSlots slots;
+
+	/**
+	 * The slot of this local variable, see {@link #slots}.
+	 */
+	private final int slot;
+
+	/**
+	 * The name of this local variable, if it has a slot.
+	 */
+	@Nullable
+	private final String slotName;
+
 	private final Class<T> superType;
 	private final Class<? extends T>[] types;
 
@@ -106,11 +131,30 @@ public class Variable<T> implements Expression<T> {
 		this.list = list;
 
 		this.name = name;
+		this.compiledName = new CompiledVariableName(name);
 
 		this.types = types;
 		this.superType = (Class<T>) Utils.getSuperType(types);
 
 		this.source = source;
+
+		// Non-list local variables with a literal name can be stored in a slot
+		if (source != null) {
+			this.slots = source.slots;
+			this.slot = source.slot;
+			this.slotName = source.slotName;
+		} else if (local && !list && name.isSimple() && script != null && !name.toString(null).contains(SEPARATOR)) {
+			String slotName = name.toString(null);
+			if (Variables.caseInsensitiveVariables)
+				slotName = slotName.toLowerCase(Locale.ENGLISH);
+			this.slots = parser.getLocalVariableSlots();
+			this.slot = parser.assignLocalVariableSlot(slotName);
+			this.slotName = slotName;
+		} else {
+			this.slots = null;
+			this.slot = -1;
+			this.slotName = null;
+		}
 	}
 
 	/**
@@ -298,6 +342,20 @@ public class Variable<T> implements Expression<T> {
 		return new Variable<>(name, to, local, list, this);
 	}
 
+	/**
+	 * Gets the parts of this variable's name, which can be passed to {@link Variables} without building the full name.
+	 *
+	 * @param event the event.
+	 * @param data the default variables of the script.
+	 * @return the parts of the name, or {@code null} if the full name has to be built,
+	 * which is always the case if the script has default variables, as these are keyed by the full name.
+	 */
+	private String @Nullable [] getNameParts(Event event, @Nullable DefaultVariables data) {
+		if (data != null)
+			return null;
+		return compiledName.getParts(event);
+	}
+
 	/**
 	 * Gets the value of this variable as stored in the variables map.
 	 * This method also checks against default variables.
@@ -305,6 +363,24 @@ public class Variable<T> implements Expression<T> {
 	@Nullable
 	public Object getRaw(Event event) {
 		DefaultVariables data = script == null ? null : script.getData(DefaultVariables.class);
+		if (slots != null) {
+			assert slotName != null;
+			Object value = Variables.getLocalVariable(slots, slot, slotName, event);
+			if (value != null || data == null || !data.hasDefaultVariables())
+				return value instanceof Player ? convertIfOldPlayer(slotName, event, value) : value;
+		}
+
+		String[] parts = getNameParts(event, data);
+		if (parts != null) {
+			// prevents e.g. {%expr%} where "%expr%" ends with "::*" from returning a Map
+			if (CompiledVariableName.isList(parts) != list)
+				return null;
+			Object value = Variables.getVariable(parts, event, local);
+			if (!list && value instanceof Player)
+				value = convertIfOldPlayer(parts, event, value);
+			return value;
+		}
+
 		if (data != null)
 			data.enterScope();
 		try {
@@ -333,26 +409,75 @@ public class Variable<T> implements Expression<T> {
 		return null;
 	}
 
+	/**
+	 * Takes a snapshot of the indices and values of this list variable.
+	 * This method also checks against default variables.
+	 *
+	 * @param event the event.
+	 * @return the indices in the order of the list variable, paired with their values
+	 * (which may be {@code null} for indices that are only list variables themselves),
+	 * or {@code null} if this list variable is not set.
+	 * @see Variables#getListSnapshot(String, Event, boolean)
+	 */
+	@Nullable
+	public List<Pair<String, Object>> getListSnapshot(Event event) {
+		if (!list)
+			throw new SkriptAPIException("Invalid call to getListSnapshot");
+		DefaultVariables data = script == null ? null : script.getData(DefaultVariables.class);
+		String[] parts = getNameParts(event, data);
+		if (parts != null) {
+			// prevents e.g. {%expr%} where "%expr%" doesn't end with "::*" from returning a single value
+			if (!CompiledVariableName.isList(parts))
+				return null;
+			return Variables.getListSnapshot(parts, event, local);
+		}
+
+		if (data != null)
+			data.enterScope();
+		try {
+			String name = this.name.toString(event);
+
+			// prevents e.g. {%expr%} where "%expr%" doesn't end with "::*" from returning a single value
+			if (!name.endsWith(Variable.SEPARATOR + "*"))
+				return null;
+			List<Pair<String, Object>> snapshot = Variables.getListSnapshot(name, event, local);
+			if (snapshot != null)
+				return snapshot;
+
+			// Check for default variables if value is still null.
+			if (data == null || !data.hasDefaultVariables())
+				return null;
+
+			for (String typeHint : this.name.getDefaultVariableNames(name, event)) {
+				snapshot = Variables.getListSnapshot(typeHint, event, false);
+				if (snapshot != null)
+					return snapshot;
+			}
+		} finally {
+			if (data != null)
+				data.exitScope();
+		}
+		return null;
+	}
+
 	@Nullable
-	@SuppressWarnings("unchecked")
 	private Object get(Event event) {
-		Object rawValue = getRaw(event);
 		if (!list)
-			return rawValue;
-		if (rawValue == null)
+			return getRaw(event);
+		List<Pair<String, Object>> snapshot = getListSnapshot(event);
+		if (snapshot == null)
 			return Array.newInstance(types[0], 0);
-		List<Object> convertedValues = new ArrayList<>();
-		String name = StringUtils.substring(this.name.toString(event), 0, -1);
-		for (Entry<String, ?> variable : ((Map<String, ?>) rawValue).entrySet()) {
-			if (variable.getKey() != null && variable.getValue() != null) {
-				Object value;
-				if (variable.getValue() instanceof Map)
-					value = ((Map<String, ?>) variable.getValue()).get(null);
-				else
-					value = variable.getValue();
-				if (value != null)
-					convertedValues.add(convertIfOldPlayer(name + variable.getKey(), event, value));
+		List<Object> convertedValues = new ArrayList<>(snapshot.size());
+		String name = null; // Only needed for players
+		for (Pair<String, Object> variable : snapshot) {
+			Object value = variable.getValue();
+			if (value instanceof Player) {
+				if (name == null)
+					name = StringUtils.substring(this.name.toString(event), 0, -1);
+				value = convertIfOldPlayer(name + variable.getKey(), event, value);
 			}
+			if (value != null)
+				convertedValues.add(value);
 		}
 		return convertedValues.toArray();
 	}
@@ -364,47 +489,61 @@ public class Variable<T> implements Expression<T> {
 	 */
 	@Nullable
 	Object convertIfOldPlayer(String key, Event event, @Nullable Object object) {
-		if (SkriptConfig.enablePlayerVariableFix.value() && object instanceof Player) {
-			Player oldPlayer = (Player) object;
-			if (!oldPlayer.isValid() && oldPlayer.isOnline()) {
-				Player newPlayer = Bukkit.getPlayer(oldPlayer.getUniqueId());
-				Variables.setVariable(key, newPlayer, event, local);
-				return newPlayer;
-			}
+		if (isOldPlayer(object)) {
+			Player newPlayer = Bukkit.getPlayer(((Player) object).getUniqueId());
+			Variables.setVariable(key, newPlayer, event, local);
+			return newPlayer;
 		}
 		return object;
 	}
 
+	/**
+	 * Same as {@link #convertIfOldPlayer(String, Event, Object)}, given the parts of the variable name.
+	 */
+	@Nullable
+	private Object convertIfOldPlayer(String[] parts, Event event, @Nullable Object object) {
+		if (isOldPlayer(object)) {
+			Player newPlayer = Bukkit.getPlayer(((Player) object).getUniqueId());
+			Variables.setVariable(parts, newPlayer, event, local);
+			return newPlayer;
+		}
+		return object;
+	}
+
+	private static boolean isOldPlayer(@Nullable Object object) {
+		if (!SkriptConfig.enablePlayerVariableFix.value() || !(object instanceof Player))
+			return false;
+		Player player = (Player) object;
+		return !player.isValid() && player.isOnline();
+	}
+
 	public Iterator<Pair<String, Object>> variablesIterator(Event event) {
 		if (!list)
 			throw new SkriptAPIException("Looping a non-list variable");
 		String name = StringUtils.substring(this.name.toString(event), 0, -1);
-		Object val = Variables.getVariable(name + "*", event, local);
-		if (val == null)
+		// the snapshot is a copy, which prevents CMEs
+		List<Pair<String, Object>> snapshot = Variables.getListSnapshot(name + "*", event, local);
+		if (snapshot == null)
 			return new EmptyIterator<>();
-		assert val instanceof TreeMap;
-		// temporary list to prevent CMEs
-		@SuppressWarnings("unchecked")
-		Iterator<String> keys = new ArrayList<>(((Map<String, Object>) val).keySet()).iterator();
+		Iterator<Pair<String, Object>> entries = snapshot.iterator();
 		return new Iterator<Pair<String, Object>>() {
 			@Nullable
-			private String key;
-			@Nullable
-			private Object next = null;
+			private Pair<String, Object> next = null;
 
 			@Override
 			public boolean hasNext() {
 				if (next != null)
 					return true;
-				while (keys.hasNext()) {
-					key = keys.next();
-					if (key != null) {
-						next = convertIfOldPlayer(name + key, event, Variables.getVariable(name + key, event, local));
-						if (next != null && !(next instanceof TreeMap))
-							return true;
+				while (entries.hasNext()) {
+					Pair<String, Object> entry = entries.next();
+					Object value = entry.getValue();
+					if (value instanceof Player)
+						entry.setSecond(convertIfOldPlayer(name + entry.getKey(), event, value));
+					if (entry.getValue() != null) {
+						next = entry;
+						return true;
 					}
 				}
-				next = null;
 				return false;
 			}
 
@@ -412,7 +551,8 @@ public class Variable<T> implements Expression<T> {
 			public Pair<String, Object> next() {
 				if (!hasNext())
 					throw new NoSuchElementException();
-				Pair<String, Object> n = new Pair<>(key, next);
+				Pair<String, Object> n = next;
+				assert n != null;
 				next = null;
 				return n;
 			}
@@ -426,22 +566,18 @@ public class Variable<T> implements Expression<T> {
 
 	@Override
 	@Nullable
-	@SuppressWarnings("unchecked")
 	public Iterator<T> iterator(Event event) {
 		if (!list) {
 			T value = getSingle(event);
 			return value != null ? new SingleItemIterator<>(value) : null;
 		}
 		String name = StringUtils.substring(this.name.toString(event), 0, -1);
-		Object value = Variables.getVariable(name + "*", event, local);
-		if (value == null)
+		// the snapshot is a copy, which prevents CMEs
+		List<Pair<String, Object>> snapshot = Variables.getListSnapshot(name + "*", event, local);
+		if (snapshot == null)
 			return new EmptyIterator<>();
-		assert value instanceof TreeMap;
-		// temporary list to prevent CMEs
-		Iterator<String> keys = new ArrayList<>(((Map<String, Object>) value).keySet()).iterator();
+		Iterator<Pair<String, Object>> entries = snapshot.iterator();
 		return new Iterator<T>() {
-			@Nullable
-			private String key;
 			@Nullable
 			private T next = null;
 
@@ -450,14 +586,13 @@ public class Variable<T> implements Expression<T> {
 			public boolean hasNext() {
 				if (next != null)
 					return true;
-				while (keys.hasNext()) {
-					key = keys.next();
-					if (key != null) {
-						next = Converters.convert(Variables.getVariable(name + key, event, local), types);
-						next = (T) convertIfOldPlayer(name + key, event, next);
-						if (next != null && !(next instanceof TreeMap))
-							return true;
-					}
+				while (entries.hasNext()) {
+					Pair<String, Object> entry = entries.next();
+					next = Converters.convert(entry.getValue(), types);
+					if (next instanceof Player)
+						next = (T) convertIfOldPlayer(name + entry.getKey(), event, next);
+					if (next != null)
+						return true;
 				}
 				next = null;
 				return false;
@@ -492,16 +627,49 @@ public class Variable<T> implements Expression<T> {
 	}
 
 	private void set(Event event, @Nullable Object value) {
+		if (slots != null) {
+			assert slotName != null;
+			Variables.setLocalVariable(slots, slot, slotName, value, event);
+			return;
+		}
+		String[] parts = getNameParts(event, script == null ? null : script.getData(DefaultVariables.class));
+		if (parts != null) {
+			Variables.setVariable(parts, value, event, local);
+			return;
+		}
 		Variables.setVariable("" + name.toString(event), value, event, local);
 	}
 
 	private void setIndex(Event event, String index, @Nullable Object value) {
 		assert list;
+		String[] parts = getNameParts(event, script == null ? null : script.getData(DefaultVariables.class));
+		if (parts != null && !index.isEmpty() && !index.contains(SINGLE_SEPARATOR_CHAR)) {
+			assert CompiledVariableName.isList(parts) : Arrays.toString(parts) + "; " + this.name;
+			String[] indexParts = Arrays.copyOf(parts, parts.length);
+			indexParts[indexParts.length - 1] = Variables.caseInsensitiveVariables ? index.toLowerCase(Locale.ENGLISH) : index;
+			Variables.setVariable(indexParts, value, event, local);
+			return;
+		}
 		String name = this.name.toString(event);
 		assert name.endsWith(SEPARATOR + "*") : name + "; " + this.name;
 		Variables.setVariable(name.substring(0, name.length() - 1) + index, value, event, local);
 	}
 
+	/**
+	 * Changes the given indices of this list variable at once.
+	 *
+	 * @param event the event.
+	 * @param indices the indices, paired with their new values ({@code null} to delete the index).
+	 * @param replace whether to delete this list variable before setting the given indices.
+	 * @see Variables#setListVariable(String, List, boolean, Event, boolean)
+	 */
+	private void setIndices(Event event, List<Pair<String, Object>> indices, boolean replace) {
+		assert list;
+		String name = this.name.toString(event);
+		assert name.endsWith(SEPARATOR + "*") : name + "; " + this.name;
+		Variables.setListVariable(name, indices, replace, event, local);
+	}
+
 	@Override
 	public Class<?>[] acceptChange(ChangeMode mode) {
 		if (!list && mode == ChangeMode.SET)
@@ -515,38 +683,27 @@ public class Variable<T> implements Expression<T> {
 		switch (mode) {
 			case DELETE:
 				if (list) {
-					ArrayList<String> toDelete = new ArrayList<>();
-					Map<String, Object> map = (Map<String, Object>) getRaw(event);
-					if (map == null)
-						return;
-					for (Entry<String, Object> entry : map.entrySet()) {
-						if (entry.getKey() != null){
-							toDelete.add(entry.getKey());
-						}
-					}
-					for (String index : toDelete) {
-						assert index != null;
-						setIndex(event, index, null);
-					}
+					setIndices(event, Collections.emptyList(), true);
+				} else {
+					set(event, null);
 				}
-
-				set(event, null);
 				break;
 			case SET:
 				assert delta != null;
 				if (list) {
-					set(event, null);
+					List<Pair<String, Object>> indices = new ArrayList<>(delta.length);
 					int i = 1;
 					for (Object value : delta) {
 						if (value instanceof Object[]) {
 							for (int j = 0; j < ((Object[]) value).length; j++) {
-								setIndex(event, "" + i + SEPARATOR + (j + 1), ((Object[]) value)[j]);
+								indices.add(new Pair<>("" + i + SEPARATOR + (j + 1), ((Object[]) value)[j]));
 							}
 						} else {
-							setIndex(event, "" + i, value);
+							indices.add(new Pair<>("" + i, value));
 						}
 						i++;
 					}
+					setIndices(event, indices, true);
 				} else if (delta.length > 0) {
 					// if length = 0, likely a failure in casting
 					// (eg, set vector length of {_notvector} to 1, which casts delta to Vector[], resulting in an empty Vector array)
@@ -579,7 +736,7 @@ public class Variable<T> implements Expression<T> {
 					if (mode == ChangeMode.REMOVE) {
 						if (map == null)
 							return;
-						ArrayList<String> toRemove = new ArrayList<>(); // prevents CMEs
+						List<Pair<String, Object>> toRemove = new ArrayList<>(); // prevents CMEs
 						for (Object value : delta) {
 							for (Entry<String, Object> entry : map.entrySet()) {
 								if (Relation.EQUAL.isImpliedBy(Comparators.compare(entry.getValue(), value))) {
@@ -588,39 +745,39 @@ public class Variable<T> implements Expression<T> {
 										continue; // This is NOT a part of list variable
 
 									// Otherwise, we'll mark that key to be set to null
-									toRemove.add(key);
+									toRemove.add(new Pair<>(key, null));
 									break;
 								}
 							}
 						}
-						for (String index : toRemove) {
-							assert index != null;
-							setIndex(event, index, null);
-						}
+						setIndices(event, toRemove, false);
 					} else if (mode == ChangeMode.REMOVE_ALL) {
 						if (map == null)
 							return;
-						ArrayList<String> toRemove = new ArrayList<>(); // prevents CMEs
+						List<Pair<String, Object>> toRemove = new ArrayList<>(); // prevents CMEs
 						for (Entry<String, Object> i : map.entrySet()) {
+							if (i.getKey() == null)
+								continue; // This is NOT a part of list variable
 							for (Object value : delta) {
-								if (Relation.EQUAL.isImpliedBy(Comparators.compare(i.getValue(), value)))
-									toRemove.add(i.getKey());
+								if (Relation.EQUAL.isImpliedBy(Comparators.compare(i.getValue(), value))) {
+									toRemove.add(new Pair<>(i.getKey(), null));
+									break;
+								}
 							}
 						}
-						for (String index : toRemove) {
-							assert index != null;
-							setIndex(event, index, null);
-						}
+						setIndices(event, toRemove, false);
 					} else {
 						assert mode == ChangeMode.ADD;
+						List<Pair<String, Object>> toAdd = new ArrayList<>(delta.length);
 						int i = 1;
 						for (Object value : delta) {
 							if (map != null)
 								while (map.containsKey("" + i))
 									i++;
-							setIndex(event, "" + i, value);
+							toAdd.add(new Pair<>("" + i, value));
 							i++;
 						}
+						setIndices(event, toAdd, false);
 					}
 				} else {
 					Object originalValue = get(event);
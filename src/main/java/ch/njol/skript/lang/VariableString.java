@@ -619,6 +619,14 @@ public class VariableString implements Expression<String> {
 		return isSimple;
 	}
 
+	/**
+	 * @return the literal strings and expressions this string consists of,
+	 * or {@code null} if this is a {@link #isSimple() simple} string.
+	 */
+	Object @Nullable [] getStrings() {
+		return strings;
+	}
+
 	public StringMode getMode() {
 		return mode;
 	}
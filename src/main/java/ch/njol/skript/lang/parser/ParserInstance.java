@@ -29,6 +29,8 @@ import ch.njol.skript.lang.SkriptParser;
 import ch.njol.skript.lang.TriggerSection;
 import ch.njol.skript.log.HandlerList;
 import ch.njol.skript.structures.StructOptions.OptionsData;
+import ch.njol.skript.variables.LocalVariableSlots;
+import ch.njol.skript.variables.Variables;
 import ch.njol.util.Kleenean;
 import ch.njol.util.coll.CollectionUtils;
 import org.bukkit.event.Event;
@@ -375,6 +377,29 @@ public final class ParserInstance implements Experimented {
 		return hasDelayBefore;
 	}
 
+	// Local variables API
+
+	/**
+	 * Assigns a slot to the local variable with the given literal name in the current script,
+	 * which allows storing the variable in an array instead of looking it up by name.
+	 *
+	 * @param name the name of the variable, excluding the local variable token, lowercased
+	 *                if {@link Variables#caseInsensitiveVariables variables are case-insensitive}.
+	 *                Must not be a list variable.
+	 * @return the slot of the variable, which belongs to {@link #getLocalVariableSlots()}.
+	 */
+	public int assignLocalVariableSlot(String name) {
+		return getLocalVariableSlots().assignSlot(name);
+	}
+
+	/**
+	 * @return the slots of the local variables of the current script.
+	 * @see #assignLocalVariableSlot(String)
+	 */
+	public LocalVariableSlots getLocalVariableSlots() {
+		return getCurrentScript().getData(LocalVariableSlots.class, LocalVariableSlots::new);
+	}
+
 	// Logging API
 
 	private final HandlerList handlers = new HandlerList();
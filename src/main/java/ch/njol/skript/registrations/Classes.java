@@ -64,6 +64,7 @@ import ch.njol.util.Kleenean;
 import ch.njol.util.StringUtils;
 import ch.njol.yggdrasil.Tag;
 import ch.njol.yggdrasil.Yggdrasil;
+import ch.njol.yggdrasil.YggdrasilDictionary;
 import ch.njol.yggdrasil.YggdrasilInputStream;
 import ch.njol.yggdrasil.YggdrasilOutputStream;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -698,26 +699,44 @@ public abstract class Classes {
 		return "" + b.toString();
 	}
 	
-	/**
-	 * consists of {@link Yggdrasil#MAGIC_NUMBER} and {@link Variables#YGGDRASIL_VERSION}
-	 */
-	private final static byte[] YGGDRASIL_START = {(byte) 'Y', (byte) 'g', (byte) 'g', 0, (Variables.YGGDRASIL_VERSION >>> 8) & 0xFF, Variables.YGGDRASIL_VERSION & 0xFF};
-	
 	@SuppressWarnings("null")
 	private final static Charset UTF_8 = Charset.forName("UTF-8");
 	
-	private static byte[] getYggdrasilStart(final ClassInfo<?> c) throws NotSerializableException {
+	/**
+	 * The start of every stream of the given Yggdrasil that contains a value of the given class,
+	 * i.e. {@link Yggdrasil#MAGIC_NUMBER}, the Yggdrasil's version, the value's tag and its class ID if it has one.
+	 * <p>
+	 * If the Yggdrasil uses a {@link YggdrasilDictionary}, the class ID is written as a reference to the dictionary
+	 * the same way the Yggdrasil streams would.
+	 */
+	private static byte[] getYggdrasilStart(final ClassInfo<?> c, final Yggdrasil yggdrasil) throws NotSerializableException {
 		assert Enum.class.isAssignableFrom(Kleenean.class) && Tag.getType(Kleenean.class) == Tag.T_ENUM : Tag.getType(Kleenean.class); // TODO why is this check here?
 		final Tag t = Tag.getType(c.getC());
 		assert t.isWrapper() || t == Tag.T_STRING || t == Tag.T_OBJECT || t == Tag.T_ENUM;
-		final byte[] cn = t == Tag.T_OBJECT || t == Tag.T_ENUM ? Variables.yggdrasil.getID(c.getC()).getBytes(UTF_8) : null;
-		final byte[] r = new byte[YGGDRASIL_START.length + 1 + (cn == null ? 0 : 1 + cn.length)];
+		final String id = t == Tag.T_OBJECT || t == Tag.T_ENUM ? yggdrasil.getID(c.getC()) : null;
+		final YggdrasilDictionary dictionary = yggdrasil.getDictionary();
+		final boolean reference = id != null && dictionary != null && id.length() > 4;
+		final byte[] cn;
+		if (id == null) {
+			cn = null;
+		} else if (reference) {
+			// Same as the dictionary reference written by the stream
+			final int ref = dictionary.getID(id);
+			cn = ref <= 0x7FFF ? writeBigEndian(new byte[2], 0x8000 | ref, 2) : writeBigEndian(new byte[4], ref, 4);
+		} else {
+			cn = id.getBytes(UTF_8);
+		}
+		final byte[] r = new byte[7 + (cn == null ? 0 : 1 + cn.length)];
 		int i = 0;
-		for (; i < YGGDRASIL_START.length; i++)
-			r[i] = YGGDRASIL_START[i];
+		r[i++] = (byte) 'Y';
+		r[i++] = (byte) 'g';
+		r[i++] = (byte) 'g';
+		r[i++] = 0;
+		r[i++] = (byte) (yggdrasil.version >>> 8);
+		r[i++] = (byte) yggdrasil.version;
 		r[i++] = t.tag;
 		if (cn != null) {
-			r[i++] = (byte) cn.length;
+			r[i++] = (byte) (reference ? Yggdrasil.DICTIONARY_REFERENCE : cn.length);
 			for (int j = 0; j < cn.length; j++)
 				r[i++] = cn[j];
 		}
@@ -726,15 +745,24 @@ public abstract class Classes {
 	}
 	
 	/**
-	 * Must be called on the appropriate thread for the given value (i.e. the main thread currently)
+	 * Must be called on the appropriate thread for the given value, i.e. the main thread
+	 * unless the value can't be modified concurrently and its serializer doesn't require the main thread.
 	 */
 	public static SerializedVariable.@Nullable Value serialize(@Nullable Object o) {
+		return serialize(o, Variables.yggdrasil);
+	}
+	
+	/**
+	 * Serializes the given value using the given Yggdrasil, e.g. {@link Variables#yggdrasil} or one
+	 * {@link Yggdrasil#withDictionary(YggdrasilDictionary) using a dictionary} derived from it.
+	 * The value can only be deserialized again using an Yggdrasil of the same version and dictionary.
+	 * 
+	 * @see #serialize(Object)
+	 */
+	public static SerializedVariable.@Nullable Value serialize(@Nullable Object o, final Yggdrasil yggdrasil) {
 		if (o == null)
 			return null;
 		
-		// temporary
-		assert Bukkit.isPrimaryThread();
-		
 		ClassInfo<?> ci = getSuperClassInfo(o.getClass());
 		if (ci.getSerializeAs() != null) {
 			ci = getExactClassInfo(ci.getSerializeAs());
@@ -756,20 +784,23 @@ public abstract class Classes {
 		assert s.mustSyncDeserialization() ? Bukkit.isPrimaryThread() : true;
 		
 		try {
-			final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-			final YggdrasilOutputStream yout = Variables.yggdrasil.newOutputStream(bout);
-			yout.writeObject(o);
-			yout.flush();
-			yout.close();
-			final byte[] r = bout.toByteArray();
-			final byte[] start = getYggdrasilStart(ci);
-			for (int i = 0; i < start.length; i++)
-				assert r[i] == start[i] : o + " (" + ci.getC().getName() + "); " + Arrays.toString(start) + ", " + Arrays.toString(r);
-			final byte[] r2 = new byte[r.length - start.length];
-			System.arraycopy(r, start.length, r2, 0, r2.length);
+			byte[] r2 = o.getClass() == ci.getC() ? serializeSimple(o) : null;
+			if (r2 == null) {
+				final SerializationBuffer bout = SERIALIZATION_BUFFER.get();
+				bout.reset();
+				final YggdrasilOutputStream yout = yggdrasil.newOutputStream(bout);
+				yout.writeObject(o);
+				yout.flush();
+				yout.close();
+				final byte[] start = getYggdrasilStart(ci, yggdrasil);
+				assert bout.startsWith(start) : o + " (" + ci.getC().getName() + "); " + Arrays.toString(start) + ", " + Arrays.toString(bout.toByteArray());
+				r2 = bout.toByteArray(start.length);
+				if (bout.isOversized())
+					SERIALIZATION_BUFFER.remove();
+			}
 			
 			Object d;
-			assert equals(o, d = deserialize(ci, new ByteArrayInputStream(r2))) : o + " (" + o.getClass() + ") != " + d + " (" + (d == null ? null : d.getClass()) + "): " + Arrays.toString(r);
+			assert equals(o, d = deserialize(ci, new ByteArrayInputStream(r2), yggdrasil)) : o + " (" + o.getClass() + ") != " + d + " (" + (d == null ? null : d.getClass()) + "): " + Arrays.toString(r2);
 			
 			return new SerializedVariable.Value(ci.getCodeName(), r2);
 		} catch (final IOException e) { // shouldn't happen
@@ -778,6 +809,91 @@ public abstract class Classes {
 		}
 	}
 	
+	/**
+	 * Serializes the given number, boolean, character or string directly, in the same format as Yggdrasil would
+	 * (without the {@link #getYggdrasilStart(ClassInfo, Yggdrasil) start}), but without creating any streams.
+	 * These encodings don't contain any class IDs or field names, so they don't depend on the Yggdrasil's dictionary.
+	 * 
+	 * @return The serialized value, or null if the value isn't of one of these types
+	 */
+	@Nullable
+	private static byte[] serializeSimple(final Object o) {
+		final Class<?> c = o.getClass();
+		if (c == String.class) {
+			final byte[] d = ((String) o).getBytes(UTF_8);
+			// Same as Yggdrasil's unsigned int length prefix
+			final int prefix = d.length <= 0x7FFF ? 2 : 4;
+			final byte[] r = new byte[prefix + d.length];
+			if (prefix == 2) {
+				r[0] = (byte) (0x80 | (d.length >>> 8));
+				r[1] = (byte) d.length;
+			} else {
+				writeBigEndian(r, d.length, 4);
+			}
+			System.arraycopy(d, 0, r, prefix, d.length);
+			return r;
+		} else if (c == Long.class) {
+			return writeBigEndian(new byte[8], (Long) o, 8);
+		} else if (c == Double.class) {
+			return writeBigEndian(new byte[8], Double.doubleToLongBits((Double) o), 8);
+		} else if (c == Integer.class) {
+			return writeBigEndian(new byte[4], (Integer) o, 4);
+		} else if (c == Float.class) {
+			return writeBigEndian(new byte[4], Float.floatToIntBits((Float) o), 4);
+		} else if (c == Boolean.class) {
+			return new byte[] {(byte) ((Boolean) o ? 1 : 0)};
+		} else if (c == Short.class) {
+			return writeBigEndian(new byte[2], (Short) o, 2);
+		} else if (c == Character.class) {
+			return writeBigEndian(new byte[2], (Character) o, 2);
+		} else if (c == Byte.class) {
+			return new byte[] {(Byte) o};
+		}
+		return null;
+	}
+	
+	private static byte[] writeBigEndian(final byte[] r, final long value, final int length) {
+		for (int i = 0; i < length; i++)
+			r[i] = (byte) (value >>> (8 * (length - 1 - i)));
+		return r;
+	}
+	
+	/**
+	 * A reusable buffer for {@link #serialize(Object)}, which allows copying its contents without the Yggdrasil start.
+	 */
+	private static final class SerializationBuffer extends ByteArrayOutputStream {
+		
+		/**
+		 * Buffers that grew larger than this are not reused, so a single large value doesn't keep its buffer alive.
+		 */
+		private static final int MAX_REUSED_SIZE = 64 * 1024;
+		
+		SerializationBuffer() {
+			super(256);
+		}
+		
+		boolean startsWith(final byte[] start) {
+			if (count < start.length)
+				return false;
+			for (int i = 0; i < start.length; i++) {
+				if (buf[i] != start[i])
+					return false;
+			}
+			return true;
+		}
+		
+		byte[] toByteArray(final int offset) {
+			return Arrays.copyOfRange(buf, offset, count);
+		}
+		
+		boolean isOversized() {
+			return buf.length > MAX_REUSED_SIZE;
+		}
+		
+	}
+	
+	private static final ThreadLocal<SerializationBuffer> SERIALIZATION_BUFFER = ThreadLocal.withInitial(SerializationBuffer::new);
+	
 	private static boolean equals(final @Nullable Object o, final @Nullable Object d) {
 		if (o instanceof Chunk) { // CraftChunk does neither override equals nor is it a "coordinate-specific singleton" like Block
 			if (!(d instanceof Chunk))
@@ -793,22 +909,41 @@ public abstract class Classes {
 		return deserialize(type, new ByteArrayInputStream(value));
 	}
 	
+	@Nullable
+	public static Object deserialize(final ClassInfo<?> type, final byte[] value, final Yggdrasil yggdrasil) {
+		return deserialize(type, new ByteArrayInputStream(value), yggdrasil);
+	}
+	
 	@Nullable
 	public static Object deserialize(final String type, final byte[] value) {
+		return deserialize(type, value, Variables.yggdrasil);
+	}
+	
+	@Nullable
+	public static Object deserialize(final String type, final byte[] value, final Yggdrasil yggdrasil) {
 		final ClassInfo<?> ci = getClassInfoNoError(type);
 		if (ci == null)
 			return null;
-		return deserialize(ci, new ByteArrayInputStream(value));
+		return deserialize(ci, new ByteArrayInputStream(value), yggdrasil);
 	}
 	
 	@Nullable
-	public static Object deserialize(final ClassInfo<?> type, InputStream value) {
+	public static Object deserialize(final ClassInfo<?> type, final InputStream value) {
+		return deserialize(type, value, Variables.yggdrasil);
+	}
+	
+	/**
+	 * Deserializes a value serialized by {@link #serialize(Object, Yggdrasil)}
+	 * using an Yggdrasil of the same version and dictionary.
+	 */
+	@Nullable
+	public static Object deserialize(final ClassInfo<?> type, InputStream value, final Yggdrasil yggdrasil) {
 		Serializer<?> s;
 		assert (s = type.getSerializer()) != null && (s.mustSyncDeserialization() ? Bukkit.isPrimaryThread() : true) : type + "; " + s + "; " + Bukkit.isPrimaryThread();
 		YggdrasilInputStream in = null;
 		try {
-			value = new SequenceInputStream(new ByteArrayInputStream(getYggdrasilStart(type)), value);
-			in = Variables.yggdrasil.newInputStream(value);
+			value = new SequenceInputStream(new ByteArrayInputStream(getYggdrasilStart(type, yggdrasil)), value);
+			in = yggdrasil.newInputStream(value);
 			return in.readObject();
 		} catch (final IOException e) { // i.e. invalid save
 			if (Skript.testing())
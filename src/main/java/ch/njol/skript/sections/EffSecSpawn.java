@@ -152,7 +152,7 @@ public class EffSecSpawn extends EffectSection {
 				// And copy our (possibly modified) local variables back to the calling code
 				Variables.setLocalVariables(event, Variables.copyLocalVariables(spawnEvent));
 				// Clear spawnEvent's local variables as it won't be done automatically
-				Variables.removeLocals(spawnEvent);
+				Variables.removeLocalVariables(spawnEvent);
 			};
 		} else {
 			consumer = null;
@@ -22,6 +22,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
@@ -179,4 +181,40 @@ public abstract class Task implements Runnable, Closeable {
 		return null;
 	}
 	
+	/**
+	 * Calls a method on Bukkit's main thread, waiting at most the given time for it to complete.
+	 * <p>
+	 * If the method doesn't complete in time, it will still be called, but this method doesn't wait for it anymore.
+	 * 
+	 * @param c The method
+	 * @param p The plugin that owns the task. Must be enabled.
+	 * @param timeout The maximum time to wait in milliseconds, or 0 to wait until the method completes
+	 * @return What the method returned or null if it threw an error, was stopped or didn't complete in time
+	 */
+	@Nullable
+	public static <T> T callSync(final Callable<T> c, final Plugin p, final long timeout) {
+		if (timeout <= 0)
+			return callSync(c, p);
+		if (Bukkit.isPrimaryThread()) {
+			try {
+				return c.call();
+			} catch (final Exception e) {
+				Skript.exception(e);
+				return null;
+			}
+		}
+		final Future<T> f = Bukkit.getScheduler().callSyncMethod(p, c);
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		try {
+			while (true) {
+				try {
+					return f.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				} catch (final InterruptedException e) {}
+			}
+		} catch (final ExecutionException e) {
+			Skript.exception(e);
+		} catch (final TimeoutException e) {} catch (final CancellationException e) {} catch (final ThreadDeath e) {}// server shutting down
+		return null;
+	}
+	
 }
@@ -0,0 +1,168 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.util;
+
+import ch.njol.skript.Skript;
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A hashed timing wheel running delayed tasks on the main thread, driven by a single repeating Bukkit task.
+ * Used instead of scheduling a Bukkit task per delay, as Bukkit's scheduler doesn't cope well with many thousand pending tasks.
+ * <p>
+ * Tasks can be scheduled from any thread. They are put into the slot of the tick they're due at
+ * by the driving task, which then runs all due tasks of the current slot in the order they were scheduled.
+ * Like Bukkit tasks, a task scheduled with a delay of one tick runs on the next tick.
+ */
+public final class TimerWheel {
+
+	private TimerWheel() { }
+
+	/**
+	 * The number of slots, must be a power of two. Tasks due in more ticks than this stay in their slot for several rounds.
+	 */
+	static final int SLOTS = 512;
+
+	private static final class Entry {
+
+		final long dueTick;
+		final Runnable task;
+
+		Entry(long dueTick, Runnable task) {
+			this.dueTick = dueTick;
+			this.task = task;
+		}
+
+	}
+
+	/**
+	 * The tasks by the tick they're due at modulo {@link #SLOTS}, only accessed by the driving task.
+	 */
+	@SuppressWarnings("unchecked")
+	private static final List<Entry>[] slots = new List[SLOTS];
+
+	static {
+		for (int i = 0; i < SLOTS; i++)
+			slots[i] = new ArrayList<>();
+	}
+
+	/**
+	 * Tasks that have been scheduled, but not been put into their slot yet.
+	 */
+	private static final Queue<Entry> scheduled = new ConcurrentLinkedQueue<>();
+
+	private static final LongAdder pending = new LongAdder();
+
+	/**
+	 * The ticks counted by the driving task, only written by it.
+	 */
+	private static volatile long currentTick;
+
+	private static volatile boolean started;
+
+	/**
+	 * Starts the task driving the wheel if it isn't running yet.
+	 * <p>
+	 * The task should be started before any scripts are loaded: within a tick, Bukkit runs tasks in the order they were created,
+	 * so a delay started by an earlier task would otherwise be counted from the previous tick.
+	 */
+	public static synchronized void start() {
+		if (started)
+			return;
+		Bukkit.getScheduler().scheduleSyncRepeatingTask(Skript.getInstance(), TimerWheel::tick, 1, 1);
+		started = true;
+	}
+
+	/**
+	 * Schedules a task to run on the main thread after the given amount of ticks.
+	 *
+	 * @param task The task.
+	 * @param ticks The delay in ticks, at least one tick is used.
+	 */
+	public static void schedule(Runnable task, long ticks) {
+		if (!started)
+			start();
+		schedule(task, ticks, currentTick);
+	}
+
+	/**
+	 * Schedules a task without starting the driving task.
+	 *
+	 * @param task The task.
+	 * @param ticks The delay in ticks, at least one tick is used.
+	 * @param fromTick The tick the delay is counted from. May have passed already if the driving task ran after it was read,
+	 *                 in which case the task runs on the next tick the driving task runs at.
+	 */
+	static void schedule(Runnable task, long ticks, long fromTick) {
+		pending.increment();
+		scheduled.add(new Entry(fromTick + Math.max(ticks, 1), task));
+	}
+
+	/**
+	 * @return The number of tasks waiting to be run.
+	 */
+	public static long getPending() {
+		return pending.sum();
+	}
+
+	/**
+	 * @return The ticks counted by the driving task.
+	 */
+	static long getCurrentTick() {
+		return currentTick;
+	}
+
+	static void tick() {
+		long tick = currentTick + 1;
+		currentTick = tick;
+
+		// A task scheduled while the previous tick ran may already be due, so it's put into the current slot instead of
+		// the slot of its due tick, which wouldn't be reached again for another round
+		Entry entry;
+		while ((entry = scheduled.poll()) != null)
+			slots[(int) (Math.max(entry.dueTick, tick) & (SLOTS - 1))].add(entry);
+
+		List<Entry> slot = slots[(int) (tick & (SLOTS - 1))];
+		if (slot.isEmpty())
+			return;
+
+		// Tasks scheduled while running these are added to the queue, so the slot doesn't change while iterating it
+		int kept = 0;
+		for (int i = 0; i < slot.size(); i++) {
+			entry = slot.get(i);
+			if (entry.dueTick > tick) { // Due in a later round
+				slot.set(kept++, entry);
+				continue;
+			}
+			pending.decrement();
+			try {
+				entry.task.run();
+			} catch (RuntimeException e) {
+				Skript.exception(e, "An error occurred while running a delayed task");
+			}
+		}
+		slot.subList(kept, slot.size()).clear();
+	}
+
+}
@@ -0,0 +1,752 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptConfig;
+import ch.njol.skript.config.SectionNode;
+import ch.njol.skript.log.SkriptLogger;
+import ch.njol.skript.util.ExceptionUtils;
+import ch.njol.skript.util.FileUtils;
+import ch.njol.skript.util.Task;
+import ch.njol.skript.util.Timespan;
+import ch.njol.skript.variables.SerializedVariable.Value;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Semaphore;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * A variable storage that stores its content in an append-only log of binary records.
+ * <p>
+ * Every variable change is appended to the active segment of the log as a record
+ * containing the variable name, the type and the serialized value (or a deletion marker),
+ * prefixed with the length and the CRC32 checksum of the record.
+ * Unlike {@link FlatFileStorage}, values are not hex encoded,
+ * and the log never has to be rewritten as a whole while variables are being changed.
+ * <p>
+ * The log consists of the {@link #file base file} and the segments {@code <file>.1}, {@code <file>.2}, ...,
+ * which are applied to the base file in ascending order.
+ * Once the active segment becomes too large, a new one is started,
+ * and the previous (sealed) segments are merged into the base file on a separate thread.
+ * <p>
+ * Records that were only partially written, e.g. because the server crashed,
+ * are detected by their checksum and discarded when the log is loaded.
+ */
+public class BinaryLogStorage extends VariablesStorage {
+
+	/**
+	 * The magic number at the start of each log file.
+	 */
+	static final int MAGIC = 0x534B564C; // SKVL
+
+	/**
+	 * The version of the format of the log files.
+	 */
+	static final byte FORMAT_VERSION = 1;
+
+	/**
+	 * The size of the header of each log file, the {@link #MAGIC} and the {@link #FORMAT_VERSION}.
+	 */
+	static final int HEADER_SIZE = 5;
+
+	/**
+	 * The size of the header of each record, the length and the checksum of the record.
+	 */
+	static final int RECORD_HEADER_SIZE = 8;
+
+	/**
+	 * The size in bytes after which a new segment is started.
+	 */
+	private static final long SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * The size of the buffers used to read and write log files.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The stream the variable changes are appended to, {@code null} if disconnected.
+	 * <p>
+	 * Must only be used while holding the {@link #connectionLock}.
+	 */
+	@Nullable
+	private DataOutputStream activeOut;
+
+	/**
+	 * The number of the active segment, i.e. the segment {@link #activeOut} writes to.
+	 * Segments with a lower number are sealed and may be compacted.
+	 */
+	private long activeSegment = 0;
+
+	/**
+	 * The size of the active segment.
+	 */
+	private long activeSize = 0;
+
+	/**
+	 * The total size of all sealed segments that haven't been compacted yet.
+	 */
+	private long sealedSize = 0;
+
+	/**
+	 * Held while compacting, so only one compaction runs at a time.
+	 * <p>
+	 * Must be acquired before the {@link #connectionLock} if both are used.
+	 */
+	private final Object compactionLock = new Object();
+
+	/**
+	 * Released to request a compaction from the {@link #compactionThread}.
+	 */
+	private final Semaphore compactionRequests = new Semaphore(0);
+
+	/**
+	 * The thread merging sealed segments into the base file.
+	 */
+	private final Thread compactionThread;
+
+	/**
+	 * Create a new binary log storage of the given name.
+	 *
+	 * @param name the name.
+	 */
+	BinaryLogStorage(String name) {
+		super(name);
+
+		compactionThread = Skript.newThread(() -> {
+			while (!closed) {
+				try {
+					compactionRequests.acquire();
+					compactionRequests.drainPermits();
+				} catch (InterruptedException e) {
+					// The `closed` field will indicate whether the thread actually needs to stop
+					continue;
+				}
+
+				compact();
+			}
+		}, "Skript variable compaction thread for database '" + name + "'");
+	}
+
+	/**
+	 * Loads the variables in the log.
+	 * <p>
+	 * Doesn't lock the connection, as required by
+	 * {@link Variables#variableLoaded(String, Object, VariablesStorage)}.
+	 */
+	@Override
+	protected boolean load_i(SectionNode sectionNode) {
+		SkriptLogger.setNode(null);
+
+		if (file == null) {
+			assert false : this;
+			return false;
+		}
+
+		// Left over from an interrupted compaction, the base file and the segments are still intact
+		File compactionFile = getCompactionFile();
+		if (compactionFile.exists() && !compactionFile.delete())
+			Skript.warning("Could not delete the unfinished compaction file " + compactionFile.getName());
+
+		List<File> logFiles = new ArrayList<>();
+		logFiles.add(file);
+		logFiles.addAll(getSegments(Long.MAX_VALUE));
+
+		// Replay the log, only the last record of each variable matters
+		Map<String, Value> values = new LinkedHashMap<>();
+		for (File logFile : logFiles) {
+			try {
+				long intactLength = readLog(logFile, (variable, position) -> {
+					if (variable.value == null) {
+						values.remove(variable.name);
+					} else {
+						values.put(variable.name, variable.value);
+					}
+				});
+
+				if (intactLength == -1) {
+					Skript.error("The file " + logFile.getName() + " is not a variables log of this version of Skript.");
+					return false;
+				}
+
+				if (intactLength < logFile.length()) {
+					Skript.warning("The end of " + logFile.getName() + " was not written completely, " +
+						"the last " + (logFile.length() - intactLength) + " bytes will be discarded.");
+					try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+						channel.truncate(intactLength);
+					}
+				}
+
+				if (logFile != file)
+					sealedSize += logFile.length();
+			} catch (IOException e) {
+				Skript.error("An I/O error occurred while loading the variables from " + logFile.getName() + ": " +
+					ExceptionUtils.toString(e));
+				Skript.error("This means that some to all variables could not be loaded!");
+				return false;
+			}
+		}
+
+		List<String> invalid;
+		try (ParallelDeserializer deserializer = new ParallelDeserializer((name, value) -> Variables.variableLoaded(name, value, this),
+				SkriptConfig.lazyVariableDeserialization.value())) {
+			for (Entry<String, Value> entry : values.entrySet()) {
+				Value value = entry.getValue();
+				deserializer.add(entry.getKey(), value.type, () -> value.data);
+			}
+			deserializer.flush();
+			invalid = deserializer.getFailed();
+		}
+		values.clear();
+
+		if (!invalid.isEmpty()) {
+			Skript.error(invalid.size() + " variable" + (invalid.size() == 1 ? "" : "s") + " could not be loaded!");
+			Skript.error("Affected variables: " + String.join(", ", invalid));
+		}
+
+		// Continue after the last existing segment
+		activeSegment = logFiles.size() == 1 ? 0 : getSegmentNumber(logFiles.get(logFiles.size() - 1));
+		if (!connect())
+			return false;
+
+		compactionThread.start();
+		if (sealedSize > 0)
+			compactionRequests.release();
+
+		return true;
+	}
+
+	@Override
+	protected void allLoaded() {
+		// no transaction support
+	}
+
+	@Override
+	protected boolean requiresFile() {
+		return true;
+	}
+
+	@Override
+	protected File getFile(String fileName) {
+		return new File(fileName);
+	}
+
+	/**
+	 * Seals the active segment. All changes are written to a new segment after reconnecting.
+	 */
+	@Override
+	protected final void disconnect() {
+		synchronized (connectionLock) {
+			DataOutputStream out = activeOut;
+			if (out == null)
+				return;
+
+			activeOut = null;
+			sealedSize += activeSize;
+			activeSize = 0;
+			try {
+				out.close();
+			} catch (IOException e) {
+				Skript.error("Could not close the segment " + getSegment(activeSegment).getName() + ": " +
+					ExceptionUtils.toString(e));
+			}
+		}
+	}
+
+	/**
+	 * Starts a new active segment.
+	 */
+	@Override
+	protected final boolean connect() {
+		synchronized (connectionLock) {
+			if (activeOut != null)
+				return true;
+
+			File segment = getSegment(activeSegment + 1);
+			try {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment), BUFFER_SIZE));
+				writeHeader(out);
+				out.flush();
+
+				activeSegment++;
+				activeSize = HEADER_SIZE;
+				activeOut = out;
+				return true;
+			} catch (IOException e) {
+				Skript.error("Could not create the segment " + segment.getName() + ": " + ExceptionUtils.toString(e));
+				return false;
+			}
+		}
+	}
+
+	@Override
+	protected boolean save(String name, @Nullable String type, @Nullable byte[] value) {
+		synchronized (connectionLock) {
+			return append(name, type, value) && flush();
+		}
+	}
+
+	/**
+	 * Appends all changes before flushing the active segment.
+	 */
+	@Override
+	protected void save(List<SerializedVariable> changes) {
+		synchronized (connectionLock) {
+			for (SerializedVariable variable : changes) {
+				Value value = variable.value;
+				if (value != null)
+					append(variable.name, value.type, value.data);
+				else
+					append(variable.name, null, null);
+			}
+			flush();
+		}
+	}
+
+	/**
+	 * Appends a record to the active segment, without flushing it.
+	 * Must be called while holding the {@link #connectionLock}.
+	 *
+	 * @return whether the record was written.
+	 * @see #save(String, String, byte[])
+	 */
+	private boolean append(String name, @Nullable String type, @Nullable byte[] value) {
+		DataOutputStream out = activeOut;
+		if (out == null) {
+			if (closed || !connect())
+				return false;
+			out = activeOut;
+			assert out != null;
+		}
+
+		try {
+			byte[] record = encodeRecord(name, type, value);
+			out.write(record);
+			activeSize += record.length;
+		} catch (IOException e) {
+			Skript.error("Could not save the variable {" + name + "} to the database '" + databaseName + "': " +
+				ExceptionUtils.toString(e));
+			return false;
+		}
+
+		if (activeSize >= SEGMENT_SIZE) {
+			// Closing the segment also flushes it
+			disconnect();
+			connect();
+
+			// Compact once the sealed segments are a considerable part of the log
+			if (sealedSize >= Math.max(SEGMENT_SIZE, file == null ? 0 : file.length() / 2))
+				compactionRequests.release();
+		}
+		return true;
+	}
+
+	/**
+	 * Flushes the active segment.
+	 * Must be called while holding the {@link #connectionLock}.
+	 *
+	 * @return whether the segment could be flushed.
+	 */
+	private boolean flush() {
+		DataOutputStream out = activeOut;
+		if (out == null)
+			return true;
+
+		try {
+			out.flush();
+			return true;
+		} catch (IOException e) {
+			Skript.error("Could not write the variables to the database '" + databaseName + "': " + ExceptionUtils.toString(e));
+			return false;
+		}
+	}
+
+	/**
+	 * Seals the active segment and merges it into the base file before making a backup of the base file,
+	 * as the base file alone wouldn't contain the latest changes.
+	 */
+	@Override
+	public void startBackupTask(Timespan backupInterval) {
+		// File is null or backup interval is invalid
+		if (file == null || backupInterval.getTicks() == 0)
+			return;
+
+		backupTask = new Task(Skript.getInstance(), backupInterval.getTicks(), backupInterval.getTicks(), true) {
+			@Override
+			public void run() {
+				synchronized (compactionLock) {
+					synchronized (connectionLock) {
+						disconnect();
+						connect();
+					}
+
+					compact();
+					try {
+						FileUtils.backup(file);
+					} catch (IOException e) {
+						Skript.error("Automatic variables backup failed: " + e.getLocalizedMessage());
+					}
+				}
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+		if (backupTask != null)
+			backupTask.cancel();
+		super.close();
+
+		compactionThread.interrupt();
+		try {
+			// Let a running compaction finish, as it would have to be redone on the next start otherwise
+			compactionThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		disconnect();
+	}
+
+	/**
+	 * Merges all sealed segments into the base file.
+	 * <p>
+	 * Only the sealed segments and the base file are read, so variables can still be saved
+	 * to the active segment while compacting. The new base file is written to a temporary file first,
+	 * and the sealed segments are only deleted once it replaced the old base file,
+	 * so a crash while compacting doesn't lose any variables.
+	 */
+	private void compact() {
+		synchronized (compactionLock) {
+			if (file == null) {
+				assert false : this;
+				return;
+			}
+
+			long firstActiveSegment;
+			synchronized (connectionLock) {
+				firstActiveSegment = activeOut == null ? activeSegment + 1 : activeSegment;
+			}
+			List<File> segments = getSegments(firstActiveSegment);
+			if (segments.isEmpty())
+				return;
+
+			List<File> logFiles = new ArrayList<>();
+			logFiles.add(file);
+			logFiles.addAll(segments);
+
+			long start = System.currentTimeMillis();
+			File compactionFile = getCompactionFile();
+			try {
+				writeCompacted(logFiles, compactionFile);
+				FileUtils.move(compactionFile, file, true);
+			} catch (IOException e) {
+				Skript.error("Could not compact the variables of the database '" + databaseName +
+					"' (no variables are lost): " + ExceptionUtils.toString(e));
+				//noinspection ResultOfMethodCallIgnored
+				compactionFile.delete();
+				return;
+			}
+
+			long compactedSize = 0;
+			for (File segment : segments) {
+				compactedSize += segment.length();
+				if (!segment.delete())
+					Skript.warning("Could not delete the compacted segment " + segment.getName());
+			}
+			synchronized (connectionLock) {
+				sealedSize -= compactedSize;
+			}
+
+			Skript.debug("Compacted " + segments.size() + " segment" + (segments.size() == 1 ? "" : "s") +
+				" of the database '" + databaseName + "' in " + (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	/**
+	 * Writes the last record of each variable that is set in the given log files to a new log file.
+	 *
+	 * @param logFiles the log files, in the order they have to be applied.
+	 * @param target the file to write the compacted log to, which is synced to the disk.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void writeCompacted(List<File> logFiles, File target) throws IOException {
+		// Find the position of the last record of each variable
+		Map<String, Long> lastRecords = new HashMap<>();
+		for (int i = 0; i < logFiles.size(); i++) {
+			long logFileIndex = (long) i << 40;
+			readLog(logFiles.get(i), (variable, position) -> {
+				if (variable.value == null) {
+					lastRecords.remove(variable.name);
+				} else {
+					lastRecords.put(variable.name, logFileIndex | position);
+				}
+			});
+		}
+
+		// Copy only those records to the new file
+		try (FileOutputStream fileOut = new FileOutputStream(target)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE));
+			writeHeader(out);
+			for (int i = 0; i < logFiles.size(); i++) {
+				long logFileIndex = (long) i << 40;
+				readLog(logFiles.get(i), (variable, position) -> {
+					Long lastRecord = lastRecords.get(variable.name);
+					if (lastRecord == null || lastRecord != (logFileIndex | position))
+						return;
+
+					Value value = variable.value;
+					assert value != null;
+					try {
+						out.write(encodeRecord(variable.name, value.type, value.data));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * @return the temporary file the new base file is written to while compacting.
+	 */
+	private File getCompactionFile() {
+		assert file != null;
+		return new File(file.getPath() + ".compacting");
+	}
+
+	/**
+	 * @param number the number of the segment.
+	 * @return the file of the segment with the given number.
+	 */
+	private File getSegment(long number) {
+		assert file != null;
+		return new File(file.getPath() + "." + number);
+	}
+
+	/**
+	 * @param segment the file of a segment.
+	 * @return the number of the given segment, or {@code -1} if the file isn't a segment.
+	 */
+	private long getSegmentNumber(File segment) {
+		assert file != null;
+		String prefix = file.getName() + ".";
+		String segmentName = segment.getName();
+		if (!segmentName.startsWith(prefix) || segmentName.length() == prefix.length())
+			return -1;
+
+		long number = 0;
+		for (int i = prefix.length(); i < segmentName.length(); i++) {
+			char c = segmentName.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			number = number * 10 + (c - '0');
+		}
+		return number;
+	}
+
+	/**
+	 * Gets the existing segments, in the order they have to be applied.
+	 *
+	 * @param before the segment number (exclusive) up to which segments are returned.
+	 * @return the segment files.
+	 */
+	private List<File> getSegments(long before) {
+		assert file != null;
+		File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+		List<File> segments = new ArrayList<>();
+		if (files == null)
+			return segments;
+
+		for (File segment : files) {
+			long number = getSegmentNumber(segment);
+			if (number > 0 && number < before && segment.isFile())
+				segments.add(segment);
+		}
+		segments.sort((first, second) -> Long.compare(getSegmentNumber(first), getSegmentNumber(second)));
+		return segments;
+	}
+
+	/**
+	 * Writes the header of a log file.
+	 *
+	 * @param out the stream to write the header to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(FORMAT_VERSION);
+	}
+
+	/**
+	 * Encodes a record of a variable change.
+	 * <p>
+	 * {@code type} and {@code value} are <i>both</i> {@code null}
+	 * iff the record deletes the variable.
+	 *
+	 * @param name the name of the variable.
+	 * @param type the type of the variable.
+	 * @param value the serialized value of the variable.
+	 * @return the record, including its length and checksum.
+	 */
+	static byte[] encodeRecord(String name, @Nullable String type, @Nullable byte[] value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER_SIZE + name.length() + 16 + (value == null ? 0 : value.length));
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			// Placeholder for the length and the checksum
+			out.writeLong(0);
+
+			byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(nameBytes.length);
+			out.write(nameBytes);
+
+			if (type == null || value == null) {
+				out.writeBoolean(false);
+			} else {
+				out.writeBoolean(true);
+				out.writeUTF(type);
+				out.writeInt(value.length);
+				out.write(value);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // a ByteArrayOutputStream can't throw IOExceptions
+		}
+
+		byte[] record = bytes.toByteArray();
+		int length = record.length - RECORD_HEADER_SIZE;
+		CRC32 crc = new CRC32();
+		crc.update(record, RECORD_HEADER_SIZE, length);
+		writeInt(record, 0, length);
+		writeInt(record, 4, (int) crc.getValue());
+		return record;
+	}
+
+	/**
+	 * Writes the given int to the given array, in big-endian byte order.
+	 */
+	private static void writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+	/**
+	 * Reads all intact records of a log file, in the order they were written.
+	 * <p>
+	 * Reading stops at the first record that wasn't written completely or whose checksum doesn't match.
+	 *
+	 * @param logFile the log file.
+	 * @param consumer the consumer of the records and their positions in the file.
+	 * @return the length of the intact part of the file,
+	 * or {@code -1} if the file doesn't start with a valid header.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static long readLog(File logFile, ObjLongConsumer<SerializedVariable> consumer) throws IOException {
+		long length = logFile.length();
+		if (length == 0)
+			return 0; // A base file that has never been compacted
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile.toPath()), BUFFER_SIZE))) {
+			if (length < HEADER_SIZE || in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION)
+				return -1;
+
+			CRC32 crc = new CRC32();
+			long position = HEADER_SIZE;
+			while (position + RECORD_HEADER_SIZE <= length) {
+				int recordLength = in.readInt();
+				int checksum = in.readInt();
+				if (recordLength < 0 || recordLength > length - position - RECORD_HEADER_SIZE)
+					break; // Torn write
+
+				byte[] record = new byte[recordLength];
+				in.readFully(record);
+				crc.reset();
+				crc.update(record, 0, recordLength);
+				if ((int) crc.getValue() != checksum)
+					break;
+
+				SerializedVariable variable = decodeRecord(record);
+				if (variable == null)
+					break;
+
+				consumer.accept(variable, position);
+				position += RECORD_HEADER_SIZE + recordLength;
+			}
+			return position;
+		}
+	}
+
+	/**
+	 * Decodes a record, without its length and checksum.
+	 *
+	 * @param record the record.
+	 * @return the variable change, or {@code null} if the record is malformed.
+	 */
+	@Nullable
+	private static SerializedVariable decodeRecord(byte[] record) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+			int nameLength = in.readInt();
+			if (nameLength < 0 || nameLength > in.available())
+				return null;
+			byte[] nameBytes = new byte[nameLength];
+			in.readFully(nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			if (!in.readBoolean())
+				return new SerializedVariable(name, null);
+
+			String type = in.readUTF();
+			int valueLength = in.readInt();
+			if (valueLength < 0 || valueLength > in.available())
+				return null;
+			byte[] value = new byte[valueLength];
+			in.readFully(value);
+			return new SerializedVariable(name, new Value(type, value));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+}
@@ -19,6 +19,7 @@
 package ch.njol.skript.variables;
 
 import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptConfig;
 import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.lang.Variable;
 import ch.njol.skript.log.SkriptLogger;
@@ -29,6 +30,8 @@ import ch.njol.skript.util.Task;
 import ch.njol.skript.util.Utils;
 import ch.njol.skript.util.Version;
 import ch.njol.util.NotifyingReference;
+import ch.njol.yggdrasil.Yggdrasil;
+import ch.njol.yggdrasil.YggdrasilDictionary;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
@@ -38,10 +41,12 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StreamCorruptedException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -81,7 +86,7 @@ public class FlatFileStorage extends VariablesStorage {
 	 * <p>
 	 * A Lock on this object must be acquired after connectionLock
 	 * if that lock is used
-	 * (and thus also after {@link Variables#getReadLock()}).
+	 * (and thus also after {@link Variables#lockAllForReading()}).
 	 */
 	private final NotifyingReference<PrintWriter> changesWriter = new NotifyingReference<>();
 
@@ -115,6 +120,40 @@ public class FlatFileStorage extends VariablesStorage {
 	@Nullable
 	private Task saveTask;
 
+	/**
+	 * The line in the header of files whose values are serialized using a {@link #dictionary}.
+	 */
+	private static final String DICTIONARY_HEADER = "# string dictionary";
+
+	/**
+	 * The prefix of the lines containing the {@link #dictionary} entries,
+	 * followed by the ID and the hex encoded UTF-8 bytes of the string.
+	 */
+	private static final String DICTIONARY_ENTRY = "# string:";
+
+	/**
+	 * The dictionary of the class IDs and field names in the serialized values,
+	 * {@code null} unless enabled by the {@code string dictionary} option.
+	 * <p>
+	 * Its entries are written to the file before the first value using them,
+	 * so they are read again before that value while loading.
+	 */
+	@Nullable
+	private volatile YggdrasilDictionary dictionary;
+
+	/**
+	 * The Yggdrasil the values in the file are serialized with,
+	 * using the {@link #dictionary} if there is one.
+	 */
+	private volatile Yggdrasil yggdrasil = Variables.yggdrasil;
+
+	/**
+	 * The amount of {@link #dictionary} entries written to the file so far.
+	 * <p>
+	 * Only used while holding the {@link #connectionLock}.
+	 */
+	private int writtenDictionaryEntries = 0;
+
 	/**
 	 * Whether there was an error while loading variables.
 	 * <p>
@@ -162,6 +201,27 @@ public class FlatFileStorage extends VariablesStorage {
 		Version v2_1 = new Version(2, 1);
 		boolean update2_1 = false;
 
+		// Whether the string dictionary is enabled
+		boolean useDictionary = false;
+		if (sectionNode.getValue("string dictionary") != null) {
+			Boolean stringDictionary = getValue(sectionNode, "string dictionary", Boolean.class);
+			if (stringDictionary == null)
+				return false;
+			useDictionary = stringDictionary;
+		}
+		YggdrasilDictionary configuredDictionary = useDictionary ? new YggdrasilDictionary() : null;
+		if (configuredDictionary != null) {
+			dictionary = configuredDictionary;
+			yggdrasil = Variables.yggdrasil.withDictionary(configuredDictionary);
+		}
+
+		// The dictionary the file's values were serialized with, values before its header line don't use one
+		YggdrasilDictionary fileDictionary = null;
+		Yggdrasil fileYggdrasil = Variables.yggdrasil;
+
+		// Decoding and deserializing is done by other threads, only reading and splitting the lines is done here
+		ParallelDeserializer deserializer = new ParallelDeserializer((name, value) -> Variables.variableLoaded(name, value, this),
+			SkriptConfig.lazyVariableDeserialization.value());
 		try (BufferedReader reader = new BufferedReader(
 				new InputStreamReader(Files.newInputStream(file.toPath()), FILE_CHARSET))) {
 			String line;
@@ -173,7 +233,22 @@ public class FlatFileStorage extends VariablesStorage {
 
 				if (line.isEmpty() || line.startsWith("#")) {
 					// Line doesn't contain variable
-					if (line.startsWith("# version:")) {
+					if (line.equals(DICTIONARY_HEADER) && fileDictionary == null) {
+						// Reuse the configured dictionary, so the values don't have to be serialized again
+						fileDictionary = configuredDictionary != null ? configuredDictionary : new YggdrasilDictionary();
+						fileYggdrasil = configuredDictionary != null ? yggdrasil : Variables.yggdrasil.withDictionary(fileDictionary);
+					} else if (line.startsWith(DICTIONARY_ENTRY)) {
+						String[] entry = splitCSV(line.substring(DICTIONARY_ENTRY.length()));
+						try {
+							if (fileDictionary == null || entry == null || entry.length != 2)
+								throw new StreamCorruptedException("Invalid dictionary entry");
+							fileDictionary.add(Integer.parseInt(entry[0]), new String(decode(entry[1]), StandardCharsets.UTF_8));
+						} catch (NumberFormatException | StreamCorruptedException e) {
+							// The values using this entry can't be loaded, so the error is reported for each of them
+							Skript.error("invalid string dictionary entry in line " + lineNum + " ('" + line + "')");
+							loadError = true;
+						}
+					} else if (line.startsWith("# version:")) {
 						// Update the version accordingly
 
 						try {
@@ -201,15 +276,16 @@ public class FlatFileStorage extends VariablesStorage {
 				}
 
 				if (split[1].equals("null")) {
-					Variables.variableLoaded(split[0], null, this);
+					// Must not overtake the values before it that are still being deserialized
+					deserializer.addDeletion(split[0]);
+				} else if (!update2_1) {
+					String hex = split[2];
+					deserializer.add(split[0], split[1], fileYggdrasil, () -> decode(hex));
 				} else {
-					Object deserializedValue;
-					if (update2_1) {
-						// Use old deserialization if variables come from old Skript version
-						deserializedValue = Classes.deserialize(split[1], split[2]);
-					} else {
-						deserializedValue = Classes.deserialize(split[1], decode(split[2]));
-					}
+					// Use old deserialization if variables come from old Skript version,
+					//  which must be done on this thread, after the variables added before
+					deserializer.flush();
+					Object deserializedValue = Classes.deserialize(split[1], split[2]);
 
 					if (deserializedValue == null) {
 						// Couldn't deserialize variable
@@ -229,12 +305,31 @@ public class FlatFileStorage extends VariablesStorage {
 					Variables.variableLoaded(split[0], deserializedValue, this);
 				}
 			}
+			deserializer.flush();
 		} catch (IOException e) {
 			loadError = true;
 			ioException = e;
+
+			// Still load the variables read before the error
+			deserializer.flush();
+		} finally {
+			deserializer.close();
+		}
+
+		for (String name : deserializer.getFailed()) {
+			if (invalid.length() != 0)
+				invalid.append(", ");
+
+			invalid.append(name);
+			unsuccessfulVariableCount++;
 		}
 
-		if (ioException != null || unsuccessfulVariableCount > 0 || update2_1) {
+		// The file must be rewritten if the string dictionary was enabled or disabled
+		boolean formatChanged = useDictionary != (fileDictionary != null);
+		if (configuredDictionary != null)
+			writtenDictionaryEntries = configuredDictionary.size();
+
+		if (ioException != null || unsuccessfulVariableCount > 0 || update2_1 || formatChanged) {
 			// Something's wrong (or just an old version)
 			if (unsuccessfulVariableCount > 0) {
 				Skript.error(unsuccessfulVariableCount + " variable" + (unsuccessfulVariableCount == 1 ? "" : "s") +
@@ -250,6 +345,8 @@ public class FlatFileStorage extends VariablesStorage {
 			try {
 				if (update2_1) {
 					Skript.info("[2.1] updating " + file.getName() + " to the new format...");
+				} else if (formatChanged) {
+					Skript.info((useDictionary ? "Enabling" : "Disabling") + " the string dictionary of " + file.getName() + "...");
 				}
 
 				// Back up CSV file
@@ -262,7 +359,7 @@ public class FlatFileStorage extends VariablesStorage {
 			}
 		}
 
-		if (update2_1) {
+		if (update2_1 || formatChanged) {
 			// Save variables in new format
 			saveVariables(false);
 			Skript.info(file.getName() + " successfully updated.");
@@ -301,6 +398,11 @@ public class FlatFileStorage extends VariablesStorage {
 		return new File(fileName);
 	}
 
+	@Override
+	public Yggdrasil getYggdrasil() {
+		return yggdrasil;
+	}
+
 	@Override
 	protected final void disconnect() {
 		synchronized (connectionLock) {
@@ -368,6 +470,7 @@ public class FlatFileStorage extends VariablesStorage {
 					}
 				}
 
+				writeDictionaryEntries(printWriter);
 				writeCSV(printWriter, name, type, value == null ? "" : encode(value));
 				printWriter.flush();
 
@@ -396,8 +499,8 @@ public class FlatFileStorage extends VariablesStorage {
 		}
 
 		try {
-			// Acquire read lock
-			Variables.getReadLock().lock();
+			// Acquire read locks
+			Variables.lockAllForReading();
 
 			synchronized (connectionLock) {
 				try {
@@ -432,8 +535,14 @@ public class FlatFileStorage extends VariablesStorage {
 						pw.println("# Please do not modify this file manually!");
 						pw.println("#");
 						pw.println("# version: " + Skript.getVersion());
+						writtenDictionaryEntries = 0;
+						if (dictionary != null) {
+							pw.println(DICTIONARY_HEADER);
+							writeDictionaryEntries(pw);
+						}
 						pw.println();
-						save(pw, "", Variables.getVariables());
+						for (TreeMap<String, Object> tree : Variables.getVariableTrees())
+							save(pw, "", tree);
 						pw.println();
 						pw.flush();
 						pw.close();
@@ -451,15 +560,9 @@ public class FlatFileStorage extends VariablesStorage {
 				}
 			}
 		} finally {
-			Variables.getReadLock().unlock();
-			boolean gotWriteLock = Variables.variablesLock.writeLock().tryLock();
-			if (gotWriteLock) { // Only process queue now if it doesn't require us to wait
-				try {
-					Variables.processChangeQueue();
-				} finally {
-					Variables.variablesLock.writeLock().unlock();
-				}
-			}
+			Variables.unlockAllForReading();
+			// Only process queues now if it doesn't require us to wait
+			Variables.tryProcessChangeQueues();
 		}
 	}
 
@@ -494,12 +597,16 @@ public class FlatFileStorage extends VariablesStorage {
 					for (VariablesStorage storage : Variables.STORAGES) {
 						if (storage.accept(name)) {
 							if (storage == this) {
-								// Serialize the value
-								SerializedVariable.Value serializedValue = Classes.serialize(childNode);
-
-								// Write the CSV line
-								if (serializedValue != null)
+								// Serialize the value, values that have never been accessed are saved as they were loaded
+								SerializedVariable.Value serializedValue = childNode instanceof LazyValue
+									? ((LazyValue) childNode).serialize(yggdrasil)
+									: Classes.serialize(childNode, yggdrasil);
+
+								// Write the CSV line, after the dictionary entries added while serializing the value
+								if (serializedValue != null) {
+									writeDictionaryEntries(pw);
 									writeCSV(pw, name, serializedValue.type, encode(serializedValue.data));
+								}
 							}
 
 							break;
@@ -513,6 +620,25 @@ public class FlatFileStorage extends VariablesStorage {
 		}
 	}
 
+	/**
+	 * Writes the {@link #dictionary} entries that haven't been written yet.
+	 * <p>
+	 * Must be called while holding the {@link #connectionLock}.
+	 *
+	 * @param printWriter the print writer.
+	 */
+	private void writeDictionaryEntries(PrintWriter printWriter) {
+		YggdrasilDictionary dictionary = this.dictionary;
+		if (dictionary == null)
+			return;
+
+		List<String> entries = dictionary.getStrings(writtenDictionaryEntries);
+		for (String entry : entries) {
+			printWriter.println(DICTIONARY_ENTRY + " " + writtenDictionaryEntries + ", " + encode(entry.getBytes(StandardCharsets.UTF_8)));
+			writtenDictionaryEntries++;
+		}
+	}
+
 	/**
 	 * Encode the given byte array to a hexadecimal string.
 	 *
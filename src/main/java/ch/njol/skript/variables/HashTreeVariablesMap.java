@@ -0,0 +1,241 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import ch.njol.util.StringUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The default {@link VariablesMap}, which stores all non-list variables
+ * in a {@link HashMap} for quick access, in addition to the {@link #treeMap tree}
+ * used for list variables.
+ */
+final class HashTreeVariablesMap extends VariablesMap {
+
+	/**
+	 * The map that stores all non-list variables.
+	 */
+	final HashMap<String, Object> hashMap = new HashMap<>();
+
+	@Override
+	@SuppressWarnings("unchecked")
+	@Nullable
+	Object getVariable(String name) {
+		if (!name.endsWith("*")) {
+			// Not a list variable, quick access from the hash map
+			return hashMap.get(name);
+		} else {
+			// List variable, search the tree branches
+			String[] split = Variables.splitVariableName(name);
+			Map<String, Object> parent = treeMap;
+
+			// Iterate over the parts of the variable name
+			for (int i = 0; i < split.length; i++) {
+				String n = split[i];
+				if (n.equals("*")) {
+					// End of variable name, return map
+					assert i == split.length - 1;
+					return parent;
+				}
+
+				// Check if the current (sub-)tree has the expected child node
+				Object childNode = parent.get(n);
+				if (childNode == null)
+					return null;
+
+				// Continue the iteration if the child node is a tree itself
+				if (childNode instanceof Map) {
+					// Continue iterating with the subtree
+					parent = (Map<String, Object>) childNode;
+					assert i != split.length - 1;
+				} else {
+					// ..., otherwise the list variable doesn't exist here
+					return null;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	@Nullable
+	Object getVariable(String[] parts) {
+		if (!parts[parts.length - 1].equals("*")) {
+			// Not a list variable, quick access from the hash map without joining the parts
+			return hashMap.get(new VariableNameKey(parts));
+		}
+		return super.getVariable(parts);
+	}
+
+	@Override
+	void setVariable(String name, @Nullable Object value) {
+		setVariable(name, null, value);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	void setVariable(String name, String @Nullable [] parts, @Nullable Object value) {
+		// First update the hash map easily
+		if (!name.endsWith("*")) {
+			if (value == null)
+				hashMap.remove(name);
+			else
+				hashMap.put(name, value);
+		}
+
+		// Then update the tree map by going down the branches
+		String[] split = parts != null ? parts : Variables.splitVariableName(name);
+		TreeMap<String, Object> parent = treeMap;
+
+		// Iterate over the parts of the variable name
+		for (int i = 0; i < split.length; i++) {
+			String childNodeName = split[i];
+			Object childNode = parent.get(childNodeName);
+
+			if (childNode == null) {
+				// Expected child node not found
+				if (i == split.length - 1) {
+					// End of the variable name reached, set variable if needed
+					if (value != null)
+						parent.put(childNodeName, value);
+
+					break;
+				} else if (value != null) {
+					// Create child node, add it to parent and continue iteration
+					childNode = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
+
+					parent.put(childNodeName, childNode);
+					parent = (TreeMap<String, Object>) childNode;
+				} else {
+					// Want to set variable to null, bu variable is already null
+					break;
+				}
+			} else if (childNode instanceof TreeMap) {
+				// Child node found
+				TreeMap<String, Object> childNodeMap = ((TreeMap<String, Object>) childNode);
+
+				if (i == split.length - 1) {
+					// End of variable name reached, adjust child node accordingly
+					if (value == null)
+						childNodeMap.remove(null);
+					else
+						childNodeMap.put(null, value);
+
+					break;
+				} else if (i == split.length - 2 && split[i + 1].equals("*")) {
+					// Second to last part of variable name
+					assert value == null;
+
+					// Delete all indices of the list variable from hashMap
+					deleteFromHashMap(StringUtils.join(split, Variable.SEPARATOR, 0, i + 1), childNodeMap);
+
+					// If the list variable itself has a value ,
+					//  e.g. list `{mylist::3}` while variable `{mylist}` also has a value,
+					//  then adjust the parent for that
+					Object currentChildValue = childNodeMap.get(null);
+					if (currentChildValue == null)
+						parent.remove(childNodeName);
+					else
+						parent.put(childNodeName, currentChildValue);
+
+					break;
+				} else {
+					// Continue iteration
+					parent = childNodeMap;
+				}
+			} else {
+				// Ran into leaf node
+				if (i == split.length - 1) {
+					// If we arrived at the end of the variable name, update parent
+					if (value == null)
+						parent.remove(childNodeName);
+					else
+						parent.put(childNodeName, value);
+
+					break;
+				} else if (value != null) {
+					// Need to continue iteration, create new child node and put old value in it
+					TreeMap<String, Object> newChildNodeMap = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
+					newChildNodeMap.put(null, childNode);
+
+					// Add new child node to parent
+					parent.put(childNodeName, newChildNodeMap);
+					parent = newChildNodeMap;
+				} else {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes all indices of a list variable from the {@link #hashMap}.
+	 *
+	 * @param parent the list variable prefix,
+	 *                  e.g. {@code list} for {@code list::*}.
+	 * @param current the map of the list variable.
+	 */
+	@SuppressWarnings("unchecked")
+	void deleteFromHashMap(String parent, TreeMap<String, Object> current) {
+		for (Entry<String, Object> e : current.entrySet()) {
+			if (e.getKey() == null)
+				continue;
+			String childName = parent + Variable.SEPARATOR + e.getKey();
+
+			// Remove from hashMap
+			hashMap.remove(childName);
+
+			// Recurse if needed
+			Object val = e.getValue();
+			if (val instanceof TreeMap) {
+				deleteFromHashMap(childName, (TreeMap<String, Object>) val);
+			}
+		}
+	}
+
+	@Override
+	int size() {
+		return hashMap.size();
+	}
+
+	@Override
+	void forEachVariable(BiConsumer<String, Object> action) {
+		hashMap.forEach(action);
+	}
+
+	@Override
+	public VariablesMap copy() {
+		HashTreeVariablesMap copy = new HashTreeVariablesMap();
+
+		copy.hashMap.putAll(hashMap);
+
+		TreeMap<String, Object> treeMapCopy = copyTreeMap(treeMap);
+		copy.treeMap.putAll(treeMapCopy);
+
+		return copy;
+	}
+
+}
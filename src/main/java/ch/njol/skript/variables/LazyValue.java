@@ -0,0 +1,176 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.variables.SerializedVariable.Value;
+import ch.njol.util.Pair;
+import ch.njol.yggdrasil.Yggdrasil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * The value of a loaded global variable that hasn't been deserialized yet.
+ * <p>
+ * Lazy values are stored in the variables map in place of the actual values
+ * if {@link ch.njol.skript.SkriptConfig#lazyVariableDeserialization lazy deserialization} is enabled,
+ * and deserialized when the variable is first accessed.
+ * Until then, the serialized value is saved as it is, without deserializing and serializing it again.
+ * <p>
+ * Lazy values never leave the variables package, {@link Variables} resolves them before returning variables.
+ */
+final class LazyValue {
+
+	/**
+	 * The serialized value, {@code null} once it has been deserialized successfully.
+	 */
+	@Nullable
+	private Value serialized;
+
+	/**
+	 * The Yggdrasil the value was serialized with.
+	 */
+	private final Yggdrasil yggdrasil;
+
+	/**
+	 * The deserialized value, {@code null} until it has been deserialized.
+	 */
+	@Nullable
+	private volatile Object value;
+
+	/**
+	 * Creates a new lazy value.
+	 *
+	 * @param serialized the serialized value.
+	 */
+	LazyValue(Value serialized) {
+		this(serialized, Variables.yggdrasil);
+	}
+
+	/**
+	 * Creates a new lazy value.
+	 *
+	 * @param serialized the serialized value.
+	 * @param yggdrasil the Yggdrasil the value was serialized with.
+	 */
+	LazyValue(Value serialized, Yggdrasil yggdrasil) {
+		this.serialized = serialized;
+		this.yggdrasil = yggdrasil;
+	}
+
+	/**
+	 * Gets the deserialized value, deserializing it if this is the first access.
+	 * <p>
+	 * Must only be used for types that don't have to be deserialized on the main thread.
+	 *
+	 * @return the value, or {@code null} if it can't be deserialized.
+	 */
+	@Nullable
+	Object get() {
+		Object value = this.value;
+		if (value != null)
+			return value;
+
+		synchronized (this) {
+			value = this.value;
+			Value serialized = this.serialized;
+			if (value == null && serialized != null) {
+				value = Classes.deserialize(serialized.type, serialized.data, yggdrasil);
+				if (value != null) {
+					// The value may be modified from now on, so the serialized value can't be reused
+					this.serialized = null;
+					this.value = value;
+				}
+				// Otherwise keep the serialized value, so it's still saved as it was
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Gets the value serialized with the given Yggdrasil, without serializing the value
+	 * if it hasn't been deserialized yet and was serialized with the same Yggdrasil.
+	 *
+	 * @param yggdrasil the Yggdrasil of the storage the value is saved in.
+	 * @return the serialized value.
+	 */
+	@Nullable
+	Value serialize(Yggdrasil yggdrasil) {
+		synchronized (this) {
+			Value serialized = this.serialized;
+			if (serialized != null && yggdrasil == this.yggdrasil)
+				return serialized;
+		}
+		// Different format, e.g. moved to a storage using a dictionary
+		Object value = get();
+		return value == null ? null : Classes.serialize(value, yggdrasil);
+	}
+
+	/**
+	 * Collects the names of the variables in the given (sub-)tree of a variables map whose value is lazy.
+	 *
+	 * @param prefix the name of the (sub-)tree, ending with {@link Variable#SEPARATOR},
+	 *                  e.g. {@code list::} for {@code list::*}.
+	 * @param map the (sub-)tree.
+	 * @param lazyVariables the list to add the variables and their lazy values to.
+	 */
+	@SuppressWarnings("unchecked")
+	static void collectLazyValues(String prefix, TreeMap<String, Object> map, List<Pair<String, LazyValue>> lazyVariables) {
+		for (Entry<String, Object> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			String key = entry.getKey();
+			if (value instanceof LazyValue) {
+				// The null key holds the value of the variable named like the (sub-)tree
+				String name = key == null ? prefix.substring(0, prefix.length() - Variable.SEPARATOR.length()) : prefix + key;
+				lazyVariables.add(new Pair<>(name, (LazyValue) value));
+			} else if (value instanceof TreeMap) {
+				collectLazyValues(prefix + key + Variable.SEPARATOR, (TreeMap<String, Object>) value, lazyVariables);
+			}
+		}
+	}
+
+	/**
+	 * Copies the given (sub-)tree of a variables map, deserializing its lazy values.
+	 * Lazy values that can't be deserialized are left out.
+	 *
+	 * @param map the (sub-)tree.
+	 * @return the copy.
+	 */
+	@SuppressWarnings("unchecked")
+	static TreeMap<String, Object> copyResolved(TreeMap<String, Object> map) {
+		TreeMap<String, Object> copy = new TreeMap<>(VariablesMap.VARIABLE_NAME_COMPARATOR);
+		for (Entry<String, Object> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof LazyValue) {
+				value = ((LazyValue) value).get();
+			} else if (value instanceof TreeMap) {
+				value = copyResolved((TreeMap<String, Object>) value);
+			}
+
+			if (value != null)
+				copy.put(entry.getKey(), value);
+		}
+		return copy;
+	}
+
+}
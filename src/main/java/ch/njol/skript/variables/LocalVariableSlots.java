@@ -0,0 +1,91 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import org.skriptlang.skript.lang.script.ScriptData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The slots assigned to the local variables with literal names of a script, e.g. {@code {_x}}.
+ * <p>
+ * Slots are assigned by the {@link ch.njol.skript.lang.parser.ParserInstance} while the script is parsed.
+ * At runtime, the values of these variables are kept in an array indexed by their slots,
+ * so the variables can be accessed without looking them up by name.
+ * All triggers, functions and sections of a script share the same slots,
+ * which allows copying local variables between them.
+ * <p>
+ * List variables and variables with names that are only known at runtime don't have slots.
+ *
+ * @see Variables#getLocalVariable(LocalVariableSlots, int, String, org.bukkit.event.Event)
+ */
+public final class LocalVariableSlots implements ScriptData {
+
+	/**
+	 * The slots of the variables, by the names used in the {@link VariablesMap}.
+	 */
+	private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the slot of the given variable, assigning a new slot if it doesn't have one yet.
+	 *
+	 * @param name the name of the variable, lowercased
+	 *                if {@link Variables#caseInsensitiveVariables variables are case-insensitive}.
+	 *                Must not be a list variable.
+	 * @return the slot.
+	 */
+	public synchronized int assignSlot(String name) {
+		assert !name.contains(Variable.SEPARATOR) : name;
+		Integer slot = slots.get(name);
+		if (slot == null) {
+			slot = slots.size();
+			slots.put(name, slot);
+		}
+		return slot;
+	}
+
+	/**
+	 * @param name the name of a variable.
+	 * @return the slot of the given variable, or -1 if it doesn't have a slot.
+	 */
+	int getSlot(String name) {
+		Integer slot = slots.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Performs the given action for each assigned slot.
+	 *
+	 * @param action the action, called with the name of the variable and its slot.
+	 */
+	void forEachSlot(BiConsumer<String, Integer> action) {
+		slots.forEach(action);
+	}
+
+	/**
+	 * @return the amount of assigned slots.
+	 */
+	int size() {
+		return slots.size();
+	}
+
+}
@@ -0,0 +1,248 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The local variables of an event.
+ * <p>
+ * Variables with a {@link LocalVariableSlots slot} are kept in an array,
+ * all other variables in a {@link TrieVariablesMap}. A frame adopts the slots of the first script
+ * that accesses one of its variables by slot. Accesses by slot from other scripts,
+ * and accesses by name, look up the slot of the variable by its name instead.
+ * <p>
+ * {@link #copy() Copying} a frame doesn't copy its variables, the copy shares them with the original frame
+ * until either frame changes them.
+ */
+final class LocalVariablesFrame {
+
+	private static final Object[] NO_VALUES = new Object[0];
+
+	/**
+	 * The variables without a slot.
+	 */
+	private final VariablesMap variables;
+
+	/**
+	 * The slots of this frame, {@code null} until they are adopted.
+	 */
+	@Nullable
+	private LocalVariableSlots slots;
+
+	/**
+	 * The values of the variables with a slot, indexed by their slots.
+	 */
+	private Object[] values;
+
+	/**
+	 * Whether {@link #values} may be shared with a copy of this frame, and must be copied before changing it.
+	 */
+	private boolean valuesShared;
+
+	LocalVariablesFrame() {
+		this(new TrieVariablesMap(), null, NO_VALUES);
+	}
+
+	/**
+	 * Creates a frame with the given variables, which are moved to slots when the frame adopts them.
+	 *
+	 * @param variables the variables, owned by the frame from now on.
+	 */
+	LocalVariablesFrame(VariablesMap variables) {
+		this(variables, null, NO_VALUES);
+	}
+
+	private LocalVariablesFrame(VariablesMap variables, @Nullable LocalVariableSlots slots, Object[] values) {
+		this.variables = variables;
+		this.slots = slots;
+		this.values = values;
+	}
+
+	/**
+	 * Gets the value of the variable with the given slot.
+	 *
+	 * @param slots the slots the given slot belongs to.
+	 * @param slot the slot of the variable.
+	 * @param name the name of the variable, used if this frame has different slots.
+	 * @return the value of the variable.
+	 */
+	@Nullable
+	Object getVariable(LocalVariableSlots slots, int slot, String name) {
+		if (this.slots != slots)
+			return getVariable(name);
+		return slot < values.length ? values[slot] : null;
+	}
+
+	/**
+	 * Sets the variable with the given slot.
+	 *
+	 * @param slots the slots the given slot belongs to.
+	 * @param slot the slot of the variable.
+	 * @param name the name of the variable, used if this frame has different slots.
+	 * @param value the value, or {@code null} to delete the variable.
+	 */
+	void setVariable(LocalVariableSlots slots, int slot, String name, @Nullable Object value) {
+		if (this.slots == null)
+			adopt(slots);
+		if (this.slots != slots) {
+			setVariable(name, null, value);
+			return;
+		}
+
+		if (slot >= values.length) {
+			if (value == null)
+				return;
+			values = Arrays.copyOf(values, Math.max(slots.size(), slot + 1));
+			valuesShared = false;
+		} else if (valuesShared) {
+			if (values[slot] == value)
+				return;
+			values = values.clone();
+			valuesShared = false;
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * @param name the name of the variable, possibly a list variable.
+	 * @return the internal value of the variable, see {@link VariablesMap#getVariable(String)}.
+	 */
+	@Nullable
+	Object getVariable(String name) {
+		int slot = getSlot(name);
+		if (slot == -1)
+			return variables.getVariable(name);
+		return slot < values.length ? values[slot] : null;
+	}
+
+	/**
+	 * @param parts the parts of the name of the variable, possibly a list variable.
+	 * @return the internal value of the variable, see {@link VariablesMap#getVariable(String[])}.
+	 */
+	@Nullable
+	Object getVariable(String[] parts) {
+		int slot = parts.length == 1 ? getSlot(parts[0]) : -1;
+		if (slot == -1)
+			return variables.getVariable(parts);
+		return slot < values.length ? values[slot] : null;
+	}
+
+	/**
+	 * Sets the given variable, see {@link VariablesMap#setVariable(String, String[], Object)}.
+	 *
+	 * @param name the name of the variable.
+	 * @param parts the parts of the name, or {@code null} if they aren't known.
+	 * @param value the value, or {@code null} to delete the variable.
+	 */
+	void setVariable(String name, String @Nullable [] parts, @Nullable Object value) {
+		LocalVariableSlots slots = this.slots;
+		int slot = getSlot(name);
+		if (slot == -1) {
+			variables.setVariable(name, parts, value);
+		} else {
+			assert slots != null;
+			setVariable(slots, slot, name, value);
+		}
+	}
+
+	/**
+	 * Sets the given variable, see {@link VariablesMap#setVariable(String[], Object)}.
+	 *
+	 * @param parts the parts of the name of the variable.
+	 * @param value the value, or {@code null} to delete the variable.
+	 */
+	void setVariable(String[] parts, @Nullable Object value) {
+		LocalVariableSlots slots = this.slots;
+		int slot = parts.length == 1 ? getSlot(parts[0]) : -1;
+		if (slot == -1) {
+			variables.setVariable(parts, value);
+		} else {
+			assert slots != null;
+			setVariable(slots, slot, parts[0], value);
+		}
+	}
+
+	/**
+	 * Creates a copy of this frame, which shares its variables with this frame until either frame changes them.
+	 *
+	 * @return the copy.
+	 */
+	LocalVariablesFrame copy() {
+		LocalVariablesFrame copy = new LocalVariablesFrame(variables.copy(), slots, values);
+		valuesShared = copy.valuesShared = values.length != 0;
+		return copy;
+	}
+
+	/**
+	 * Copies the variables of this frame into a map, including the variables with a slot.
+	 *
+	 * @return the map.
+	 */
+	VariablesMap toVariablesMap() {
+		VariablesMap map = variables.copy();
+		LocalVariableSlots slots = this.slots;
+		if (slots != null) {
+			slots.forEachSlot((name, slot) -> {
+				if (slot < values.length && values[slot] != null)
+					map.setVariable(name, values[slot]);
+			});
+		}
+		return map;
+	}
+
+	/**
+	 * @param name the name of a variable.
+	 * @return the slot of the variable in this frame, or -1 if it doesn't have a slot.
+	 */
+	private int getSlot(String name) {
+		LocalVariableSlots slots = this.slots;
+		return slots == null ? -1 : slots.getSlot(name);
+	}
+
+	/**
+	 * Adopts the given slots, moving the variables that have a slot out of the map.
+	 *
+	 * @param slots the slots.
+	 */
+	private void adopt(LocalVariableSlots slots) {
+		this.slots = slots;
+		values = new Object[slots.size()];
+		valuesShared = false;
+		if (variables.size() == 0)
+			return;
+
+		// Usually only a few variables are set before the slots are adopted, e.g. function parameters
+		List<String> names = new ArrayList<>();
+		variables.forEachVariable((name, value) -> {
+			if (!name.contains(Variable.SEPARATOR) && slots.getSlot(name) != -1)
+				names.add(name);
+		});
+		for (String name : names) {
+			values[slots.getSlot(name)] = variables.getVariable(name);
+			variables.setVariable(name, null);
+		}
+	}
+
+}
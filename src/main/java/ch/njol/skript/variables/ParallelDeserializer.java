@@ -0,0 +1,342 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.classes.ClassInfo;
+import ch.njol.skript.classes.Serializer;
+import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.variables.SerializedVariable.Value;
+import ch.njol.yggdrasil.Yggdrasil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Deserializes the variables of a storage while it is being loaded, using a pool of worker threads.
+ * <p>
+ * Variables are {@link #add(String, String, Supplier) added} by the thread reading the storage
+ * and deserialized in batches by the workers. The deserialized variables are passed to the consumer
+ * on the thread adding them, in the order they were added, so the consumer may call
+ * {@link Variables#variableLoaded(String, Object, VariablesStorage)}.
+ * <p>
+ * Types whose {@link Serializer#mustSyncDeserialization() serializer requires the main thread}
+ * are not deserialized by the workers, but when they are passed to the consumer instead.
+ * <p>
+ * If lazy deserialization is enabled, the variables of all other types are passed to the consumer
+ * as {@link LazyValue}s, and only their type is checked while loading.
+ * <p>
+ * Deleted variables are {@link #addDeletion(String) added} as well, and passed to the consumer with a null value
+ * in the same order, so that a deletion is never overtaken by an earlier value of the same variable.
+ */
+final class ParallelDeserializer implements AutoCloseable {
+
+	/**
+	 * The amount of variables deserialized by a worker at once.
+	 */
+	private static final int BATCH_SIZE = 1024;
+
+	/**
+	 * The maximum amount of batches waiting to be passed to the consumer,
+	 * which limits the memory used by variables that have been read but not loaded yet.
+	 */
+	private static final int MAX_PENDING_BATCHES = 256;
+
+	/**
+	 * Used to give the worker threads distinct names.
+	 */
+	private static final AtomicInteger WORKER_COUNTER = new AtomicInteger();
+
+	/**
+	 * A variable that was read from the storage.
+	 */
+	private static final class PendingVariable {
+
+		final String name;
+		final String type;
+		final Yggdrasil yggdrasil;
+
+		/**
+		 * Supplies the serialized value, only used by the thread deserializing the variable.
+		 */
+		@Nullable
+		Supplier<byte[]> data;
+
+		/**
+		 * The serialized value, only kept if it must be deserialized on the main thread.
+		 */
+		@Nullable
+		byte[] syncData;
+
+		@Nullable
+		ClassInfo<?> classInfo;
+
+		@Nullable
+		Object value;
+
+		@Nullable
+		RuntimeException exception;
+
+		/**
+		 * Whether this is a deletion of the variable rather than a value.
+		 */
+		final boolean deleted;
+
+		PendingVariable(String name, String type, Yggdrasil yggdrasil, Supplier<byte[]> data) {
+			this.name = name;
+			this.type = type;
+			this.yggdrasil = yggdrasil;
+			this.data = data;
+			this.deleted = false;
+		}
+
+		PendingVariable(String name) {
+			this.name = name;
+			this.type = "";
+			this.yggdrasil = Variables.yggdrasil;
+			this.deleted = true;
+		}
+
+	}
+
+	private final ExecutorService workers;
+
+	/**
+	 * The consumer of the deserialized variables.
+	 */
+	private final BiConsumer<String, Object> consumer;
+
+	/**
+	 * Whether variables should be deserialized on first access instead of while loading.
+	 */
+	private final boolean lazy;
+
+	/**
+	 * The batch currently being filled.
+	 */
+	private List<PendingVariable> batch = new ArrayList<>(BATCH_SIZE);
+
+	/**
+	 * The batches given to the workers, in the order their variables were added.
+	 */
+	private final Queue<Future<List<PendingVariable>>> pendingBatches = new ArrayDeque<>();
+
+	/**
+	 * The names of the variables that could not be deserialized.
+	 */
+	private final List<String> failed = new ArrayList<>();
+
+	/**
+	 * Creates a new parallel deserializer.
+	 *
+	 * @param consumer the consumer of the variables that could be deserialized, and of deletions with a null value.
+	 * @param lazy whether variables should be deserialized on first access instead of while loading.
+	 */
+	ParallelDeserializer(BiConsumer<String, Object> consumer, boolean lazy) {
+		this.consumer = consumer;
+		this.lazy = lazy;
+
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = Skript.newThread(runnable, "Skript variable deserialization thread " + WORKER_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Adds a variable to be deserialized.
+	 *
+	 * @param name the name of the variable.
+	 * @param type the type of the variable.
+	 * @param data supplies the serialized value, called by a worker thread.
+	 */
+	void add(String name, String type, Supplier<byte[]> data) {
+		add(name, type, Variables.yggdrasil, data);
+	}
+
+	/**
+	 * Adds a variable to be deserialized.
+	 *
+	 * @param name the name of the variable.
+	 * @param type the type of the variable.
+	 * @param yggdrasil the Yggdrasil the variable was serialized with.
+	 * @param data supplies the serialized value, called by a worker thread.
+	 */
+	void add(String name, String type, Yggdrasil yggdrasil, Supplier<byte[]> data) {
+		add(new PendingVariable(name, type, yggdrasil, data));
+	}
+
+	/**
+	 * Adds a deletion of a variable, which is passed to the consumer with a null value
+	 * after all variables added before it.
+	 *
+	 * @param name the name of the variable.
+	 */
+	void addDeletion(String name) {
+		add(new PendingVariable(name));
+	}
+
+	private void add(PendingVariable pending) {
+		batch.add(pending);
+		if (batch.size() < BATCH_SIZE)
+			return;
+
+		List<PendingVariable> fullBatch = batch;
+		batch = new ArrayList<>(BATCH_SIZE);
+		pendingBatches.add(workers.submit(() -> {
+			for (PendingVariable variable : fullBatch)
+				deserialize(variable, false, lazy);
+			return fullBatch;
+		}));
+
+		// Pass on the variables that are ready, and wait if too many are pending
+		while (!pendingBatches.isEmpty() && (pendingBatches.peek().isDone() || pendingBatches.size() > MAX_PENDING_BATCHES))
+			consume(pendingBatches.remove());
+	}
+
+	/**
+	 * Passes all added variables to the consumer, waiting for them to be deserialized if needed.
+	 */
+	void flush() {
+		while (!pendingBatches.isEmpty())
+			consume(pendingBatches.remove());
+
+		// Not worth handing the last, partial batch to a worker
+		for (PendingVariable variable : batch) {
+			deserialize(variable, true, lazy);
+			consume(variable);
+		}
+		batch.clear();
+	}
+
+	/**
+	 * @return the names of the variables that could not be deserialized so far.
+	 */
+	List<String> getFailed() {
+		return failed;
+	}
+
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Deserializes the given variable, unless its type must be deserialized on the main thread
+	 * and this isn't the thread the variables are passed to the consumer on.
+	 *
+	 * @param variable the variable.
+	 * @param consumerThread whether this is the thread the variables are passed to the consumer on.
+	 * @param lazy whether to create a {@link LazyValue} instead, if the type allows it.
+	 */
+	private static void deserialize(PendingVariable variable, boolean consumerThread, boolean lazy) {
+		if (variable.deleted)
+			return;
+		try {
+			byte[] data;
+			if (variable.data != null) {
+				data = variable.data.get();
+				variable.data = null;
+
+				variable.classInfo = Classes.getClassInfoNoError(variable.type);
+				if (variable.classInfo == null || variable.classInfo.getSerializer() == null)
+					return;
+			} else {
+				data = variable.syncData;
+				variable.syncData = null;
+			}
+
+			ClassInfo<?> classInfo = variable.classInfo;
+			Serializer<?> serializer = classInfo == null ? null : classInfo.getSerializer();
+			if (data == null || classInfo == null || serializer == null)
+				return;
+
+			if (serializer.mustSyncDeserialization()) {
+				// Lazy values may be deserialized on any thread, so these can't be lazy
+				if (!consumerThread) {
+					variable.syncData = data;
+					return;
+				}
+			} else if (lazy) {
+				variable.value = new LazyValue(new Value(variable.type, data), variable.yggdrasil);
+				return;
+			}
+
+			variable.value = Classes.deserialize(classInfo, data, variable.yggdrasil);
+		} catch (RuntimeException e) {
+			// Rethrown on the consumer thread, like it would have been if deserialized there
+			variable.exception = e;
+		}
+	}
+
+	/**
+	 * Passes the variables of the given batch to the consumer, waiting for them to be deserialized if needed.
+	 *
+	 * @param batch the batch.
+	 */
+	private void consume(Future<List<PendingVariable>> batch) {
+		List<PendingVariable> variables;
+		try {
+			variables = batch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading variables", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not deserialize variables", e.getCause());
+		}
+
+		for (PendingVariable variable : variables) {
+			if (variable.syncData != null)
+				deserialize(variable, true, lazy);
+			consume(variable);
+		}
+	}
+
+	/**
+	 * Passes the given deserialized variable to the consumer.
+	 *
+	 * @param variable the variable.
+	 */
+	private void consume(PendingVariable variable) {
+		if (variable.exception != null)
+			throw variable.exception;
+
+		if (variable.deleted) {
+			consumer.accept(variable.name, null);
+			return;
+		}
+		if (variable.value == null) {
+			failed.add(variable.name);
+			return;
+		}
+		consumer.accept(variable.name, variable.value);
+	}
+
+}
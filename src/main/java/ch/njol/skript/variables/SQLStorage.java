@@ -22,7 +22,8 @@ import java.io.File;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
@@ -31,6 +32,7 @@ import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.Nullable;
 
 import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptConfig;
 import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.classes.Serializer;
 import ch.njol.skript.config.SectionNode;
@@ -57,6 +59,12 @@ public abstract class SQLStorage extends VariablesStorage {
 
 	private final static String SELECT_ORDER = "name, type, value, rowid";
 
+	/**
+	 * The column the variables are selected by when monitoring changes.
+	 * Must be increased by each write, and should be indexed.
+	 */
+	private final static String DEFAULT_CHANGE_SEQUENCE_COLUMN = "rowid";
+
 	private final static String OLD_TABLE_NAME = "variables";
 
 	@Nullable
@@ -72,10 +80,25 @@ public abstract class SQLStorage extends VariablesStorage {
 	private final static String guid = UUID.randomUUID().toString();
 
 	/**
-	 * The delay between transactions in milliseconds.
+	 * The default delay between transactions in milliseconds.
 	 */
 	private final static long TRANSACTION_DELAY = 500;
 
+	/**
+	 * The default maximum amount of variable changes sent to the database at once.
+	 */
+	private final static int BATCH_SIZE = 500;
+
+	/**
+	 * The delay between transactions in milliseconds.
+	 */
+	private long transactionDelay = TRANSACTION_DELAY;
+
+	/**
+	 * The maximum amount of variable changes sent to the database at once.
+	 */
+	private int batchSize = BATCH_SIZE;
+
 	/**
 	 * Creates a SQLStorage with a create table query.
 	 * 
@@ -96,6 +119,48 @@ public abstract class SQLStorage extends VariablesStorage {
 		this.tableName = tableName;
 	}
 
+	/**
+	 * Gets the column the variables are selected by when monitoring changes, {@code rowid} by default.
+	 * <p>
+	 * Each write of a variable must set the column to a value greater than all other values in the table,
+	 * i.e. it must be a monotonically increasing sequence of changes. It should be indexed,
+	 * so selecting the changes since the last check only depends on the amount of changes.
+	 *
+	 * @return the name of the column.
+	 * @see #getReplaceQuery()
+	 */
+	protected String getChangeSequenceColumn() {
+		return DEFAULT_CHANGE_SEQUENCE_COLUMN;
+	}
+
+	/**
+	 * Gets the query writing a variable, with the parameters name, type, value and GUID.
+	 * <p>
+	 * The query must also set the {@link #getChangeSequenceColumn() change sequence column}
+	 * if the database doesn't do that by itself.
+	 *
+	 * @return the query.
+	 */
+	protected String getReplaceQuery() {
+		return "REPLACE INTO " + getTableName() + " (name, type, value, update_guid) VALUES (?, ?, ?, ?)";
+	}
+
+	/**
+	 * Called after the table has been created if it didn't exist yet,
+	 * to update tables created by older versions of Skript.
+	 *
+	 * @param db the database.
+	 * @throws SQLException if updating the table fails.
+	 */
+	protected void updateTable(final Database db) throws SQLException {}
+
+	/**
+	 * @return the columns selected from the table, in order: name, type, value, change sequence.
+	 */
+	private String getSelectOrder() {
+		return "name, type, value, " + getChangeSequenceColumn();
+	}
+
 	/**
 	 * Initializes an SQL database with the user provided configuration section for loading the database.
 	 * 
@@ -136,6 +201,23 @@ public abstract class SQLStorage extends VariablesStorage {
 			monitor = monitor_changes;
 			this.monitor_interval = monitor_interval.getMilliSeconds();
 
+			if (n.getValue("commit interval") != null) {
+				final Timespan commitInterval = getValue(n, "commit interval", Timespan.class);
+				if (commitInterval == null)
+					return false;
+				transactionDelay = commitInterval.getMilliSeconds();
+			}
+			if (n.getValue("batch size") != null) {
+				final Integer batchSize = getValue(n, "batch size", Integer.class);
+				if (batchSize == null)
+					return false;
+				if (batchSize < 1) {
+					Skript.error("The batch size of the database '" + databaseName + "' must be at least 1");
+					return false;
+				}
+				this.batchSize = batchSize;
+			}
+
 			final Database db;
 			try {
 				Database database = initialize(n);
@@ -172,6 +254,13 @@ public abstract class SQLStorage extends VariablesStorage {
 					return false;
 				}
 
+				try {
+					updateTable(db);
+				} catch (final SQLException e) {
+					Skript.error("Could not update the variables table '" + tableName + "' in the database '" + databaseName + "': " + e.getLocalizedMessage());
+					return false;
+				}
+
 				if (!prepareQueries()) {
 					return false;
 				}
@@ -189,7 +278,7 @@ public abstract class SQLStorage extends VariablesStorage {
 				}
 
 				// new
-				final ResultSet r2 = db.query("SELECT " + SELECT_ORDER + " FROM " + getTableName());
+				final ResultSet r2 = db.query("SELECT " + getSelectOrder() + " FROM " + getTableName());
 				assert r2 != null;
 				try {
 					loadVariables(r2);
@@ -202,18 +291,17 @@ public abstract class SQLStorage extends VariablesStorage {
 					if (!hadNewTable) {
 						Skript.info("[2.1] Updating the database '" + databaseName + "' to the new format...");
 						try {
-							Variables.getReadLock().lock();
-							for (final Entry<String, Object> v : Variables.getVariablesHashMap().entrySet()) {
-								if (accept(v.getKey())) {// only one database was possible, so only checking this database is correct
-									@SuppressWarnings("null")
-									final SerializedVariable var = Variables.serialize(v.getKey(), v.getValue());
+							Variables.lockAllForReading();
+							Variables.forEachVariable((name, value) -> {
+								if (accept(name)) {// only one database was possible, so only checking this database is correct
+									final SerializedVariable var = Variables.serialize(name, value);
 									final SerializedVariable.Value d = var.value;
 									save(var.name, d == null ? null : d.type, d == null ? null : d.data);
 								}
-							}
-							Skript.info("Updated and transferred " + Variables.getVariablesHashMap().size() + " variables to the new table.");
+							});
+							Skript.info("Updated and transferred " + Variables.numVariables() + " variables to the new table.");
 						} finally {
-							Variables.getReadLock().unlock();
+							Variables.unlockAllForReading();
 						}
 					}
 					db.query("DELETE FROM " + OLD_TABLE_NAME + " WHERE value IS NULL");
@@ -273,7 +361,9 @@ public abstract class SQLStorage extends VariablesStorage {
 
 	@Override
 	protected void allLoaded() {
-		Skript.debug("Database " + databaseName + " loaded. Queue size = " + changesQueue.size());
+		synchronized (changesQueue) {
+			Skript.debug("Database " + databaseName + " loaded. Queue size = " + changesQueue.size());
+		}
 
 		// start committing thread. Its first execution will also commit the first batch of changed variables.
 		Skript.newThread(new Runnable() {
@@ -292,7 +382,7 @@ public abstract class SQLStorage extends VariablesStorage {
 						lastCommit = System.currentTimeMillis();
 					}
 					try {
-						Thread.sleep(Math.max(0, lastCommit + TRANSACTION_DELAY - System.currentTimeMillis()));
+						Thread.sleep(Math.max(0, lastCommit + transactionDelay - System.currentTimeMillis()));
 					} catch (final InterruptedException e) {}
 				}
 			}
@@ -381,7 +471,7 @@ public abstract class SQLStorage extends VariablesStorage {
 					if (writeQuery != null)
 						writeQuery.close();
 				} catch (final SQLException e) {}
-				writeQuery = db.prepare("REPLACE INTO " + getTableName() + " (name, type, value, update_guid) VALUES (?, ?, ?, ?)");
+				writeQuery = db.prepare(getReplaceQuery());
 
 				try {
 					if (deleteQuery != null)
@@ -393,12 +483,12 @@ public abstract class SQLStorage extends VariablesStorage {
 					if (monitorQuery != null)
 						monitorQuery.close();
 				} catch (final SQLException e) {}
-				monitorQuery = db.prepare("SELECT " + SELECT_ORDER + " FROM " + getTableName() + " WHERE rowid > ? AND update_guid != ?");
+				monitorQuery = db.prepare("SELECT " + getSelectOrder() + " FROM " + getTableName() + " WHERE " + getChangeSequenceColumn() + " > ? AND update_guid != ? ORDER BY " + getChangeSequenceColumn());
 				try {
 					if (monitorCleanUpQuery != null)
 						monitorCleanUpQuery.close();
 				} catch (final SQLException e) {}
-				monitorCleanUpQuery = db.prepare("DELETE FROM " + getTableName() + " WHERE value IS NULL AND rowid < ?");
+				monitorCleanUpQuery = db.prepare("DELETE FROM " + getTableName() + " WHERE value IS NULL AND " + getChangeSequenceColumn() + " < ?");
 			} catch (final SQLException e) {
 				Skript.exception(e, "Could not prepare queries for the database '" + databaseName + "': " + e.getLocalizedMessage());
 				return false;
@@ -435,7 +525,7 @@ public abstract class SQLStorage extends VariablesStorage {
 	/**
 	 * Params: rowID, GUID
 	 * <p>
-	 * Selects changed rows. values in order: {@value #SELECT_ORDER}
+	 * Selects changed rows, in the order they were changed. values in order: name, type, value, change sequence
 	 */
 	@Nullable
 	private PreparedStatement monitorQuery;
@@ -449,27 +539,21 @@ public abstract class SQLStorage extends VariablesStorage {
 
 	@Override
 	protected boolean save(final String name, final @Nullable String type, final @Nullable byte[] value) {
+		// When monitoring changes, deletions are written as variables without a value,
+		//  so the other servers can see them. These are deleted by the monitorCleanUpQuery later.
 		synchronized (db) {
-			// REMIND get the actual maximum size from the database
-			if (name.length() > MAX_VARIABLE_NAME_LENGTH)
-				Skript.error("The name of the variable {" + name + "} is too long to be saved in a database (length: " + name.length() + ", maximum allowed: " + MAX_VARIABLE_NAME_LENGTH + ")! It will be truncated and won't bet available under the same name again when loaded.");
-			if (value != null && value.length > MAX_VALUE_SIZE)
-				Skript.error("The variable {" + name + "} cannot be saved in the database as its value's size (" + value.length + ") exceeds the maximum allowed size of " + MAX_VALUE_SIZE + "! An attempt to save the variable will be made nonetheless.");
+			checkSize(name, value);
 			try {
-				if (type == null) {
+				if (type == null && !monitor) {
 					assert value == null;
 					final PreparedStatement deleteQuery = this.deleteQuery;
 					assert deleteQuery != null;
 					deleteQuery.setString(1, name);
 					deleteQuery.executeUpdate();
 				} else {
-					int i = 1;
 					final PreparedStatement writeQuery = this.writeQuery;
 					assert writeQuery != null;
-					writeQuery.setString(i++, name);
-					writeQuery.setString(i++, type);
-					writeQuery.setBytes(i++, value); // SQLite desn't support setBlob
-					writeQuery.setString(i++, guid);
+					setWriteParameters(writeQuery, name, type, value);
 					writeQuery.executeUpdate();
 				}
 			} catch (final SQLException e) {
@@ -480,6 +564,72 @@ public abstract class SQLStorage extends VariablesStorage {
 		return true;
 	}
 
+	/**
+	 * Sends the changes to the database in batches of at most {@link #batchSize} changes,
+	 * instead of executing a statement for each change.
+	 * <p>
+	 * The changes are of distinct variables, as they are collapsed by name in the queue,
+	 * so the order of the deletions and replacements within a batch doesn't matter.
+	 */
+	@Override
+	protected void save(final List<SerializedVariable> changes) {
+		for (int start = 0; start < changes.size(); start += batchSize) {
+			final List<SerializedVariable> batch = changes.subList(start, Math.min(changes.size(), start + batchSize));
+			synchronized (db) {
+				final PreparedStatement writeQuery = this.writeQuery, deleteQuery = this.deleteQuery;
+				assert writeQuery != null && deleteQuery != null;
+				try {
+					boolean writes = false, deletes = false;
+					for (final SerializedVariable variable : batch) {
+						final SerializedVariable.Value value = variable.value;
+						checkSize(variable.name, value == null ? null : value.data);
+						if (value == null && !monitor) {
+							deleteQuery.setString(1, variable.name);
+							deleteQuery.addBatch();
+							deletes = true;
+						} else {
+							setWriteParameters(writeQuery, variable.name, value == null ? null : value.type, value == null ? null : value.data);
+							writeQuery.addBatch();
+							writes = true;
+						}
+					}
+					if (deletes)
+						deleteQuery.executeBatch();
+					if (writes)
+						writeQuery.executeBatch();
+				} catch (final SQLException e) {
+					sqlException(e);
+					try {
+						writeQuery.clearBatch();
+						deleteQuery.clearBatch();
+					} catch (final SQLException ignored) {}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Prints errors if the variable can't be saved completely.
+	 */
+	private static void checkSize(final String name, final @Nullable byte[] value) {
+		// REMIND get the actual maximum size from the database
+		if (name.length() > MAX_VARIABLE_NAME_LENGTH)
+			Skript.error("The name of the variable {" + name + "} is too long to be saved in a database (length: " + name.length() + ", maximum allowed: " + MAX_VARIABLE_NAME_LENGTH + ")! It will be truncated and won't bet available under the same name again when loaded.");
+		if (value != null && value.length > MAX_VALUE_SIZE)
+			Skript.error("The variable {" + name + "} cannot be saved in the database as its value's size (" + value.length + ") exceeds the maximum allowed size of " + MAX_VALUE_SIZE + "! An attempt to save the variable will be made nonetheless.");
+	}
+
+	/**
+	 * Sets the parameters of the {@link #writeQuery}.
+	 */
+	private static void setWriteParameters(final PreparedStatement writeQuery, final String name, final @Nullable String type, final @Nullable byte[] value) throws SQLException {
+		int i = 1;
+		writeQuery.setString(i++, name);
+		writeQuery.setString(i++, type);
+		writeQuery.setBytes(i++, value); // SQLite desn't support setBlob
+		writeQuery.setString(i++, guid);
+	}
+
 	@Override
 	public void close() {
 		synchronized (db) {
@@ -502,25 +652,54 @@ public abstract class SQLStorage extends VariablesStorage {
 	protected void checkDatabase() {
 		try {
 			final long lastRowID; // local variable as this is used to clean the database below
-			ResultSet r = null;
-			try {
-				synchronized (db) {
-					if (closed || db.get() == null)
-						return;
-					lastRowID = this.lastRowID;
-					final PreparedStatement monitorQuery = this.monitorQuery;
-					assert monitorQuery != null;
-					monitorQuery.setLong(1, lastRowID);
-					monitorQuery.setString(2, guid);
-					monitorQuery.execute();
-					r = monitorQuery.getResultSet();
-					assert r != null;
-				}
-				if (!closed)
-					loadVariables(r);
-			} finally {
-				if (r != null)
+			// Only read the changes here, and apply all of them at once on the main thread
+			final List<SerializedVariable> changes = new ArrayList<>();
+			synchronized (db) {
+				if (closed || db.get() == null)
+					return;
+				lastRowID = this.lastRowID;
+				final PreparedStatement monitorQuery = this.monitorQuery;
+				assert monitorQuery != null;
+				monitorQuery.setLong(1, lastRowID);
+				monitorQuery.setString(2, guid);
+				monitorQuery.execute();
+				final ResultSet r = monitorQuery.getResultSet();
+				assert r != null;
+				try {
+					while (r.next()) {
+						int i = 1;
+						final String name = r.getString(i++);
+						if (name == null) {
+							Skript.error("Variable with NULL name found in the database '" + databaseName + "', ignoring it");
+							continue;
+						}
+						final String type = r.getString(i++);
+						final byte[] value = r.getBytes(i++); // Blob not supported by SQLite
+						this.lastRowID = Math.max(this.lastRowID, r.getLong(i++));
+						changes.add(new SerializedVariable(name, type == null || value == null ? null : new SerializedVariable.Value(type, value)));
+					}
+				} finally {
 					r.close();
+				}
+			}
+
+			if (!closed && !changes.isEmpty()) {
+				final boolean lazy = SkriptConfig.lazyVariableDeserialization.value();
+				Task.callSync(new Callable<Void>() {
+					@Override
+					@Nullable
+					public Void call() {
+						for (final SerializedVariable variable : changes) {
+							final SerializedVariable.Value value = variable.value;
+							if (value == null) {
+								Variables.variableDeleted(variable.name, SQLStorage.this);
+							} else {
+								loadVariable(variable.name, value.type, value.data, lazy);
+							}
+						}
+						return null;
+					}
+				});
 			}
 
 			if (!closed) { // Skript may have been disabled in the meantime // TODO not fixed
@@ -561,6 +740,30 @@ public abstract class SQLStorage extends VariablesStorage {
 
 //	final static LinkedList<VariableInfo> syncDeserializing = new LinkedList<VariableInfo>();
 
+	/**
+	 * Deserializes a variable and passes it to {@link Variables#variableLoaded(String, Object, VariablesStorage)}.
+	 * Must be called on the main thread.
+	 */
+	private void loadVariable(final String name, final String type, final byte[] value, final boolean lazy) {
+		final ClassInfo<?> c = Classes.getClassInfoNoError(type);
+		Serializer<?> s;
+		if (c == null || (s = c.getSerializer()) == null) {
+			Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because the type '" + type + "' cannot be recognised or cannot be stored in variables");
+			return;
+		}
+		if (lazy && !s.mustSyncDeserialization()) {
+			// Deserialized on first access
+			Variables.variableLoaded(name, new LazyValue(new SerializedVariable.Value(type, value)), this);
+			return;
+		}
+		final Object d = Classes.deserialize(c, value);
+		if (d == null) {
+			Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because it cannot be loaded as " + c.getName().withIndefiniteArticle());
+			return;
+		}
+		Variables.variableLoaded(name, d, this);
+	}
+
 	/**
 	 * Doesn't lock the database - {@link #save(String, String, byte[])} does that // what?
 	 */
@@ -568,6 +771,7 @@ public abstract class SQLStorage extends VariablesStorage {
 //		assert !Thread.holdsLock(db);
 //		synchronized (syncDeserializing) {
 
+		final boolean lazy = SkriptConfig.lazyVariableDeserialization.value();
 		final SQLException e = Task.callSync(new Callable<SQLException>() {
 			@Override
 			@Nullable
@@ -582,27 +786,11 @@ public abstract class SQLStorage extends VariablesStorage {
 						}
 						final String type = r.getString(i++);
 						final byte[] value = r.getBytes(i++); // Blob not supported by SQLite
-						lastRowID = r.getLong(i++);
-						if (value == null) {
+						lastRowID = Math.max(lastRowID, r.getLong(i++));
+						if (type == null || value == null) {
 							Variables.variableLoaded(name, null, SQLStorage.this);
 						} else {
-							final ClassInfo<?> c = Classes.getClassInfoNoError(type);
-							@SuppressWarnings("unused")
-							Serializer<?> s;
-							if (c == null || (s = c.getSerializer()) == null) {
-								Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because the type '" + type + "' cannot be recognised or cannot be stored in variables");
-								continue;
-							}
-//					if (s.mustSyncDeserialization()) {
-//						syncDeserializing.add(new VariableInfo(name, value, c));
-//					} else {
-							final Object d = Classes.deserialize(c, value);
-							if (d == null) {
-								Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because it cannot be loaded as " + c.getName().withIndefiniteArticle());
-								continue;
-							}
-							Variables.variableLoaded(name, d, SQLStorage.this);
-//					}
+							loadVariable(name, type, value, lazy);
 						}
 					}
 				} catch (final SQLException e) {
@@ -718,7 +906,7 @@ public abstract class SQLStorage extends VariablesStorage {
 						}
 						final String type = r.getString(i++);
 						final String value = r.getString(i++);
-						lastRowID = r.getLong(i++);
+						// The rowid of the old table is unrelated to the change sequence of the new table
 						if (type == null || value == null) {
 							Variables.variableLoaded(name, null, hadNewTable ? temp : SQLStorage.this);
 						} else {
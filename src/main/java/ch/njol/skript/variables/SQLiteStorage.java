@@ -19,6 +19,8 @@
 package ch.njol.skript.variables;
 
 import java.io.File;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.log.SkriptLogger;
@@ -27,15 +29,51 @@ import lib.PatPeter.SQLibrary.SQLite;
 
 public class SQLiteStorage extends SQLStorage {
 
+	/**
+	 * The change sequence column. SQLite may reuse the largest rowid after a row has been replaced,
+	 * so the rowid can't be used to find changed variables.
+	 */
+	private static final String CHANGE_SEQUENCE_COLUMN = "change_seq";
+
 	SQLiteStorage(String name) {
 		super(name, "CREATE TABLE IF NOT EXISTS %s (" +
 				"name         VARCHAR(" + MAX_VARIABLE_NAME_LENGTH + ")  NOT NULL  PRIMARY KEY," +
 				"type         VARCHAR(" + MAX_CLASS_CODENAME_LENGTH + ")," +
 				"value        BLOB(" + MAX_VALUE_SIZE + ")," +
-				"update_guid  CHAR(36)  NOT NULL" +
+				"update_guid  CHAR(36)  NOT NULL," +
+				CHANGE_SEQUENCE_COLUMN + "   INTEGER" +
 				")");
 	}
 
+	@Override
+	protected String getChangeSequenceColumn() {
+		return CHANGE_SEQUENCE_COLUMN;
+	}
+
+	/**
+	 * The change sequence is assigned by the database within the write, so it increases across all servers using the database.
+	 * The largest value is looked up in the index created by {@link #updateTable(Database)}.
+	 */
+	@Override
+	protected String getReplaceQuery() {
+		return "REPLACE INTO " + getTableName() + " (name, type, value, update_guid, " + CHANGE_SEQUENCE_COLUMN + ") " +
+			"VALUES (?, ?, ?, ?, (SELECT IFNULL(MAX(" + CHANGE_SEQUENCE_COLUMN + "), 0) + 1 FROM " + getTableName() + "))";
+	}
+
+	@Override
+	protected void updateTable(Database db) throws SQLException {
+		try {
+			ResultSet r = db.query("SELECT " + CHANGE_SEQUENCE_COLUMN + " FROM " + getTableName() + " LIMIT 1");
+			if (r != null)
+				r.close();
+		} catch (SQLException e) {
+			// Table created by an older version, number the existing rows in their current order
+			db.query("ALTER TABLE " + getTableName() + " ADD COLUMN " + CHANGE_SEQUENCE_COLUMN + " INTEGER");
+			db.query("UPDATE " + getTableName() + " SET " + CHANGE_SEQUENCE_COLUMN + " = rowid");
+		}
+		db.query("CREATE INDEX IF NOT EXISTS " + getTableName() + "_" + CHANGE_SEQUENCE_COLUMN + " ON " + getTableName() + " (" + CHANGE_SEQUENCE_COLUMN + ")");
+	}
+
 	@Override
 	public Database initialize(SectionNode config) {
 		File f = file;
@@ -0,0 +1,303 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A {@link VariablesMap} that stores variables only once, in a trie
+ * whose nodes are the parts of the variable names separated by {@link Variable#SEPARATOR}.
+ * <p>
+ * Both single and list variables are looked up by walking down the {@link #treeMap tree},
+ * so this map doesn't need the additional hash map of full variable names
+ * {@link HashTreeVariablesMap} uses. The parts of the names are interned,
+ * as the same parts (e.g. UUIDs or {@code kills}) usually appear in many variables.
+ * <p>
+ * Nodes that no longer contain any variables are removed from the tree,
+ * and nodes that only hold the value of a variable are replaced by that value.
+ * <p>
+ * {@link #copy() Copies} share their nodes with the original map. Once a map has been copied,
+ * both maps copy a shared node before changing it, so a copy only costs as much
+ * as the nodes that are changed afterwards.
+ */
+final class TrieVariablesMap extends VariablesMap {
+
+	/**
+	 * The interner used for the keys of the tree.
+	 */
+	private static final Interner<String> SEGMENT_INTERNER = Interners.newWeakInterner();
+
+	/**
+	 * The amount of non-list variables in this map.
+	 */
+	private int size = 0;
+
+	/**
+	 * The nodes (except the root) that are only used by this map and may be changed in place,
+	 * or {@code null} if no nodes are shared with other maps.
+	 */
+	@Nullable
+	private Set<TreeMap<String, Object>> ownedNodes;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	@Nullable
+	Object getVariable(String name) {
+		boolean list = name.endsWith("*");
+		TreeMap<String, Object> parent = treeMap;
+
+		int start = 0;
+		while (true) {
+			int end = name.indexOf(Variable.SEPARATOR, start);
+			if (end == -1) {
+				// Last part of the variable name
+				if (list)
+					return name.length() - start == 1 ? parent : null;
+
+				Object node = parent.get(name.substring(start));
+				if (node instanceof TreeMap)
+					return ((TreeMap<String, Object>) node).get(null);
+				return node;
+			}
+
+			String part = name.substring(start, end);
+			if (list && part.equals("*"))
+				return parent;
+
+			// Continue the iteration if the child node is a tree itself
+			Object childNode = parent.get(part);
+			if (!(childNode instanceof TreeMap))
+				return null;
+			parent = (TreeMap<String, Object>) childNode;
+
+			start = end + Variable.SEPARATOR.length();
+		}
+	}
+
+	@Override
+	void setVariable(String name, @Nullable Object value) {
+		size += setVariable(treeMap, split(name), 0, value);
+	}
+
+	@Override
+	void setVariable(String[] parts, @Nullable Object value) {
+		size += setVariable(treeMap, parts, 0, value);
+	}
+
+	/**
+	 * Splits the given variable name by {@link Variable#SEPARATOR}, keeping empty parts,
+	 * like {@link #getVariable(String)} walks the tree.
+	 *
+	 * @param name the variable name.
+	 * @return the parts of the name.
+	 */
+	private static String[] split(String name) {
+		int end = name.indexOf(Variable.SEPARATOR);
+		if (end == -1)
+			return new String[] {name};
+
+		List<String> parts = new ArrayList<>();
+		int start = 0;
+		do {
+			parts.add(name.substring(start, end));
+			start = end + Variable.SEPARATOR.length();
+			end = name.indexOf(Variable.SEPARATOR, start);
+		} while (end != -1);
+		parts.add(name.substring(start));
+		return parts.toArray(new String[0]);
+	}
+
+	/**
+	 * Gets the given child node for changing it, copying it first if it's shared with other maps.
+	 *
+	 * @param parent the parent node, which must not be shared.
+	 * @param part the key of the child node.
+	 * @param childNode the child node.
+	 * @return the child node, or its copy.
+	 */
+	private TreeMap<String, Object> ownChild(TreeMap<String, Object> parent, String part, TreeMap<String, Object> childNode) {
+		Set<TreeMap<String, Object>> ownedNodes = this.ownedNodes;
+		if (ownedNodes == null || ownedNodes.contains(childNode))
+			return childNode;
+		TreeMap<String, Object> copy = new TreeMap<>(childNode);
+		parent.put(part, copy);
+		ownedNodes.add(copy);
+		return copy;
+	}
+
+	/**
+	 * Sets the variable with the given name in the given (sub-)tree.
+	 *
+	 * @param parent the (sub-)tree, which must not be shared with other maps.
+	 * @param parts the parts of the variable name.
+	 * @param index the index of the part of the name the given tree is keyed by.
+	 * @param value the variable value, {@code null} to delete the variable.
+	 * @return the change in the amount of non-list variables in the tree.
+	 */
+	@SuppressWarnings("unchecked")
+	private int setVariable(TreeMap<String, Object> parent, String[] parts, int index, @Nullable Object value) {
+		String part = parts[index];
+		Object childNode = parent.get(part);
+
+		if (index == parts.length - 1) {
+			// End of the variable name reached, set the variable itself
+			if (childNode instanceof TreeMap) {
+				TreeMap<String, Object> childNodeMap = ownChild(parent, part, (TreeMap<String, Object>) childNode);
+				Object previous = value == null ? childNodeMap.remove(null) : childNodeMap.put(null, value);
+
+				if (childNodeMap.isEmpty()) {
+					parent.remove(part);
+					disown(childNodeMap);
+				}
+				return (value == null ? 0 : 1) - (previous == null ? 0 : 1);
+			}
+
+			if (value == null) {
+				if (childNode == null)
+					return 0;
+				parent.remove(part);
+				return -1;
+			}
+
+			if (childNode == null) {
+				parent.put(SEGMENT_INTERNER.intern(part), value);
+				return 1;
+			}
+			parent.put(part, value);
+			return 0;
+		}
+
+		if (value == null && index == parts.length - 2 && parts[index + 1].equals("*")) {
+			// Deleting a list variable
+			if (!(childNode instanceof TreeMap))
+				return 0;
+			TreeMap<String, Object> childNodeMap = (TreeMap<String, Object>) childNode;
+
+			// If the list variable itself has a value,
+			//  e.g. list `{mylist::3}` while variable `{mylist}` also has a value,
+			//  then keep that value
+			Object currentChildValue = childNodeMap.get(null);
+			disown(childNodeMap);
+			if (currentChildValue == null) {
+				parent.remove(part);
+				return -countVariables(childNodeMap);
+			}
+			parent.put(part, currentChildValue);
+			return 1 - countVariables(childNodeMap);
+		}
+
+		TreeMap<String, Object> childNodeMap;
+		if (childNode instanceof TreeMap) {
+			childNodeMap = ownChild(parent, part, (TreeMap<String, Object>) childNode);
+		} else if (value == null) {
+			// Want to set variable to null, but variable is already null
+			return 0;
+		} else {
+			// Create a new child node, keeping the value of a leaf node we ran into
+			childNodeMap = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
+			if (childNode != null)
+				childNodeMap.put(null, childNode);
+			parent.put(childNode == null ? SEGMENT_INTERNER.intern(part) : part, childNodeMap);
+			if (ownedNodes != null)
+				ownedNodes.add(childNodeMap);
+		}
+
+		int change = setVariable(childNodeMap, parts, index + 1, value);
+
+		// Keep the tree compact
+		if (childNodeMap.isEmpty()) {
+			parent.remove(part);
+			disown(childNodeMap);
+		} else if (childNodeMap.size() == 1 && childNodeMap.containsKey(null)) {
+			parent.put(part, childNodeMap.get(null));
+			disown(childNodeMap);
+		}
+		return change;
+	}
+
+	/**
+	 * Removes the given node and its children from the {@link #ownedNodes}, after the node has been removed from the tree.
+	 *
+	 * @param node the removed node.
+	 */
+	@SuppressWarnings("unchecked")
+	private void disown(TreeMap<String, Object> node) {
+		Set<TreeMap<String, Object>> ownedNodes = this.ownedNodes;
+		// The children of a shared node are shared as well
+		if (ownedNodes == null || !ownedNodes.remove(node))
+			return;
+		for (Object childNode : node.values()) {
+			if (childNode instanceof TreeMap)
+				disown((TreeMap<String, Object>) childNode);
+		}
+	}
+
+	/**
+	 * Counts the non-list variables in the given (sub-)tree.
+	 *
+	 * @param map the (sub-)tree.
+	 * @return the amount of variables, including the value of the tree itself.
+	 */
+	@SuppressWarnings("unchecked")
+	private static int countVariables(TreeMap<String, Object> map) {
+		int count = 0;
+		for (Entry<String, Object> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof TreeMap) {
+				count += countVariables((TreeMap<String, Object>) value);
+			} else {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Creates a copy of this map, which shares all nodes except the root with this map.
+	 * The shared nodes are copied by the first map changing them.
+	 */
+	@Override
+	public VariablesMap copy() {
+		TrieVariablesMap copy = new TrieVariablesMap();
+
+		copy.treeMap.putAll(treeMap);
+		copy.size = size;
+
+		ownedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+		copy.ownedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+		return copy;
+	}
+
+}
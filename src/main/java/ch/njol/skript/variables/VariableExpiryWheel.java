@@ -0,0 +1,209 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hierarchical timer wheel of the global variables that expire,
+ * used by {@link Variables#expireVariable(String, long)}.
+ * <p>
+ * Each level of the wheel has {@link #SLOTS} slots, a slot of a level spanning all slots of the level below it.
+ * Scheduling a variable and advancing the wheel by a tick take constant time,
+ * and variables far in the future are only moved to lower levels a few times before they expire,
+ * so there's no need to scan all expiring variables periodically.
+ * <p>
+ * Every variable has at most one expiry time, scheduling it again or {@link #cancel(String) cancelling} it
+ * replaces its previous one. Entries of replaced expiry times are left in the wheel and ignored once they're reached.
+ * <p>
+ * This class is thread-safe.
+ */
+final class VariableExpiryWheel {
+
+	private static final int SLOT_BITS = 6;
+	static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	static final int LEVELS = 4;
+
+	/**
+	 * The furthest tick in the future an entry can be placed at,
+	 * entries expiring later are placed there and moved again once they're reached.
+	 */
+	private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	private static final class Entry {
+
+		final String name;
+		final long deadline;
+
+		Entry(String name, long deadline) {
+			this.name = name;
+			this.deadline = deadline;
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private final List<Entry>[][] wheel = new List[LEVELS][SLOTS];
+
+	/**
+	 * The current expiry time of each scheduled variable.
+	 */
+	private final Map<String, Long> deadlines = new HashMap<>();
+
+	/**
+	 * The amount of scheduled variables, to check whether there are any without synchronizing.
+	 */
+	private volatile int size;
+
+	/**
+	 * The tick the wheel has advanced to.
+	 */
+	private long currentTick;
+
+	/**
+	 * Creates a new timer wheel.
+	 *
+	 * @param currentTick the current tick.
+	 */
+	VariableExpiryWheel(long currentTick) {
+		this.currentTick = currentTick;
+	}
+
+	/**
+	 * @return whether no variables are scheduled to expire.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Schedules the given variable to expire at the given tick.
+	 * If it's already scheduled, its previous expiry time is replaced.
+	 *
+	 * @param name the variable name.
+	 * @param deadline the tick the variable expires at, variables expiring at or before the current tick
+	 * expire at the next tick.
+	 */
+	synchronized void schedule(String name, long deadline) {
+		deadlines.put(name, deadline);
+		size = deadlines.size();
+		insert(new Entry(name, deadline));
+	}
+
+	/**
+	 * Makes the given variable not expire anymore.
+	 *
+	 * @param name the variable name.
+	 * @return whether the variable was scheduled to expire.
+	 */
+	synchronized boolean cancel(String name) {
+		if (deadlines.remove(name) == null)
+			return false;
+		size = deadlines.size();
+		return true;
+	}
+
+	/**
+	 * Gets the tick the given variable expires at.
+	 *
+	 * @param name the variable name.
+	 * @return the tick, or {@code null} if the variable isn't scheduled to expire.
+	 */
+	@Nullable
+	synchronized Long getDeadline(String name) {
+		return deadlines.get(name);
+	}
+
+	/**
+	 * Advances the wheel to the given tick.
+	 *
+	 * @param tick the current tick.
+	 * @return the names of the variables that expired since the last time the wheel was advanced.
+	 */
+	synchronized List<String> advance(long tick) {
+		List<String> expired = new ArrayList<>();
+		if (deadlines.isEmpty()) {
+			// Only replaced entries can be left, they don't need to be expired
+			if (tick > currentTick) {
+				for (List<Entry>[] level : wheel)
+					Arrays.fill(level, null);
+				currentTick = tick;
+			}
+			return expired;
+		}
+
+		while (currentTick < tick) {
+			currentTick++;
+
+			// Move the entries of the slots that were reached down or expire them, starting with the highest level
+			int level = 0;
+			while (level < LEVELS - 1 && (currentTick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0)
+				level++;
+			for (; level >= 0; level--) {
+				List<Entry> entries = takeSlot(level, (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+				if (entries == null)
+					continue;
+				for (Entry entry : entries) {
+					Long deadline = deadlines.get(entry.name);
+					if (deadline == null || deadline != entry.deadline)
+						continue; // Cancelled or replaced
+					if (entry.deadline > currentTick) {
+						insert(entry);
+						continue;
+					}
+					// Entries of higher levels may be reached exactly at their deadline
+					deadlines.remove(entry.name);
+					expired.add(entry.name);
+				}
+			}
+		}
+		size = deadlines.size();
+		return expired;
+	}
+
+	private void insert(Entry entry) {
+		long delay = Math.min(Math.max(entry.deadline - currentTick, 1), MAX_DELAY);
+		long tick = currentTick + delay;
+
+		int level = 0;
+		while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1)))
+			level++;
+
+		int slot = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+		List<Entry> entries = wheel[level][slot];
+		if (entries == null)
+			wheel[level][slot] = entries = new ArrayList<>();
+		entries.add(entry);
+	}
+
+	@Nullable
+	private List<Entry> takeSlot(int level, int slot) {
+		List<Entry> entries = wheel[level][slot];
+		wheel[level][slot] = null;
+		return entries;
+	}
+
+}
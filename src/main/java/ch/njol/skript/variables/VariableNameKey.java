@@ -0,0 +1,118 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Looks up a variable in a map keyed by full variable names, given the parts of its name,
+ * without joining the parts into the full name.
+ * <p>
+ * A key is equal to the full name of the variable and has the same hash code.
+ * As {@link Map#get(Object)} and {@link Map#remove(Object)} compare the given key with the keys of the map
+ * by calling {@code key.equals(k)}, a key can be used to find the entry of the full name.
+ * Keys must never be stored in such a map, as a {@link String} is not equal to a key.
+ */
+final class VariableNameKey {
+
+	private static final int SEPARATOR_HASH = Variable.SEPARATOR.hashCode();
+	private static final int SEPARATOR_FACTOR = pow31(Variable.SEPARATOR.length());
+
+	private final String[] parts;
+	private final int hash;
+
+	/**
+	 * @param parts the parts of the variable name, as {@link Variables#splitVariableName(String) split}
+	 *                 by {@link Variable#SEPARATOR}. Must not be modified while the key is used.
+	 */
+	VariableNameKey(String[] parts) {
+		this.parts = parts;
+
+		// Same as the hash code of the full name, using the hash codes of the parts, which are cached for the literal parts
+		int hash = parts[0].hashCode();
+		for (int i = 1; i < parts.length; i++) {
+			String part = parts[i];
+			hash = hash * SEPARATOR_FACTOR + SEPARATOR_HASH;
+			hash = hash * pow31(part.length()) + part.hashCode();
+		}
+		this.hash = hash;
+	}
+
+	/**
+	 * @return 31 to the power of the given exponent, with the overflow of {@link String#hashCode()}.
+	 */
+	private static int pow31(int exponent) {
+		int result = 1;
+		int base = 31;
+		while (exponent != 0) {
+			if ((exponent & 1) != 0)
+				result *= base;
+			base *= base;
+			exponent >>>= 1;
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(@Nullable Object object) {
+		if (object == this)
+			return true;
+		if (object instanceof VariableNameKey)
+			return Arrays.equals(parts, ((VariableNameKey) object).parts);
+		if (!(object instanceof String))
+			return false;
+
+		String name = (String) object;
+		if (name.hashCode() != hash)
+			return false;
+		int length = (parts.length - 1) * Variable.SEPARATOR.length();
+		for (String part : parts)
+			length += part.length();
+		if (name.length() != length)
+			return false;
+
+		int offset = 0;
+		for (int i = 0; i < parts.length; i++) {
+			if (i != 0) {
+				if (!name.startsWith(Variable.SEPARATOR, offset))
+					return false;
+				offset += Variable.SEPARATOR.length();
+			}
+			if (!name.startsWith(parts[i], offset))
+				return false;
+			offset += parts[i].length();
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return String.join(Variable.SEPARATOR, parts);
+	}
+
+}
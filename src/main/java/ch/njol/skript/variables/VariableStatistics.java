@@ -0,0 +1,334 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import ch.njol.util.NonNullPair;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional statistics about the accesses to global variables, to find the variables scripts use the most.
+ * <p>
+ * Reads, writes, deletions and saved bytes are counted per prefix of the variable names,
+ * i.e. their first {@link #setPrefixDepth(int) few} parts, e.g. {@code kills} for {@code {kills::%player%}}.
+ * Counting is disabled unless enabled in the config, as it slows down every access to a global variable.
+ * <p>
+ * The size and lag of the queues of changes that haven't been saved yet are available regardless.
+ */
+public final class VariableStatistics {
+
+	private VariableStatistics() {}
+
+	/**
+	 * The maximum amount of prefixes counted separately, further prefixes are counted as {@link #OTHER_PREFIX}.
+	 * Limits the memory used if the first parts of variable names are e.g. player UUIDs.
+	 */
+	private static final int MAX_PREFIXES = 4096;
+
+	/**
+	 * The prefix the accesses to variables are counted as once there are {@link #MAX_PREFIXES} prefixes.
+	 */
+	public static final String OTHER_PREFIX = "(other)";
+
+	/**
+	 * The access counts of the variables with a prefix.
+	 */
+	public static final class PrefixStatistics {
+
+		private final String prefix;
+
+		private final LongAdder reads = new LongAdder();
+		private final LongAdder writes = new LongAdder();
+		private final LongAdder deletes = new LongAdder();
+		private final LongAdder savedBytes = new LongAdder();
+
+		private PrefixStatistics(String prefix) {
+			this.prefix = prefix;
+		}
+
+		/**
+		 * @return the prefix of the variable names, without a trailing {@link Variable#SEPARATOR}.
+		 */
+		public String getPrefix() {
+			return prefix;
+		}
+
+		public long getReads() {
+			return reads.sum();
+		}
+
+		public long getWrites() {
+			return writes.sum();
+		}
+
+		public long getDeletes() {
+			return deletes.sum();
+		}
+
+		/**
+		 * @return the size of the serialized values saved to the storages.
+		 */
+		public long getSavedBytes() {
+			return savedBytes.sum();
+		}
+
+		/**
+		 * @return the sum of reads, writes and deletes.
+		 */
+		public long getAccesses() {
+			return reads.sum() + writes.sum() + deletes.sum();
+		}
+
+	}
+
+	/**
+	 * Whether accesses are counted, read before every access to a global variable.
+	 */
+	private static volatile boolean enabled = false;
+
+	/**
+	 * The amount of parts of the variable names the accesses are counted by.
+	 */
+	private static volatile int prefixDepth = 1;
+
+	private static final Map<String, PrefixStatistics> PREFIXES = new ConcurrentHashMap<>();
+
+	/**
+	 * The time the {@link Variables#saveQueue} stopped being empty, or {@code 0} if it's empty.
+	 * Updated regardless of {@link #enabled}, as it's only updated once per batch of changes.
+	 */
+	private static volatile long saveQueueSince;
+
+	/**
+	 * @return whether accesses to global variables are counted.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables counting accesses to global variables. The counts so far are kept.
+	 *
+	 * @param enabled whether accesses should be counted.
+	 */
+	public static void setEnabled(boolean enabled) {
+		VariableStatistics.enabled = enabled;
+	}
+
+	/**
+	 * @return the amount of parts of the variable names accesses are counted by.
+	 */
+	public static int getPrefixDepth() {
+		return prefixDepth;
+	}
+
+	/**
+	 * Sets the amount of parts of the variable names accesses are counted by,
+	 * and resets the counts if it changed.
+	 *
+	 * @param depth the amount of parts, at least 1.
+	 */
+	public static void setPrefixDepth(int depth) {
+		depth = Math.max(1, depth);
+		if (depth != prefixDepth) {
+			prefixDepth = depth;
+			reset();
+		}
+	}
+
+	/**
+	 * Resets all counts.
+	 */
+	public static void reset() {
+		PREFIXES.clear();
+	}
+
+	/**
+	 * Gets the prefixes accessed the most.
+	 *
+	 * @param amount the maximum amount of prefixes to return.
+	 * @return the prefixes, in descending order of their {@link PrefixStatistics#getAccesses() accesses}.
+	 */
+	public static List<PrefixStatistics> getTopPrefixes(int amount) {
+		// The counts keep changing while sorting, so they are only read once
+		List<NonNullPair<PrefixStatistics, Long>> accesses = new ArrayList<>(PREFIXES.size());
+		for (PrefixStatistics statistics : PREFIXES.values())
+			accesses.add(new NonNullPair<>(statistics, statistics.getAccesses()));
+		accesses.sort(Comparator.comparing(NonNullPair<PrefixStatistics, Long>::getSecond).reversed());
+
+		List<PrefixStatistics> prefixes = new ArrayList<>(Math.min(amount, accesses.size()));
+		for (int i = 0; i < amount && i < accesses.size(); i++)
+			prefixes.add(accesses.get(i).getFirst());
+		return prefixes;
+	}
+
+	/**
+	 * @return the amount of changes waiting for the lock of their variables, see {@link Variables#tryProcessChangeQueues()}.
+	 */
+	public static int getQueuedChanges() {
+		return Variables.getQueuedChanges();
+	}
+
+	/**
+	 * @return how long (in milliseconds) the oldest change has been waiting for the lock of its variables.
+	 */
+	public static long getChangeQueueLag() {
+		return Variables.getChangeQueueLag();
+	}
+
+	/**
+	 * @return the amount of changes waiting to be passed to the storages.
+	 */
+	public static int getQueuedSaves() {
+		return Variables.saveQueue.size();
+	}
+
+	/**
+	 * @return how long (in milliseconds) there have been changes waiting to be passed to the storages,
+	 * since the last time they were all passed to the storages.
+	 */
+	public static long getSaveQueueLag() {
+		long since = saveQueueSince;
+		return since == 0 ? 0 : System.currentTimeMillis() - since;
+	}
+
+	/**
+	 * @return the configured storages by their names, whose queues can be checked with
+	 * {@link VariablesStorage#getQueuedChanges()} and {@link VariablesStorage#getQueueLag()}.
+	 */
+	public static Map<String, VariablesStorage> getStorages() {
+		Map<String, VariablesStorage> storages = new LinkedHashMap<>();
+		for (VariablesStorage storage : Variables.STORAGES)
+			storages.put(storage.databaseName, storage);
+		return storages;
+	}
+
+	/**
+	 * Counts a read of the given global variable.
+	 */
+	static void read(String name) {
+		if (enabled)
+			get(getPrefix(name)).reads.increment();
+	}
+
+	/**
+	 * Counts a read of the given global variable.
+	 */
+	static void read(String[] parts) {
+		if (enabled)
+			get(getPrefix(parts)).reads.increment();
+	}
+
+	/**
+	 * Counts a write or deletion of the given global variable.
+	 *
+	 * @param name the name of the variable.
+	 * @param value the new value of the variable, {@code null} if it's deleted.
+	 */
+	static void write(String name, @Nullable Object value) {
+		if (enabled)
+			count(get(getPrefix(name)), value);
+	}
+
+	/**
+	 * Counts a write or deletion of the given global variable.
+	 *
+	 * @param parts the parts of the name of the variable.
+	 * @param value the new value of the variable, {@code null} if it's deleted.
+	 */
+	static void write(String[] parts, @Nullable Object value) {
+		if (enabled)
+			count(get(getPrefix(parts)), value);
+	}
+
+	/**
+	 * Counts the bytes of a variable saved to a storage.
+	 */
+	static void saved(SerializedVariable variable) {
+		if (enabled && variable.value != null)
+			get(getPrefix(variable.name)).savedBytes.add(variable.value.data.length);
+	}
+
+	/**
+	 * Called after changes have been added to the {@link Variables#saveQueue}.
+	 */
+	static void saveQueued() {
+		if (saveQueueSince == 0)
+			saveQueueSince = System.currentTimeMillis();
+	}
+
+	/**
+	 * Called after changes have been taken from the {@link Variables#saveQueue}.
+	 *
+	 * @param empty whether the queue is empty now.
+	 */
+	static void saveQueueTaken(boolean empty) {
+		saveQueueSince = empty ? 0 : System.currentTimeMillis();
+	}
+
+	private static void count(PrefixStatistics statistics, @Nullable Object value) {
+		if (value == null) {
+			statistics.deletes.increment();
+		} else {
+			statistics.writes.increment();
+		}
+	}
+
+	private static PrefixStatistics get(String prefix) {
+		PrefixStatistics statistics = PREFIXES.get(prefix);
+		if (statistics != null)
+			return statistics;
+		if (PREFIXES.size() >= MAX_PREFIXES)
+			prefix = OTHER_PREFIX;
+		return PREFIXES.computeIfAbsent(prefix, PrefixStatistics::new);
+	}
+
+	/**
+	 * Gets the first {@link #prefixDepth} parts of the given variable name, without splitting it.
+	 */
+	static String getPrefix(String name) {
+		int end = -Variable.SEPARATOR.length();
+		for (int i = prefixDepth; i > 0; i--) {
+			end = name.indexOf(Variable.SEPARATOR, end + Variable.SEPARATOR.length());
+			if (end == -1)
+				return name;
+		}
+		return name.substring(0, end);
+	}
+
+	/**
+	 * Gets the first {@link #prefixDepth} parts of a variable name.
+	 */
+	static String getPrefix(String[] parts) {
+		int depth = prefixDepth;
+		if (depth == 1 || parts.length == 1)
+			return parts[0];
+		return String.join(Variable.SEPARATOR, Arrays.asList(parts).subList(0, Math.min(depth, parts.length)));
+	}
+
+}
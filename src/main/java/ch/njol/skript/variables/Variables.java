@@ -23,15 +23,20 @@ import ch.njol.skript.SkriptAPIException;
 import ch.njol.skript.SkriptConfig;
 import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.classes.ConfigurationSerializer;
+import ch.njol.skript.classes.Serializer;
 import ch.njol.skript.config.Config;
 import ch.njol.skript.config.Node;
 import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.lang.Variable;
 import ch.njol.skript.log.SkriptLogger;
 import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.util.Task;
+import ch.njol.skript.util.Timespan;
 import ch.njol.skript.variables.SerializedVariable.Value;
 import ch.njol.util.Kleenean;
 import ch.njol.util.NonNullPair;
+import ch.njol.util.Pair;
+import ch.njol.util.StringUtils;
 import ch.njol.util.SynchronizedReference;
 import ch.njol.yggdrasil.Yggdrasil;
 import org.bukkit.Bukkit;
@@ -48,23 +53,33 @@ import com.google.common.collect.Multimap;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Pattern;
+import java.util.function.BiConsumer;
 
 /**
  * Handles all things related to variables.
@@ -102,6 +117,7 @@ public class Variables {
 		registerStorage(FlatFileStorage.class, "csv", "file", "flatfile");
 		registerStorage(SQLiteStorage.class, "sqlite");
 		registerStorage(MySQLStorage.class, "mysql");
+		registerStorage(BinaryLogStorage.class, "binary");
 		yggdrasil.registerSingleClass(Kleenean.class, "Kleenean");
 		// Register ConfigurationSerializable, Bukkit's serialization system
 		yggdrasil.registerClassResolver(new ConfigurationSerializer<ConfigurationSerializable>() {
@@ -168,14 +184,22 @@ public class Variables {
 	 * @return whether the loading was successful.
 	 */
 	public static boolean load() {
-		assert variables.treeMap.isEmpty();
-		assert variables.hashMap.isEmpty();
+		assert numVariables() == 0;
 		assert STORAGES.isEmpty();
 
 		Config config = SkriptConfig.getConfig();
 		if (config == null)
 			throw new SkriptAPIException("Cannot load variables before the config");
 
+		String mapType = SkriptConfig.variablesMapType.value();
+		if (mapType.equalsIgnoreCase("trie")) {
+			for (VariablesStripe stripe : STRIPES)
+				stripe.variables = new TrieVariablesMap();
+		} else if (!mapType.equalsIgnoreCase("default")) {
+			Skript.warning("Unknown variables map type '" + mapType + "', please use 'default' or 'trie'. " +
+				"The default variables map will be used.");
+		}
+
 		Node databases = config.getMainNode().get("databases");
 		if (!(databases instanceof SectionNode)) {
 			Skript.error("The config is missing the required 'databases' section that defines where the variables are saved");
@@ -303,71 +327,159 @@ public class Variables {
 			loadingLoggerThread.interrupt();
 
 			saveThread.start();
+
+			expiryTask = new Task(Skript.getInstance(), 1, 1) {
+				@Override
+				public void run() {
+					deleteExpiredVariables();
+				}
+			};
 		}
 		return true;
 	}
 
-	/**
-	 * A pattern to split variable names using {@link Variable#SEPARATOR}.
-	 */
-	private static final Pattern VARIABLE_NAME_SPLIT_PATTERN = Pattern.compile(Pattern.quote(Variable.SEPARATOR));
-
 	/**
 	 * Splits the given variable name into its parts,
 	 * separated by {@link Variable#SEPARATOR}.
+	 * <p>
+	 * Like {@link String#split(String)}, trailing empty parts are not included.
 	 *
 	 * @param name the variable name.
 	 * @return the parts.
 	 */
 	public static String[] splitVariableName(String name) {
-		return VARIABLE_NAME_SPLIT_PATTERN.split(name);
+		int end = name.indexOf(Variable.SEPARATOR);
+		if (end == -1)
+			return new String[] {name};
+
+		List<String> parts = new ArrayList<>();
+		int start = 0;
+		do {
+			parts.add(name.substring(start, end));
+			start = end + Variable.SEPARATOR.length();
+			end = name.indexOf(Variable.SEPARATOR, start);
+		} while (end != -1);
+		parts.add(name.substring(start));
+
+		int size = parts.size();
+		while (size > 0 && parts.get(size - 1).isEmpty())
+			size--;
+		return parts.subList(0, size).toArray(new String[0]);
+	}
+
+	/**
+	 * The amount of stripes the global variables are partitioned into, must be a power of two.
+	 */
+	private static final int STRIPE_COUNT = 16;
+
+	/**
+	 * The stripes the global variables are partitioned into,
+	 * by the first part of their names (the part before the first {@link Variable#SEPARATOR}).
+	 * <p>
+	 * Variables of different stripes can be read and written without contending for the same lock.
+	 * A list variable and all its indices always belong to the same stripe.
+	 */
+	private static final VariablesStripe[] STRIPES = new VariablesStripe[STRIPE_COUNT];
+
+	static {
+		for (int i = 0; i < STRIPE_COUNT; i++)
+			STRIPES[i] = new VariablesStripe();
 	}
 
 	/**
-	 * A lock for reading and writing variables.
+	 * Gets the stripe the given global variable belongs to.
+	 *
+	 * @param name the variable name.
+	 * @return the stripe.
 	 */
-	static final ReadWriteLock variablesLock = new ReentrantReadWriteLock(true);
+	private static VariablesStripe getStripe(String name) {
+		int end = name.indexOf(Variable.SEPARATOR);
+		if (end == -1)
+			end = name.length();
+
+		// Same as String#hashCode, but only of the first part of the name, without creating a substring
+		int hash = 0;
+		for (int i = 0; i < end; i++)
+			hash = 31 * hash + name.charAt(i);
+		return STRIPES[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+	}
 
 	/**
-	 * The {@link VariablesMap} storing global variables,
-	 * must be locked with {@link #variablesLock}.
+	 * Gets the stripe of the global variable with the given name parts,
+	 * the same stripe as {@link #getStripe(String)} returns for the full name.
+	 *
+	 * @param parts the parts of the variable name.
+	 * @return the stripe.
 	 */
-	static final VariablesMap variables = new VariablesMap();
+	private static VariablesStripe getStripe(String[] parts) {
+		int hash = parts[0].hashCode(); // Cached for the literal parts of compiled names
+		return STRIPES[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+	}
 
 	/**
 	 * A map storing all local variables,
 	 * indexed by their {@link Event}.
 	 */
-	private static final Map<Event, VariablesMap> localVariables = new ConcurrentHashMap<>();
+	private static final Map<Event, LocalVariablesFrame> localVariables = new ConcurrentHashMap<>();
 
 	/**
-	 * Gets the {@link TreeMap} of all global variables.
+	 * Gets the {@link TreeMap}s of all global variables, one for each stripe.
 	 * <p>
-	 * Remember to lock with {@link #getReadLock()} and to not make any changes!
+	 * Remember to lock with {@link #lockAllForReading()} and to not make any changes!
 	 */
-	static TreeMap<String, Object> getVariables() {
-		return variables.treeMap;
+	static List<TreeMap<String, Object>> getVariableTrees() {
+		List<TreeMap<String, Object>> trees = new ArrayList<>(STRIPE_COUNT);
+		for (VariablesStripe stripe : STRIPES)
+			trees.add(stripe.variables.treeMap);
+		return trees;
 	}
 
 	/**
-	 * Gets the {@link Map} of all global variables.
+	 * Performs the given action for each global variable.
 	 * <p>
-	 * This map cannot be modified.
-	 * Remember to lock with {@link #getReadLock()}!
+	 * Remember to lock with {@link #lockAllForReading()} and to not make any changes!
+	 *
+	 * @param action the action, accepting the name and the value of each variable.
 	 */
-	static Map<String, Object> getVariablesHashMap() {
-		return Collections.unmodifiableMap(variables.hashMap);
+	static void forEachVariable(BiConsumer<String, Object> action) {
+		for (VariablesStripe stripe : STRIPES)
+			stripe.variables.forEachVariable(action);
 	}
 
 	/**
-	 * Gets the lock for reading variables.
-	 *
-	 * @return the lock.
-	 *
-	 * @see #variablesLock
+	 * Acquires the read locks of all stripes, which gives a consistent view of all global variables.
+	 * <p>
+	 * The locks must be released with {@link #unlockAllForReading()}.
+	 */
+	static void lockAllForReading() {
+		for (VariablesStripe stripe : STRIPES)
+			stripe.lock.readLock().lock();
+	}
+
+	/**
+	 * Releases the read locks acquired with {@link #lockAllForReading()}.
+	 */
+	static void unlockAllForReading() {
+		for (int i = STRIPE_COUNT - 1; i >= 0; i--)
+			STRIPES[i].lock.readLock().unlock();
+	}
+
+	/**
+	 * Acquires the write locks of all stripes, in the same order as {@link #lockAllForReading()}.
+	 * <p>
+	 * The locks must be released with {@link #unlockAllForWriting()}.
 	 */
-	static Lock getReadLock() {
-		return variablesLock.readLock();
+	private static void lockAllForWriting() {
+		for (VariablesStripe stripe : STRIPES)
+			stripe.lock.writeLock().lock();
+	}
+
+	/**
+	 * Releases the write locks acquired with {@link #lockAllForWriting()}.
+	 */
+	private static void unlockAllForWriting() {
+		for (int i = STRIPE_COUNT - 1; i >= 0; i--)
+			STRIPES[i].lock.writeLock().unlock();
 	}
 
 	/**
@@ -377,9 +489,28 @@ public class Variables {
 	 * @param event the event.
 	 * @return the local variables from the event,
 	 * or {@code null} if the event had no local variables.
+	 * @deprecated Copies the local variables into a new map, use {@link #removeLocalVariables(Event)} instead.
 	 */
 	@Nullable
+	@Deprecated
 	public static VariablesMap removeLocals(Event event) {
+		LocalVariablesFrame frame = localVariables.remove(event);
+		return frame == null ? null : frame.toVariablesMap();
+	}
+
+	/**
+	 * Removes local variables associated with given event and returns them,
+	 * if they exist.
+	 * <p>
+	 * The returned object can be passed to {@link #setLocalVariables(Event, Object)}
+	 * to continue using the local variables.
+	 *
+	 * @param event the event.
+	 * @return the local variables from the event,
+	 * or {@code null} if the event had no local variables.
+	 */
+	@Nullable
+	public static Object removeLocalVariables(Event event) {
 		return localVariables.remove(event);
 	}
 
@@ -392,26 +523,31 @@ public class Variables {
 	 * Warning: this can overwrite local variables!
 	 *
 	 * @param event the event.
-	 * @param map the new local variables.
+	 * @param map the new local variables, as returned by {@link #removeLocalVariables(Event)},
+	 *               {@link #copyLocalVariables(Event)} or {@link #removeLocals(Event)}.
 	 */
 	public static void setLocalVariables(Event event, @Nullable Object map) {
-		if (map != null) {
-			localVariables.put(event, (VariablesMap) map);
+		if (map instanceof VariablesMap) {
+			localVariables.put(event, new LocalVariablesFrame((VariablesMap) map));
+		} else if (map != null) {
+			localVariables.put(event, (LocalVariablesFrame) map);
 		} else {
-			removeLocals(event);
+			removeLocalVariables(event);
 		}
 	}
 
 	/**
-	 * Creates a copy of the {@link VariablesMap} for local variables
-	 * in an event.
+	 * Creates a copy of the local variables in an event.
+	 * <p>
+	 * The copy shares the variables with the original until either of them changes,
+	 * so copying is cheap even if the event has many local variables.
 	 *
 	 * @param event the event to copy local variables from.
 	 * @return the copy.
 	 */
 	@Nullable
 	public static Object copyLocalVariables(Event event) {
-		VariablesMap from = localVariables.get(event);
+		LocalVariablesFrame from = localVariables.get(event);
 		if (from == null)
 			return null;
 
@@ -444,36 +580,250 @@ public class Variables {
 		}
 
 		if (local) {
-			VariablesMap map = localVariables.get(event);
+			LocalVariablesFrame map = localVariables.get(event);
 			if (map == null)
 				return null;
 
 			return map.getVariable(n);
 		} else {
+			VariableStatistics.read(n);
+			VariablesStripe stripe = getStripe(n);
+
 			// Prevent race conditions from returning variables with incorrect values
-			if (!changeQueue.isEmpty()) {
-				// Gets the last VariableChange made
-				VariableChange variableChange = changeQueue.stream()
-						.filter(change -> change.name.equals(n))
-						.reduce((first, second) -> second)
-								// Gets last value, as iteration is from head to tail,
-								//  and adding occurs at the tail (and we want the most recently added)
-						.orElse(null);
-
-				if (variableChange != null) {
+			if (!stripe.changeOverlay.isEmpty()) {
+				// Gets the last VariableChange queued for this name
+				VariableChange variableChange = stripe.changeOverlay.get(n);
+				if (variableChange != null)
 					return variableChange.value;
-				}
 			}
 
+			Object value;
+			boolean lazy;
 			try {
-				variablesLock.readLock().lock();
-				return variables.getVariable(n);
+				stripe.lock.readLock().lock();
+				value = stripe.variables.getVariable(n);
+				// Checked under the lock, as a list variable may be modified concurrently
+				lazy = value instanceof LazyValue || (stripe.lazyValues != 0 && value instanceof TreeMap
+					&& stripe.containsLazyValues(getListName(n), (TreeMap<String, Object>) value));
 			} finally {
-				variablesLock.readLock().unlock();
+				stripe.lock.readLock().unlock();
 			}
+			return lazy ? resolveLazyValues(stripe, n) : value;
 		}
 	}
 
+	/**
+	 * Returns the internal value of the requested variable, given the parts of its name.
+	 * <p>
+	 * Unlike {@link #getVariable(String, Event, boolean)}, this doesn't lowercase and split the name,
+	 * so it can be used with names whose parts are known before they are accessed.
+	 * <p>
+	 * <b>Do not modify the returned value!</b>
+	 *
+	 * @param parts the parts of the variable's name, as {@link #splitVariableName(String) split}
+	 *                 by {@link Variable#SEPARATOR}, already lowercased
+	 *                 if {@link #caseInsensitiveVariables variables are case-insensitive}.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 * @return an {@link Object} for a normal variable
+	 * or a {@code Map<String, Object>} for a list variable,
+	 * or {@code null} if the variable is not set.
+	 * @see #getVariable(String, Event, boolean)
+	 */
+	@Nullable
+	public static Object getVariable(String[] parts, @Nullable Event event, boolean local) {
+		if (local) {
+			LocalVariablesFrame map = localVariables.get(event);
+			if (map == null)
+				return null;
+
+			return map.getVariable(parts);
+		} else {
+			VariableStatistics.read(parts);
+			VariablesStripe stripe = getStripe(parts);
+
+			// Prevent race conditions from returning variables with incorrect values
+			if (!stripe.changeOverlay.isEmpty()) {
+				VariableChange variableChange = stripe.changeOverlay.get(new VariableNameKey(parts));
+				if (variableChange != null)
+					return variableChange.value;
+			}
+
+			Object value;
+			boolean lazy;
+			try {
+				stripe.lock.readLock().lock();
+				value = stripe.variables.getVariable(parts);
+				// Checked under the lock, as a list variable may be modified concurrently
+				lazy = value instanceof LazyValue || (stripe.lazyValues != 0 && value instanceof TreeMap
+					&& stripe.containsLazyValues(StringUtils.join(parts, Variable.SEPARATOR, 0, parts.length - 1), (TreeMap<String, Object>) value));
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+			return lazy ? resolveLazyValues(stripe, StringUtils.join(parts, Variable.SEPARATOR)) : value;
+		}
+	}
+
+	/**
+	 * Gets the name of the given list variable without the trailing separator and asterisk,
+	 * e.g. {@code list} for {@code list::*}.
+	 *
+	 * @param name the name of the list variable, ending with {@link Variable#SEPARATOR} and {@code *}.
+	 * @return the name without the separator and asterisk.
+	 */
+	private static String getListName(String name) {
+		return name.substring(0, name.length() - Variable.SEPARATOR.length() - 1);
+	}
+
+	/**
+	 * Resolves the {@link LazyValue}s of the given global variable.
+	 * <p>
+	 * The lazy values are replaced in the variables map if its write lock is available,
+	 * otherwise the deserialized value, or a copy of the list variable with deserialized values, is returned.
+	 *
+	 * @param stripe the stripe of the variable.
+	 * @param name the name of the variable, possibly a list variable.
+	 * @return the internal value of the variable without lazy values.
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private static Object resolveLazyValues(VariablesStripe stripe, String name) {
+		if (stripe.lock.writeLock().tryLock()) {
+			try {
+				return stripe.resolveLazyValues(name);
+			} finally {
+				stripe.lock.writeLock().unlock();
+			}
+		}
+
+		// Other threads are using the stripe, resolve a copy instead
+		try {
+			stripe.lock.readLock().lock();
+			Object value = stripe.variables.getVariable(name);
+			if (value instanceof LazyValue)
+				return ((LazyValue) value).get();
+			return value instanceof TreeMap ? LazyValue.copyResolved((TreeMap<String, Object>) value) : value;
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the indices of the requested list variable and their values.
+	 * <p>
+	 * For global variables, the snapshot is taken under a single acquisition of the read lock,
+	 * so that the indices and values are consistent with each other. As the snapshot is a copy,
+	 * it can safely be iterated while the list variable is modified.
+	 * <p>
+	 * The value of an index that is a list variable itself is the value of that variable,
+	 * e.g. the value of {@code {list::1}} for the index {@code 1} of {@code {list::*}},
+	 * which may be {@code null}.
+	 *
+	 * @param name the name of the list variable, ending with {@link Variable#SEPARATOR} and {@code *}.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 * @return the indices in the order of the list variable, paired with their values,
+	 * or {@code null} if the list variable is not set.
+	 */
+	@Nullable
+	public static List<Pair<String, Object>> getListSnapshot(String name, @Nullable Event event, boolean local) {
+		String n;
+		if (caseInsensitiveVariables) {
+			n = name.toLowerCase(Locale.ENGLISH);
+		} else {
+			n = name;
+		}
+
+		return getListSnapshot(splitVariableName(n), event, local);
+	}
+
+	/**
+	 * Takes a snapshot of the indices of the requested list variable and their values,
+	 * given the parts of its name.
+	 * <p>
+	 * Unlike {@link #getListSnapshot(String, Event, boolean)}, this doesn't lowercase and split the name.
+	 *
+	 * @param parts the parts of the list variable's name, as {@link #splitVariableName(String) split}
+	 *                 by {@link Variable#SEPARATOR}, ending with {@code *} and already lowercased
+	 *                 if {@link #caseInsensitiveVariables variables are case-insensitive}.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 * @return the indices in the order of the list variable, paired with their values,
+	 * or {@code null} if the list variable is not set.
+	 * @see #getListSnapshot(String, Event, boolean)
+	 */
+	@Nullable
+	public static List<Pair<String, Object>> getListSnapshot(String[] parts, @Nullable Event event, boolean local) {
+		if (local) {
+			LocalVariablesFrame map = localVariables.get(event);
+			if (map == null)
+				return null;
+
+			return takeListSnapshot(map.getVariable(parts));
+		}
+
+		VariablesStripe stripe = getStripe(parts);
+		List<Pair<String, Object>> snapshot;
+		boolean lazy;
+		try {
+			stripe.lock.readLock().lock();
+			snapshot = takeListSnapshot(stripe.variables.getVariable(parts));
+			lazy = stripe.lazyValues != 0;
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+
+		// The snapshot is a copy, so its lazy values can be resolved without the lock
+		if (snapshot != null && lazy) {
+			for (Pair<String, Object> entry : snapshot) {
+				if (entry.getSecond() instanceof LazyValue)
+					entry.setSecond(((LazyValue) entry.getSecond()).get());
+			}
+		}
+
+		// Prevent race conditions from returning variables with incorrect values
+		if (snapshot != null && !stripe.changeOverlay.isEmpty()) {
+			String prefix = StringUtils.join(parts, Variable.SEPARATOR, 0, parts.length - 1) + Variable.SEPARATOR;
+			for (Pair<String, Object> entry : snapshot) {
+				VariableChange variableChange = stripe.changeOverlay.get(prefix + entry.getKey());
+				if (variableChange != null)
+					entry.setSecond(variableChange.value);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Copies the indices and values of the given list variable.
+	 *
+	 * @param list the internal value of the list variable.
+	 * @return the copied indices and values, or {@code null} if the given value is not a list variable.
+	 * @see #getListSnapshot(String, Event, boolean)
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private static List<Pair<String, Object>> takeListSnapshot(@Nullable Object list) {
+		if (!(list instanceof Map))
+			return null;
+
+		Map<String, Object> map = (Map<String, Object>) list;
+		List<Pair<String, Object>> snapshot = new ArrayList<>(map.size());
+		for (Entry<String, Object> entry : map.entrySet()) {
+			String key = entry.getKey();
+			if (key == null)
+				continue; // The value of the list variable itself, not an index
+
+			Object value = entry.getValue();
+			if (value instanceof Map)
+				value = ((Map<String, Object>) value).get(null);
+			snapshot.add(new Pair<>(key, value));
+		}
+		return snapshot;
+	}
+
 	/**
 	 * Deletes a variable.
 	 *
@@ -503,27 +853,277 @@ public class Variables {
 			name = name.toLowerCase(Locale.ENGLISH);
 		}
 
-		// Check if conversion is needed due to ClassInfo#getSerializeAs
-		if (value != null) {
-			assert !name.endsWith("::*");
+		setVariable(name, null, value, event, local);
+	}
+
+	/**
+	 * Sets a variable, given the parts of its name.
+	 * <p>
+	 * Unlike {@link #setVariable(String, Object, Event, boolean)}, this doesn't lowercase the name
+	 * and doesn't split it again to find the variable.
+	 *
+	 * @param parts the parts of the variable's name, as {@link #splitVariableName(String) split}
+	 *                 by {@link Variable#SEPARATOR}, already lowercased
+	 *                 if {@link #caseInsensitiveVariables variables are case-insensitive}.
+	 *                 Can be a list variable, but {@code value} must be {@code null} in this case.
+	 * @param value The variable's value. Use {@code null}
+	 *                 to delete the variable.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 * @see #setVariable(String, Object, Event, boolean)
+	 */
+	public static void setVariable(String[] parts, @Nullable Object value, @Nullable Event event, boolean local) {
+		if (!local) {
+			// Changes of global variables are saved under their full name
+			setVariable(StringUtils.join(parts, Variable.SEPARATOR), parts, value, event, false);
+			return;
+		}
+		assert event != null : Arrays.toString(parts);
 
-			ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
-			Class<?> sas = ci.getSerializeAs();
+		if (value != null) {
+			assert !parts[parts.length - 1].equals("*");
+			value = convertToSerializeAs(value);
+		}
+		LocalVariablesFrame map = localVariables.computeIfAbsent(event, e -> new LocalVariablesFrame());
+		map.setVariable(parts, value);
+	}
 
-			if (sas != null) {
-				value = Converters.convert(value, sas);
-				assert value != null : ci + ", " + sas;
-			}
+	/**
+	 * Sets a variable whose name has been lowercased already if needed.
+	 *
+	 * @param name the variable's name.
+	 * @param parts the parts of the variable's name, or {@code null} if they aren't known.
+	 * @param value the variable's value, or {@code null} to delete the variable.
+	 * @param event the event of a local variable.
+	 * @param local if this variable is a local or global variable.
+	 */
+	private static void setVariable(String name, String @Nullable [] parts, @Nullable Object value, @Nullable Event event, boolean local) {
+		if (value != null) {
+			assert !name.endsWith("::*");
+			value = convertToSerializeAs(value);
 		}
 
 		if (local) {
 			assert event != null : name;
 
 			// Get the variables map and set the variable in it
-			VariablesMap map = localVariables.computeIfAbsent(event, e -> new VariablesMap());
-			map.setVariable(name, value);
+			LocalVariablesFrame map = localVariables.computeIfAbsent(event, e -> new LocalVariablesFrame());
+			map.setVariable(name, parts, value);
 		} else {
-			setVariable(name, value);
+			setVariable(name, parts, value);
+		}
+	}
+
+	/**
+	 * Converts the given value if needed due to {@link ClassInfo#getSerializeAs()}.
+	 *
+	 * @param value the value of a variable.
+	 * @return the value to store.
+	 */
+	private static Object convertToSerializeAs(Object value) {
+		ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
+		Class<?> sas = ci.getSerializeAs();
+
+		if (sas != null) {
+			value = Converters.convert(value, sas);
+			assert value != null : ci + ", " + sas;
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the value of the local variable with the given slot.
+	 * <p>
+	 * This does not take into consideration default variables.
+	 * You must use get methods from {@link ch.njol.skript.lang.Variable}
+	 *
+	 * @param slots the slots of the script the variable is used in.
+	 * @param slot the slot of the variable, {@link LocalVariableSlots#assignSlot(String) assigned}
+	 *                while the script was parsed.
+	 * @param name the name of the variable, lowercased
+	 *                if {@link #caseInsensitiveVariables variables are case-insensitive}.
+	 * @param event the event the local variable resides in.
+	 * @return the value of the variable, or {@code null} if the variable is not set.
+	 * @see #getVariable(String, Event, boolean)
+	 */
+	@Nullable
+	public static Object getLocalVariable(LocalVariableSlots slots, int slot, String name, Event event) {
+		LocalVariablesFrame frame = localVariables.get(event);
+		if (frame == null)
+			return null;
+
+		return frame.getVariable(slots, slot, name);
+	}
+
+	/**
+	 * Sets the local variable with the given slot.
+	 *
+	 * @param slots the slots of the script the variable is used in.
+	 * @param slot the slot of the variable, {@link LocalVariableSlots#assignSlot(String) assigned}
+	 *                while the script was parsed.
+	 * @param name the name of the variable, lowercased
+	 *                if {@link #caseInsensitiveVariables variables are case-insensitive}.
+	 * @param value the value, or {@code null} to delete the variable.
+	 * @param event the event the local variable resides in.
+	 * @see #setVariable(String, Object, Event, boolean)
+	 */
+	public static void setLocalVariable(LocalVariableSlots slots, int slot, String name, @Nullable Object value, Event event) {
+		if (value != null)
+			value = convertToSerializeAs(value);
+
+		LocalVariablesFrame frame = localVariables.get(event);
+		if (frame == null) {
+			if (value == null)
+				return;
+			frame = localVariables.computeIfAbsent(event, e -> new LocalVariablesFrame());
+		}
+		frame.setVariable(slots, slot, name, value);
+	}
+
+	/**
+	 * Changes several indices of a list variable at once.
+	 * <p>
+	 * Global list variables are changed under a single acquisition of the write lock,
+	 * and all changes are passed to the storages together.
+	 * If the list variable is replaced, deletions of all its previous variables are saved,
+	 * unless they are set again.
+	 *
+	 * @param name the name of the list variable, ending with {@link Variable#SEPARATOR} and {@code *}.
+	 * @param indices the indices to change, in order, paired with their new values ({@code null} to delete the index).
+	 *                   An index may contain {@link Variable#SEPARATOR} to change nested list variables.
+	 * @param replace whether to delete the list variable before setting the given indices.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 * @see #setVariable(String, Object, Event, boolean)
+	 */
+	public static void setListVariable(String name, List<Pair<String, Object>> indices, boolean replace, @Nullable Event event, boolean local) {
+		if (caseInsensitiveVariables)
+			name = name.toLowerCase(Locale.ENGLISH);
+		assert name.endsWith(Variable.SEPARATOR + "*") : name;
+
+		String prefix = name.substring(0, name.length() - 1);
+		List<Pair<String, Object>> changes = new ArrayList<>(indices.size());
+		for (Pair<String, Object> index : indices) {
+			String indexName = prefix + (caseInsensitiveVariables ? index.getFirst().toLowerCase(Locale.ENGLISH) : index.getFirst());
+			Object value = index.getSecond();
+			changes.add(new Pair<>(indexName, value == null ? null : convertToSerializeAs(value)));
+		}
+
+		if (local) {
+			assert event != null : name;
+
+			LocalVariablesFrame map = localVariables.computeIfAbsent(event, e -> new LocalVariablesFrame());
+			if (replace)
+				map.setVariable(name, null, null);
+			for (Pair<String, Object> change : changes)
+				map.setVariable(change.getFirst(), null, change.getSecond());
+			return;
+		}
+
+		if (replace && !EXPIRY_WHEEL.isEmpty())
+			EXPIRY_WHEEL.cancel(name);
+		if (replace)
+			VariableStatistics.write(name, null);
+		for (Pair<String, Object> change : changes)
+			VariableStatistics.write(change.getFirst(), change.getSecond());
+
+		// All variables of a list variable belong to the same stripe
+		VariablesStripe stripe = getStripe(name);
+		if (!stripe.lock.writeLock().tryLock()) {
+			// Couldn't acquire variable write lock, queue the changes (blocking here is a bad idea)
+			if (replace)
+				stripe.queueVariableChange(name, null);
+			for (Pair<String, Object> change : changes)
+				stripe.queueVariableChange(change.getFirst(), change.getSecond());
+			return;
+		}
+
+		try {
+			// Process all previously queued changes, so they don't overwrite these newer changes
+			stripe.processChangeQueue();
+
+			List<CompletableFuture<SerializedVariable>> serializedChanges = new ArrayList<>();
+			if (replace) {
+				stripe.variables.forEachListVariable(name, (variableName, value) ->
+					serializedChanges.add(CompletableFuture.completedFuture(new SerializedVariable(variableName, null))));
+				stripe.setVariable(name, null, null);
+			}
+			for (Pair<String, Object> change : changes) {
+				stripe.setVariable(change.getFirst(), null, change.getSecond());
+				serializedChanges.add(serializeChange(change.getFirst(), change.getSecond()));
+			}
+			saveQueue.addAll(serializedChanges);
+			VariableStatistics.saveQueued();
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * The length of a tick of the {@link #EXPIRY_WHEEL}, in milliseconds.
+	 */
+	private static final long EXPIRY_TICK_MILLIS = 50;
+
+	/**
+	 * The global variables that expire, see {@link #expireVariable(String, long)}.
+	 */
+	private static final VariableExpiryWheel EXPIRY_WHEEL = new VariableExpiryWheel(getExpiryTick());
+
+	/**
+	 * The task deleting expired variables every tick, {@code null} until the variables have been loaded.
+	 */
+	@Nullable
+	private static Task expiryTask;
+
+	private static long getExpiryTick() {
+		return System.currentTimeMillis() / EXPIRY_TICK_MILLIS;
+	}
+
+	/**
+	 * Makes the given global variable expire, i.e. be deleted, after the given delay.
+	 * The variable is deleted like any other, and the deletion is saved to the storage.
+	 * <p>
+	 * A variable can only have one expiry time at once, so this replaces a previous expiry time of the variable.
+	 * Setting or deleting the variable makes it not expire anymore,
+	 * but changing the indices of an expiring list variable doesn't.
+	 * <p>
+	 * Expiry times are not saved, so variables don't expire after the server restarts.
+	 *
+	 * @param name the name of the variable, may be a list variable to make the entire list expire.
+	 * @param delay the delay in milliseconds.
+	 */
+	public static void expireVariable(String name, long delay) {
+		if (caseInsensitiveVariables)
+			name = name.toLowerCase(Locale.ENGLISH);
+		EXPIRY_WHEEL.schedule(name, (System.currentTimeMillis() + delay + EXPIRY_TICK_MILLIS - 1) / EXPIRY_TICK_MILLIS);
+	}
+
+	/**
+	 * Makes the given global variable not expire anymore.
+	 *
+	 * @param name the name of the variable.
+	 * @return whether the variable was going to expire.
+	 * @see #expireVariable(String, long)
+	 */
+	public static boolean cancelVariableExpiry(String name) {
+		if (caseInsensitiveVariables)
+			name = name.toLowerCase(Locale.ENGLISH);
+		return EXPIRY_WHEEL.cancel(name);
+	}
+
+	/**
+	 * Deletes the global variables that have expired since this was last called.
+	 */
+	private static void deleteExpiredVariables() {
+		for (String name : EXPIRY_WHEEL.advance(getExpiryTick())) {
+			if (name.endsWith(Variable.SEPARATOR + "*")) {
+				// Saves the deletions of all variables of the list
+				setListVariable(name, Collections.emptyList(), true, null, false);
+			} else {
+				setVariable(name, null);
+			}
 		}
 	}
 
@@ -534,28 +1134,242 @@ public class Variables {
 	 * @param value the value, or {@code null} to delete the variable.
 	 */
 	static void setVariable(String name, @Nullable Object value) {
-		boolean gotLock = variablesLock.writeLock().tryLock();
+		setVariable(name, null, value);
+	}
+
+	/**
+	 * Sets the given global variable name to the given value.
+	 *
+	 * @param name the variable name.
+	 * @param parts the parts of the variable name, or {@code null} if they aren't known.
+	 * @param value the value, or {@code null} to delete the variable.
+	 */
+	private static void setVariable(String name, String @Nullable [] parts, @Nullable Object value) {
+		if (!EXPIRY_WHEEL.isEmpty())
+			EXPIRY_WHEEL.cancel(name);
+		if (parts != null) {
+			VariableStatistics.write(parts, value);
+		} else {
+			VariableStatistics.write(name, value);
+		}
+
+		VariablesStripe stripe = parts != null ? getStripe(parts) : getStripe(name);
+		boolean gotLock = stripe.lock.writeLock().tryLock();
 		if (gotLock) {
 			try {
-				// Set the variable
-				variables.setVariable(name, value);
-				// ..., save the variable change
+				// Process all previously queued changes, so they don't overwrite this newer change
+				stripe.processChangeQueue();
+				// ..., set the variable
+				stripe.setVariable(name, parts, value);
+				// ..., and save the variable change
 				saveVariableChange(name, value);
-				// ..., and process all previously queued changes
-				processChangeQueue();
 			} finally {
-				variablesLock.writeLock().unlock();
+				stripe.lock.writeLock().unlock();
 			}
 		} else {
 			// Couldn't acquire variable write lock, queue the change (blocking here is a bad idea)
-			queueVariableChange(name, value);
+			stripe.queueVariableChange(name, value);
 		}
 	}
 
 	/**
-	 * Changes to variables that have not yet been performed.
+	 * The sequence number of the last queued {@link VariableChange}.
 	 */
-	static final Queue<VariableChange> changeQueue = new ConcurrentLinkedQueue<>();
+	private static final AtomicLong changeSequence = new AtomicLong();
+
+	/**
+	 * A part of the global variables, with its own lock and its own queue of changes.
+	 *
+	 * @see #STRIPES
+	 */
+	private static final class VariablesStripe {
+
+		/**
+		 * A lock for reading and writing the variables of this stripe.
+		 */
+		final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		/**
+		 * The {@link VariablesMap} storing the variables of this stripe,
+		 * must be locked with {@link #lock}.
+		 * <p>
+		 * Replaced by the configured implementation when variables are {@link #load() loaded}.
+		 */
+		VariablesMap variables = new HashTreeVariablesMap();
+
+		/**
+		 * The amount of variables of this stripe whose value is a {@link LazyValue},
+		 * must be locked with {@link #lock}. While this is zero, reads don't have to look for lazy values.
+		 */
+		int lazyValues;
+
+		/**
+		 * The amount of lazy values in each list variable of this stripe that contains any, must be locked with {@link #lock}.
+		 * Keyed by the name of the list variable without the trailing separator and asterisk, e.g. {@code list} for {@code list::*}.
+		 * Includes the lazy values of nested list variables, but not the value of the variable named like the list variable.
+		 */
+		final Map<String, Integer> lazyLists = new HashMap<>();
+
+		/**
+		 * Changes to variables of this stripe that have not yet been performed.
+		 */
+		final Queue<VariableChange> changeQueue = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * The most recent not yet performed change of each variable in the {@link #changeQueue},
+		 * indexed by variable name. Allows reading pending changes in constant time,
+		 * regardless of the size of the queue.
+		 */
+		final Map<String, VariableChange> changeOverlay = new ConcurrentHashMap<>();
+
+		/**
+		 * Queues a variable change. Only to be called when direct write is not
+		 * possible, but thread cannot be allowed to block.
+		 *
+		 * @param name the variable name.
+		 * @param value the new value.
+		 */
+		void queueVariableChange(String name, @Nullable Object value) {
+			VariableChange change = new VariableChange(name, value, changeSequence.incrementAndGet(), System.currentTimeMillis());
+			// Keep the most recent change visible, even if another thread queued an older one concurrently
+			changeOverlay.merge(name, change, (current, added) -> added.sequence > current.sequence ? added : current);
+			changeQueue.add(change);
+		}
+
+		/**
+		 * Processes all entries in the variable change queue of this stripe.
+		 * <p>
+		 * Note that caller must acquire the write lock of this stripe before calling this,
+		 * then release it.
+		 */
+		void processChangeQueue() {
+			while (true) { // Run as long as we still have changes
+				VariableChange change = changeQueue.poll();
+				if (change == null)
+					break;
+
+				if (change.name.endsWith(Variable.SEPARATOR + "*")) {
+					// A list variable queued by setListVariable, save the deletions of all its variables
+					assert change.value == null : change.name;
+					variables.forEachListVariable(change.name, (variableName, value) -> saveVariableChange(variableName, null));
+					setVariable(change.name, null, null);
+				} else {
+					// Set and save variable
+					setVariable(change.name, null, change.value);
+					saveVariableChange(change.name, change.value);
+				}
+
+				// Only clears the overlay if no newer change has been queued for this variable
+				changeOverlay.remove(change.name, change);
+			}
+		}
+
+		/**
+		 * Sets a variable of this stripe, keeping track of its {@link #lazyValues}.
+		 * <p>
+		 * Note that caller must acquire the write lock of this stripe before calling this,
+		 * then release it.
+		 *
+		 * @param name the variable name.
+		 * @param parts the parts of the variable name, or {@code null} if they aren't known.
+		 * @param value the value, or {@code null} to delete the variable.
+		 */
+		@SuppressWarnings("unchecked")
+		void setVariable(String name, String @Nullable [] parts, @Nullable Object value) {
+			if (lazyValues != 0) {
+				Object replaced = parts != null ? variables.getVariable(parts) : variables.getVariable(name);
+				if (replaced instanceof LazyValue) {
+					countLazyValue(name, -1);
+				} else if (replaced instanceof TreeMap) {
+					String listName = getListName(name);
+					if (lazyLists.containsKey(listName)) {
+						List<Pair<String, LazyValue>> lazyVariables = new ArrayList<>();
+						LazyValue.collectLazyValues(listName + Variable.SEPARATOR, (TreeMap<String, Object>) replaced, lazyVariables);
+						for (Pair<String, LazyValue> lazyVariable : lazyVariables) {
+							// Deleting a list variable keeps the value of the variable of the same name
+							if (!lazyVariable.getFirst().equals(listName))
+								countLazyValue(lazyVariable.getFirst(), -1);
+						}
+					}
+				}
+			}
+			if (value instanceof LazyValue)
+				countLazyValue(name, 1);
+			variables.setVariable(name, parts, value);
+		}
+
+		/**
+		 * Counts a lazy value added to or removed from this stripe, in {@link #lazyValues} and in the {@link #lazyLists}
+		 * of all list variables containing it.
+		 *
+		 * @param name the name of the variable whose value is lazy.
+		 * @param change 1 if the lazy value was added, -1 if it was removed.
+		 */
+		private void countLazyValue(String name, int change) {
+			lazyValues += change;
+			int end = name.indexOf(Variable.SEPARATOR);
+			while (end != -1) {
+				lazyLists.merge(name.substring(0, end), change, (count, added) -> count + added == 0 ? null : count + added);
+				end = name.indexOf(Variable.SEPARATOR, end + Variable.SEPARATOR.length());
+			}
+		}
+
+		/**
+		 * Checks whether the given list variable of this stripe contains lazy values, without looking at all its values.
+		 * <p>
+		 * Note that caller must acquire the read or write lock of this stripe before calling this,
+		 * then release it.
+		 *
+		 * @param listName the name of the list variable without the trailing separator and asterisk.
+		 * @param list the internal value of the list variable.
+		 * @return whether the list variable, or the variable named like it, has lazy values.
+		 */
+		boolean containsLazyValues(String listName, TreeMap<String, Object> list) {
+			return list.get(null) instanceof LazyValue || lazyLists.containsKey(listName);
+		}
+
+		/**
+		 * Replaces the lazy values of the given variable by their deserialized values.
+		 * Lazy values that can't be deserialized remain.
+		 * <p>
+		 * Note that caller must acquire the write lock of this stripe before calling this,
+		 * then release it.
+		 *
+		 * @param name the name of the variable, possibly a list variable.
+		 * @return the internal value of the variable without lazy values.
+		 */
+		@Nullable
+		@SuppressWarnings("unchecked")
+		Object resolveLazyValues(String name) {
+			Object value = variables.getVariable(name);
+			if (value instanceof LazyValue) {
+				Object deserializedValue = ((LazyValue) value).get();
+				if (deserializedValue != null)
+					setVariable(name, null, deserializedValue);
+				return deserializedValue;
+			}
+			if (!(value instanceof TreeMap))
+				return value;
+
+			List<Pair<String, LazyValue>> lazyVariables = new ArrayList<>();
+			LazyValue.collectLazyValues(name.substring(0, name.length() - 1), (TreeMap<String, Object>) value, lazyVariables);
+			boolean resolved = true;
+			for (Pair<String, LazyValue> lazyVariable : lazyVariables) {
+				Object deserializedValue = lazyVariable.getSecond().get();
+				if (deserializedValue == null) {
+					resolved = false;
+				} else {
+					setVariable(lazyVariable.getFirst(), null, deserializedValue);
+				}
+			}
+
+			value = variables.getVariable(name);
+			if (resolved || !(value instanceof TreeMap))
+				return value;
+			return LazyValue.copyResolved((TreeMap<String, Object>) value);
+		}
+
+	}
 
 	/**
 	 * A variable change name-value pair.
@@ -573,45 +1387,70 @@ public class Variables {
 		@Nullable
 		public final Object value;
 
+		/**
+		 * The sequence number of this change, higher numbers are more recent changes.
+		 */
+		public final long sequence;
+
+		/**
+		 * The time this change was queued.
+		 */
+		public final long queuedAt;
+
 		/**
 		 * Creates a new {@link VariableChange} with the given name and value.
 		 *
 		 * @param name the variable name.
 		 * @param value the new variable value.
+		 * @param sequence the sequence number of the change.
+		 * @param queuedAt the time the change was queued.
 		 */
-		public VariableChange(String name, @Nullable Object value) {
+		public VariableChange(String name, @Nullable Object value, long sequence, long queuedAt) {
 			this.name = name;
 			this.value = value;
+			this.sequence = sequence;
+			this.queuedAt = queuedAt;
 		}
 
 	}
 
 	/**
-	 * Queues a variable change. Only to be called when direct write is not
-	 * possible, but thread cannot be allowed to block.
-	 *
-	 * @param name the variable name.
-	 * @param value the new value.
+	 * @return the amount of queued variable changes of all stripes.
 	 */
-	private static void queueVariableChange(String name, @Nullable Object value) {
-		changeQueue.add(new VariableChange(name, value));
+	static int getQueuedChanges() {
+		int queued = 0;
+		for (VariablesStripe stripe : STRIPES)
+			queued += stripe.changeQueue.size();
+		return queued;
 	}
 
 	/**
-	 * Processes all entries in variable change queue.
-	 * <p>
-	 * Note that caller must acquire write lock before calling this,
-	 * then release it.
+	 * @return how long (in milliseconds) the oldest queued variable change of all stripes has been queued.
 	 */
-	static void processChangeQueue() {
-		while (true) { // Run as long as we still have changes
-			VariableChange change = changeQueue.poll();
-			if (change == null)
-				break;
+	static long getChangeQueueLag() {
+		long now = System.currentTimeMillis();
+		long lag = 0;
+		for (VariablesStripe stripe : STRIPES) {
+			VariableChange oldest = stripe.changeQueue.peek();
+			if (oldest != null)
+				lag = Math.max(lag, now - oldest.queuedAt);
+		}
+		return lag;
+	}
 
-			// Set and save variable
-			variables.setVariable(change.name, change.value);
-			saveVariableChange(change.name, change.value);
+	/**
+	 * Processes the queued variable changes of all stripes
+	 * whose write lock can be acquired without waiting.
+	 */
+	static void tryProcessChangeQueues() {
+		for (VariablesStripe stripe : STRIPES) {
+			if (stripe.lock.writeLock().tryLock()) {
+				try {
+					stripe.processChangeQueue();
+				} finally {
+					stripe.lock.writeLock().unlock();
+				}
+			}
 		}
 	}
 
@@ -657,8 +1496,18 @@ public class Variables {
 	static boolean variableLoaded(String name, @Nullable Object value, VariablesStorage source) {
 		assert Bukkit.isPrimaryThread(); // required by serialisation
 
-		if (value == null)
+		if (value == null) {
+			// A deletion of a value loaded before it, from the same storage
+			synchronized (TEMP_VARIABLES) {
+				Map<String, NonNullPair<Object, VariablesStorage>> tvs = TEMP_VARIABLES.get();
+				if (tvs != null) {
+					NonNullPair<Object, VariablesStorage> existingVariable = tvs.get(name);
+					if (existingVariable != null && existingVariable.getSecond() == source)
+						tvs.remove(name);
+				}
+			}
 			return false;
+		}
 
 		synchronized (TEMP_VARIABLES) {
 			Map<String, NonNullPair<Object, VariablesStorage>> tvs = TEMP_VARIABLES.get();
@@ -699,11 +1548,12 @@ public class Variables {
 			}
 		}
 
-		variablesLock.writeLock().lock();
+		VariablesStripe stripe = getStripe(name);
+		stripe.lock.writeLock().lock();
 		try {
-			variables.setVariable(name, value);
+			stripe.setVariable(name, null, value);
 		} finally {
-			variablesLock.writeLock().unlock();
+			stripe.lock.writeLock().unlock();
 		}
 
 		// Move the variable to the right storage
@@ -712,7 +1562,7 @@ public class Variables {
 				if (variablesStorage.accept(name)) {
 					if (variablesStorage != source) {
 						// Serialize and set value in new storage
-						Value serializedValue = serialize(value);
+						Value serializedValue = serialize(value, variablesStorage.getYggdrasil());
 						if (serializedValue == null) {
 							variablesStorage.save(name, null, null);
 						} else {
@@ -734,6 +1584,35 @@ public class Variables {
 		return false;
 	}
 
+	/**
+	 * Removes a variable that was deleted outside of this server,
+	 * e.g. by another server sharing the same database.
+	 * <p>
+	 * The variable is only removed if the given storage is the one the variable is saved in,
+	 * as changes by storages that don't {@link VariablesStorage#accept(String) accept}
+	 * the variable any more would otherwise remove it from the storage it was moved to.
+	 *
+	 * @param name the variable name.
+	 * @param source the storage the variable was deleted from.
+	 */
+	static void variableDeleted(String name, VariablesStorage source) {
+		for (VariablesStorage variablesStorage : STORAGES) {
+			if (variablesStorage.accept(name)) {
+				if (variablesStorage != source)
+					return;
+				break;
+			}
+		}
+
+		VariablesStripe stripe = getStripe(name);
+		stripe.lock.writeLock().lock();
+		try {
+			stripe.setVariable(name, null, null);
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Stores loaded variables into the variables map
 	 * and the appropriate databases.
@@ -753,7 +1632,7 @@ public class Variables {
 			TEMP_VARIABLES.set(null);
 			assert tvs != null;
 
-			variablesLock.writeLock().lock();
+			lockAllForWriting();
 			try {
 				// Calculate the amount of variables that don't have a storage
 				int unstoredVariables = 0;
@@ -769,7 +1648,7 @@ public class Variables {
 
 				return unstoredVariables;
 			} finally {
-				variablesLock.writeLock().unlock();
+				unlockAllForWriting();
 			}
 		}
 	}
@@ -790,7 +1669,7 @@ public class Variables {
 		// First, serialize the variable.
 		SerializedVariable.Value var;
 		try {
-			var = serialize(value);
+			var = serialize(value, getYggdrasil(name));
 		} catch (Exception e) {
 			throw Skript.exception(e, "Error saving variable named " + name);
 		}
@@ -807,9 +1686,39 @@ public class Variables {
 	 * @return the serialized value.
 	 */
 	public static SerializedVariable.@Nullable Value serialize(@Nullable Object value) {
+		return serialize(value, yggdrasil);
+	}
+
+	/**
+	 * Serializes the given value using the given Yggdrasil.
+	 * <p>
+	 * Must be called from Bukkit's main thread.
+	 *
+	 * @param value the value to serialize.
+	 * @param yggdrasil the {@link VariablesStorage#getYggdrasil() Yggdrasil of the storage} the value is saved in.
+	 * @return the serialized value.
+	 */
+	static SerializedVariable.@Nullable Value serialize(@Nullable Object value, Yggdrasil yggdrasil) {
 		assert Bukkit.isPrimaryThread();
 
-		return Classes.serialize(value);
+		if (value instanceof LazyValue)
+			return ((LazyValue) value).serialize(yggdrasil);
+		return Classes.serialize(value, yggdrasil);
+	}
+
+	/**
+	 * Gets the Yggdrasil the given variable is serialized with,
+	 * i.e. the one of the storage the variable is saved in.
+	 *
+	 * @param name the variable name.
+	 * @return the Yggdrasil.
+	 */
+	static Yggdrasil getYggdrasil(String name) {
+		for (VariablesStorage variablesStorage : STORAGES) {
+			if (variablesStorage.accept(name))
+				return variablesStorage.getYggdrasil();
+		}
+		return yggdrasil;
 	}
 
 	/**
@@ -819,14 +1728,111 @@ public class Variables {
 	 * @param value the value of the variable.
 	 */
 	private static void saveVariableChange(String name, @Nullable Object value) {
-		saveQueue.add(serialize(name, value));
+		saveQueue.add(serializeChange(name, value));
+		VariableStatistics.saveQueued();
+	}
+
+	/**
+	 * The types whose instances can't be modified, so they can be serialized on another thread as they are.
+	 */
+	private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(
+		String.class, Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+		UUID.class, Timespan.class
+	));
+
+	/**
+	 * Used to give the {@link #serializationPool serialization threads} distinct names.
+	 */
+	private static final AtomicInteger SERIALIZATION_THREAD_COUNTER = new AtomicInteger();
+
+	/**
+	 * The threads serializing variable changes off the main thread, see {@link #serializeChange(String, Object)}.
+	 */
+	private static final ExecutorService serializationPool = Executors.newFixedThreadPool(
+		Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), runnable -> {
+			Thread thread = Skript.newThread(runnable, "Skript variable serialization thread " + SERIALIZATION_THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	/**
+	 * Serializes the given variable change.
+	 * <p>
+	 * Values that can't be modified, and values of types with a {@link ClassInfo#getCloner() cloner}
+	 * whose serializer doesn't require the main thread, are serialized on the {@link #serializationPool},
+	 * the latter using a copy made on the calling thread. Other values are serialized right away.
+	 * <p>
+	 * Must be called from Bukkit's main thread.
+	 *
+	 * @param name the variable name.
+	 * @param value the value.
+	 * @return the future serialized variable.
+	 */
+	private static CompletableFuture<SerializedVariable> serializeChange(String name, @Nullable Object value) {
+		Object snapshot = value == null ? null : snapshot(value);
+		if (snapshot == null)
+			return CompletableFuture.completedFuture(serialize(name, value));
+
+		Yggdrasil yggdrasil = getYggdrasil(name);
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return new SerializedVariable(name, Classes.serialize(snapshot, yggdrasil));
+			} catch (Exception e) {
+				throw Skript.exception(e, "Error saving variable named " + name);
+			}
+		}, serializationPool);
+	}
+
+	/**
+	 * Gets a copy of the given value that can be serialized on another thread.
+	 *
+	 * @param value the value.
+	 * @return the copy, the value itself if it can't be modified,
+	 * or {@code null} if the value must be serialized on the main thread.
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private static Object snapshot(Object value) {
+		if (IMMUTABLE_TYPES.contains(value.getClass()))
+			return value;
+		if (value instanceof LazyValue)
+			return null; // Not deserialized yet, serializing it is cheap
+
+		ClassInfo<Object> classInfo = (ClassInfo<Object>) Classes.getSuperClassInfo(value.getClass());
+		Serializer<?> serializer = classInfo.getSerializer();
+		if (classInfo.getCloner() == null || classInfo.getSerializeAs() != null
+				|| serializer == null || serializer.mustSyncDeserialization())
+			return null;
+		return classInfo.clone(value);
+	}
+
+	/**
+	 * Gets the serialized variable of the given change, waiting for it to be serialized if needed.
+	 * Waiting can't be interrupted, so changes taken from the {@link #saveQueue} are saved even while closing.
+	 *
+	 * @param change the future serialized variable of the change.
+	 * @return the serialized variable, or {@code null} if it couldn't be serialized.
+	 */
+	@Nullable
+	private static SerializedVariable getSerializedChange(CompletableFuture<SerializedVariable> change) {
+		try {
+			return change.join();
+		} catch (CompletionException e) {
+			return null; // Already logged by serializeChange
+		}
 	}
 
 	/**
 	 * The queue of serialized variables that have not yet been written
-	 * to the storage.
+	 * to the storage, in the order they were changed.
+	 * Each variable may still be serialized by the {@link #serializationPool}.
+	 */
+	static final BlockingQueue<CompletableFuture<SerializedVariable>> saveQueue = new LinkedBlockingQueue<>();
+
+	/**
+	 * The maximum amount of variable changes the {@link #saveThread} passes to the storages at once.
 	 */
-	static final BlockingQueue<SerializedVariable> saveQueue = new LinkedBlockingQueue<>();
+	private static final int SAVE_BATCH_SIZE = 1000;
 
 	/**
 	 * Whether the {@link #saveThread} should be stopped.
@@ -839,16 +1845,27 @@ public class Variables {
 	private static final Thread saveThread = Skript.newThread(() -> {
 		while (!closed) {
 			try {
-				// Save one variable change
-				SerializedVariable variable = saveQueue.take();
-
-				for (VariablesStorage variablesStorage : STORAGES) {
-					if (variablesStorage.accept(variable.name)) {
-						variablesStorage.save(variable);
-
-						break;
+				// Save the variable changes queued so far, one batch per storage
+				List<CompletableFuture<SerializedVariable>> changes = new ArrayList<>();
+				changes.add(saveQueue.take());
+				saveQueue.drainTo(changes, SAVE_BATCH_SIZE - 1);
+				VariableStatistics.saveQueueTaken(saveQueue.isEmpty());
+
+				Map<VariablesStorage, List<SerializedVariable>> batches = new LinkedHashMap<>();
+				for (CompletableFuture<SerializedVariable> change : changes) {
+					// Waits for the change to be serialized, so the changes are saved in order
+					SerializedVariable variable = getSerializedChange(change);
+					if (variable == null)
+						continue;
+					VariableStatistics.saved(variable);
+					for (VariablesStorage variablesStorage : STORAGES) {
+						if (variablesStorage.accept(variable.name)) {
+							batches.computeIfAbsent(variablesStorage, storage -> new ArrayList<>()).add(variable);
+							break;
+						}
 					}
 				}
+				batches.forEach(VariablesStorage::saveAll);
 			} catch (InterruptedException ignored) {}
 		}
 	}, "Skript variable save thread");
@@ -856,16 +1873,23 @@ public class Variables {
 	/**
 	 * Closes the variable systems:
 	 * <ul>
-	 *     <li>Process all changes left in the {@link #changeQueue}.</li>
+	 *     <li>Stops deleting expired variables.</li>
+	 *     <li>Process all changes left in the change queues of the stripes.</li>
 	 *     <li>Stops the {@link #saveThread}.</li>
 	 * </ul>
 	 */
 	public static void close() {
-		try { // Ensure that all changes are to save soon
-			variablesLock.writeLock().lock();
-			processChangeQueue();
-		} finally {
-			variablesLock.writeLock().unlock();
+		Task expiryTask = Variables.expiryTask;
+		if (expiryTask != null)
+			expiryTask.cancel();
+
+		for (VariablesStripe stripe : STRIPES) {
+			try { // Ensure that all changes are to save soon
+				stripe.lock.writeLock().lock();
+				stripe.processChangeQueue();
+			} finally {
+				stripe.lock.writeLock().unlock();
+			}
 		}
 
 		// First, make sure all variables are saved
@@ -875,9 +1899,16 @@ public class Variables {
 			} catch (InterruptedException ignored) {}
 		}
 
-		// Then we can safely interrupt and stop the thread
+		// Then we can safely interrupt and stop the thread,
+		//  waiting for it to pass the changes it has taken from the queue to the storages
 		closed = true;
 		saveThread.interrupt();
+		try {
+			saveThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		serializationPool.shutdown();
 	}
 
 	/**
@@ -887,10 +1918,13 @@ public class Variables {
 	 */
 	public static int numVariables() {
 		try {
-			variablesLock.readLock().lock();
-			return variables.hashMap.size();
+			lockAllForReading();
+			int size = 0;
+			for (VariablesStripe stripe : STRIPES)
+				size += stripe.variables.size();
+			return size;
 		} finally {
-			variablesLock.readLock().unlock();
+			unlockAllForReading();
 		}
 	}
 
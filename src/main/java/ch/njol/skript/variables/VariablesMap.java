@@ -23,15 +23,20 @@ import ch.njol.util.StringUtils;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 /**
  * A map for storing variables in a sorted and efficient manner.
+ * <p>
+ * All implementations keep the variables in a {@link #treeMap tree},
+ * branched by the list structure of the variables, which is used to access list variables.
+ *
+ * @see HashTreeVariablesMap
+ * @see TrieVariablesMap
  */
-final class VariablesMap {
+abstract class VariablesMap {
 
 	/**
 	 * The comparator for comparing variable names.
@@ -138,10 +143,6 @@ final class VariablesMap {
 		return 0;
 	};
 
-	/**
-	 * The map that stores all non-list variables.
-	 */
-	final HashMap<String, Object> hashMap = new HashMap<>();
 	/**
 	 * The tree of variables, branched by the list structure of the variables.
 	 */
@@ -157,44 +158,8 @@ final class VariablesMap {
 	 * {@code Map<String, Object>} for a list variable,
 	 * or {@code null} if the variable is not set.
 	 */
-	@SuppressWarnings("unchecked")
 	@Nullable
-	Object getVariable(String name) {
-		if (!name.endsWith("*")) {
-			// Not a list variable, quick access from the hash map
-			return hashMap.get(name);
-		} else {
-			// List variable, search the tree branches
-			String[] split = Variables.splitVariableName(name);
-			Map<String, Object> parent = treeMap;
-
-			// Iterate over the parts of the variable name
-			for (int i = 0; i < split.length; i++) {
-				String n = split[i];
-				if (n.equals("*")) {
-					// End of variable name, return map
-					assert i == split.length - 1;
-					return parent;
-				}
-
-				// Check if the current (sub-)tree has the expected child node
-				Object childNode = parent.get(n);
-				if (childNode == null)
-					return null;
-
-				// Continue the iteration if the child node is a tree itself
-				if (childNode instanceof Map) {
-					// Continue iterating with the subtree
-					parent = (Map<String, Object>) childNode;
-					assert i != split.length - 1;
-				} else {
-					// ..., otherwise the list variable doesn't exist here
-					return null;
-				}
-			}
-			return null;
-		}
-	}
+	abstract Object getVariable(String name);
 
 	/**
 	 * Sets the given variable to the given value.
@@ -205,140 +170,141 @@ final class VariablesMap {
 	 * @param name the variable name.
 	 * @param value the variable value, {@code null} to delete the variable.
 	 */
+	abstract void setVariable(String name, @Nullable Object value);
+
+	/**
+	 * Returns the internal value of the requested variable, given the parts of its name.
+	 * <p>
+	 * <b>Do not modify the returned value!</b>
+	 *
+	 * @param parts the parts of the variable name, as {@link Variables#splitVariableName(String) split}
+	 *                 by {@link Variable#SEPARATOR}.
+	 * @return an {@link Object} for a normal variable or a
+	 * {@code Map<String, Object>} for a list variable,
+	 * or {@code null} if the variable is not set.
+	 */
+	@Nullable
 	@SuppressWarnings("unchecked")
-	void setVariable(String name, @Nullable Object value) {
-		// First update the hash map easily
-		if (!name.endsWith("*")) {
-			if (value == null)
-				hashMap.remove(name);
-			else
-				hashMap.put(name, value);
+	Object getVariable(String[] parts) {
+		TreeMap<String, Object> parent = treeMap;
+		int last = parts.length - 1;
+		for (int i = 0; i < last; i++) {
+			// Continue the iteration if the child node is a tree itself
+			Object childNode = parent.get(parts[i]);
+			if (!(childNode instanceof TreeMap))
+				return null;
+			parent = (TreeMap<String, Object>) childNode;
 		}
 
-		// Then update the tree map by going down the branches
-		String[] split = Variables.splitVariableName(name);
-		TreeMap<String, Object> parent = treeMap;
+		String part = parts[last];
+		if (part.equals("*"))
+			return parent;
+		Object node = parent.get(part);
+		if (node instanceof TreeMap)
+			return ((TreeMap<String, Object>) node).get(null);
+		return node;
+	}
 
-		// Iterate over the parts of the variable name
-		for (int i = 0; i < split.length; i++) {
-			String childNodeName = split[i];
-			Object childNode = parent.get(childNodeName);
-
-			if (childNode == null) {
-				// Expected child node not found
-				if (i == split.length - 1) {
-					// End of the variable name reached, set variable if needed
-					if (value != null)
-						parent.put(childNodeName, value);
-
-					break;
-				} else if (value != null) {
-					// Create child node, add it to parent and continue iteration
-					childNode = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
-
-					parent.put(childNodeName, childNode);
-					parent = (TreeMap<String, Object>) childNode;
-				} else {
-					// Want to set variable to null, bu variable is already null
-					break;
-				}
-			} else if (childNode instanceof TreeMap) {
-				// Child node found
-				TreeMap<String, Object> childNodeMap = ((TreeMap<String, Object>) childNode);
-
-				if (i == split.length - 1) {
-					// End of variable name reached, adjust child node accordingly
-					if (value == null)
-						childNodeMap.remove(null);
-					else
-						childNodeMap.put(null, value);
-
-					break;
-				} else if (i == split.length - 2 && split[i + 1].equals("*")) {
-					// Second to last part of variable name
-					assert value == null;
-
-					// Delete all indices of the list variable from hashMap
-					deleteFromHashMap(StringUtils.join(split, Variable.SEPARATOR, 0, i + 1), childNodeMap);
-
-					// If the list variable itself has a value ,
-					//  e.g. list `{mylist::3}` while variable `{mylist}` also has a value,
-					//  then adjust the parent for that
-					Object currentChildValue = childNodeMap.get(null);
-					if (currentChildValue == null)
-						parent.remove(childNodeName);
-					else
-						parent.put(childNodeName, currentChildValue);
-
-					break;
-				} else {
-					// Continue iteration
-					parent = childNodeMap;
-				}
-			} else {
-				// Ran into leaf node
-				if (i == split.length - 1) {
-					// If we arrived at the end of the variable name, update parent
-					if (value == null)
-						parent.remove(childNodeName);
-					else
-						parent.put(childNodeName, value);
-
-					break;
-				} else if (value != null) {
-					// Need to continue iteration, create new child node and put old value in it
-					TreeMap<String, Object> newChildNodeMap = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
-					newChildNodeMap.put(null, childNode);
-
-					// Add new child node to parent
-					parent.put(childNodeName, newChildNodeMap);
-					parent = newChildNodeMap;
-				} else {
-					break;
-				}
-			}
-		}
+	/**
+	 * Sets the given variable to the given value, like {@link #setVariable(String, Object)},
+	 * but may use the given parts of the name instead of splitting the name again.
+	 *
+	 * @param name the variable name.
+	 * @param parts the parts of the variable name, as {@link Variables#splitVariableName(String) split}
+	 *                 by {@link Variable#SEPARATOR}, or {@code null} if they aren't known.
+	 * @param value the variable value, {@code null} to delete the variable.
+	 */
+	void setVariable(String name, String @Nullable [] parts, @Nullable Object value) {
+		setVariable(name, value);
 	}
 
 	/**
-	 * Deletes all indices of a list variable from the {@link #hashMap}.
+	 * Sets the given variable to the given value, given only the parts of its name.
+	 * Implementations that don't need the full name override this to avoid joining the parts.
 	 *
-	 * @param parent the list variable prefix,
-	 *                  e.g. {@code list} for {@code list::*}.
-	 * @param current the map of the list variable.
+	 * @param parts the parts of the variable name, as {@link Variables#splitVariableName(String) split}
+	 *                 by {@link Variable#SEPARATOR}.
+	 * @param value the variable value, {@code null} to delete the variable.
+	 */
+	void setVariable(String[] parts, @Nullable Object value) {
+		setVariable(StringUtils.join(parts, Variable.SEPARATOR), parts, value);
+	}
+
+	/**
+	 * Gets the amount of non-list variables in this map.
+	 *
+	 * @return the amount of variables.
+	 */
+	abstract int size();
+
+	/**
+	 * Creates a copy of this map.
+	 *
+	 * @return the copy.
+	 */
+	public abstract VariablesMap copy();
+
+	/**
+	 * Performs the given action for each non-list variable in this map.
+	 *
+	 * @param action the action, accepting the full name and the value of each variable.
+	 */
+	void forEachVariable(BiConsumer<String, Object> action) {
+		forEachVariable("", treeMap, action);
+	}
+
+	/**
+	 * Performs the given action for each variable in the given list variable,
+	 * i.e. for all variables that are deleted when the list variable is deleted.
+	 * The value of the list variable itself, e.g. {@code {list}} for {@code {list::*}}, is not included.
+	 *
+	 * @param name the name of the list variable, ending with {@link Variable#SEPARATOR} and {@code *}.
+	 * @param action the action, accepting the full name and the value of each variable.
 	 */
 	@SuppressWarnings("unchecked")
-	void deleteFromHashMap(String parent, TreeMap<String, Object> current) {
-		for (Entry<String, Object> e : current.entrySet()) {
-			if (e.getKey() == null)
+	void forEachListVariable(String name, BiConsumer<String, Object> action) {
+		Object list = getVariable(name);
+		if (!(list instanceof TreeMap))
+			return;
+
+		String prefix = name.substring(0, name.length() - 1);
+		for (Entry<String, Object> entry : ((TreeMap<String, Object>) list).entrySet()) {
+			String key = entry.getKey();
+			Object value = entry.getValue();
+			if (key == null)
 				continue;
-			String childName = parent + Variable.SEPARATOR + e.getKey();
-
-			// Remove from hashMap
-			hashMap.remove(childName);
 
-			// Recurse if needed
-			Object val = e.getValue();
-			if (val instanceof TreeMap) {
-				deleteFromHashMap(childName, (TreeMap<String, Object>) val);
+			if (value instanceof TreeMap) {
+				forEachVariable(prefix + key + Variable.SEPARATOR, (TreeMap<String, Object>) value, action);
+			} else {
+				action.accept(prefix + key, value);
 			}
 		}
 	}
 
 	/**
-	 * Creates a copy of this map.
+	 * Performs the given action for each variable in the given (sub-)tree.
 	 *
-	 * @return the copy.
+	 * @param parent the parent's name with {@link Variable#SEPARATOR} at the end,
+	 *                  or an empty string for the root of the tree.
+	 * @param map the (sub-)tree.
+	 * @param action the action.
 	 */
-	public VariablesMap copy() {
-		VariablesMap copy = new VariablesMap();
-
-		copy.hashMap.putAll(hashMap);
-
-		TreeMap<String, Object> treeMapCopy = copyTreeMap(treeMap);
-		copy.treeMap.putAll(treeMapCopy);
+	@SuppressWarnings("unchecked")
+	private static void forEachVariable(String parent, TreeMap<String, Object> map, BiConsumer<String, Object> action) {
+		for (Entry<String, Object> entry : map.entrySet()) {
+			String key = entry.getKey();
+			Object value = entry.getValue();
 
-		return copy;
+			if (value instanceof TreeMap) {
+				forEachVariable(parent + key + Variable.SEPARATOR, (TreeMap<String, Object>) value, action);
+			} else if (key == null) {
+				// The value of the list variable itself, e.g. {list} for {list::1}
+				action.accept(parent.substring(0, parent.length() - Variable.SEPARATOR.length()), value);
+			} else {
+				action.accept(parent + key, value);
+			}
+		}
 	}
 
 	/**
@@ -351,7 +317,7 @@ final class VariablesMap {
 	 * @return the copy.
 	 */
 	@SuppressWarnings("unchecked")
-	private static TreeMap<String, Object> copyTreeMap(TreeMap<String, Object> original) {
+	static TreeMap<String, Object> copyTreeMap(TreeMap<String, Object> original) {
 		TreeMap<String, Object> copy = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
 
 		for (Entry<String, Object> child : original.entrySet()) {
@@ -20,7 +20,10 @@ package ch.njol.skript.variables;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -37,6 +40,7 @@ import ch.njol.skript.util.Task;
 import ch.njol.skript.util.Timespan;
 import ch.njol.skript.variables.SerializedVariable.Value;
 import ch.njol.util.Closeable;
+import ch.njol.yggdrasil.Yggdrasil;
 
 /**
  * A variable storage is holds the means and methods of storing variables.
@@ -50,16 +54,81 @@ import ch.njol.util.Closeable;
 public abstract class VariablesStorage implements Closeable {
 
 	/**
-	 * The size of the variable changes queue.
+	 * The maximum amount of variables with unsaved changes.
 	 */
 	private static final int QUEUE_SIZE = 1000;
 	/**
-	 * The threshold of the size of the variable change
+	 * The threshold of the amount of variables with unsaved changes
 	 * after which a warning will be sent.
 	 */
 	private static final int FIRST_WARNING = 300;
 
-	final LinkedBlockingQueue<SerializedVariable> changesQueue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+	/**
+	 * The unsaved variable changes, by variable name.
+	 * <p>
+	 * Only the most recent change of each variable is kept, so a variable that is changed
+	 * many times before the {@link #writeThread} gets to it is only saved once.
+	 * <p>
+	 * Must be synchronized on.
+	 */
+	final LinkedHashMap<String, SerializedVariable> changesQueue = new LinkedHashMap<>();
+
+	/**
+	 * The time the first of the unsaved changes in the {@link #changesQueue} was made.
+	 */
+	private long firstChangeTime;
+
+	/**
+	 * The time the last of the unsaved changes in the {@link #changesQueue} was made.
+	 */
+	private long lastChangeTime;
+
+	/**
+	 * Whether the {@link #writeThread} is currently saving changes taken from the {@link #changesQueue}.
+	 */
+	private boolean writingChanges = false;
+
+	/**
+	 * Whether the {@link #writeThread} should save the changes without waiting for more changes.
+	 */
+	private boolean flushRequested = false;
+
+	/**
+	 * The time the first of the changes currently being saved by the {@link #writeThread} was made.
+	 */
+	private long savingSince;
+
+	/**
+	 * The amount of variable changes saved by the {@link #writeThread}.
+	 */
+	private final AtomicLong savedChanges = new AtomicLong();
+
+	/**
+	 * The time (in nanoseconds) the {@link #writeThread} spent saving changes.
+	 */
+	private final AtomicLong saveTime = new AtomicLong();
+
+	/**
+	 * The time (in milliseconds) between the first of the last saved changes being made and it being saved.
+	 */
+	private volatile long lastSaveLag;
+
+	/**
+	 * The maximum of {@link #lastSaveLag}.
+	 */
+	private volatile long maxSaveLag;
+
+	/**
+	 * How long (in milliseconds) the {@link #writeThread} waits for further changes after a change,
+	 * before saving the changes.
+	 */
+	private long flushInterval = 0;
+
+	/**
+	 * How long (in milliseconds) a change may be left unsaved at most,
+	 * even if the {@link #flushInterval} keeps getting extended by further changes.
+	 */
+	private long maxStaleness = 5000;
 
 	/**
 	 * Whether this variable storage has been {@link #close() closed}.
@@ -105,23 +174,126 @@ public abstract class VariablesStorage implements Closeable {
 
 		writeThread = Skript.newThread(() -> {
 			while (!closed) {
+				List<SerializedVariable> changes;
 				try {
-					// Take a variable from the queue and process it
-					SerializedVariable variable = changesQueue.take();
-					Value value = variable.value;
-
-					// Actually save the variable
-					if (value != null)
-						save(variable.name, value.type, value.data);
-					else
-						save(variable.name, null, null);
+					// Take the changes from the queue
+					changes = takeChanges();
 				} catch (InterruptedException ignored) {
 					// Ignored as the `closed` field will indicate whether the thread actually needs to stop
+					continue;
+				}
+
+				long start = System.nanoTime();
+				try {
+					// Actually save the variables
+					save(changes);
+				} finally {
+					synchronized (changesQueue) {
+						writingChanges = false;
+						changesQueue.notifyAll();
+					}
+
+					savedChanges.addAndGet(changes.size());
+					saveTime.addAndGet(System.nanoTime() - start);
+					lastSaveLag = System.currentTimeMillis() - savingSince;
+					maxSaveLag = Math.max(maxSaveLag, lastSaveLag);
 				}
 			}
 		}, "Skript variable save thread for database '" + name + "'");
 	}
 
+	/**
+	 * Waits for changes in the {@link #changesQueue}, and for the {@link #flushInterval} to pass
+	 * without further changes, then takes all changes from the queue.
+	 *
+	 * @return the changes, in the order the variables were first changed.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	private List<SerializedVariable> takeChanges() throws InterruptedException {
+		synchronized (changesQueue) {
+			while (changesQueue.isEmpty())
+				changesQueue.wait();
+
+			// Give the changes the chance to be overwritten by further changes
+			while (!flushRequested) {
+				long flushTime = Math.min(lastChangeTime + flushInterval, firstChangeTime + maxStaleness);
+				long delay = flushTime - System.currentTimeMillis();
+				if (delay <= 0)
+					break;
+				changesQueue.wait(delay);
+			}
+
+			List<SerializedVariable> changes = new ArrayList<>(changesQueue.values());
+			changesQueue.clear();
+			flushRequested = false;
+			writingChanges = true;
+			savingSince = firstChangeTime;
+
+			// Wake up threads waiting for space in the queue
+			changesQueue.notifyAll();
+			return changes;
+		}
+	}
+
+	/**
+	 * @return the amount of variables with changes that haven't been saved yet.
+	 */
+	public int getQueuedChanges() {
+		synchronized (changesQueue) {
+			return changesQueue.size();
+		}
+	}
+
+	/**
+	 * @return how long (in milliseconds) the oldest change that hasn't been saved yet has been waiting,
+	 * not including the changes currently being saved.
+	 */
+	public long getQueueLag() {
+		synchronized (changesQueue) {
+			return changesQueue.isEmpty() ? 0 : System.currentTimeMillis() - firstChangeTime;
+		}
+	}
+
+	/**
+	 * @return the amount of variable changes saved since this storage was loaded.
+	 */
+	public long getSavedChanges() {
+		return savedChanges.get();
+	}
+
+	/**
+	 * @return the time (in milliseconds) spent saving variable changes since this storage was loaded.
+	 */
+	public long getSaveTime() {
+		return saveTime.get() / 1_000_000;
+	}
+
+	/**
+	 * @return the time (in milliseconds) it took for the oldest of the last saved changes to be saved.
+	 */
+	public long getLastSaveLag() {
+		return lastSaveLag;
+	}
+
+	/**
+	 * @return the maximum time (in milliseconds) it took for a change to be saved since this storage was loaded.
+	 */
+	public long getMaxSaveLag() {
+		return maxSaveLag;
+	}
+
+	/**
+	 * Gets the Yggdrasil the values saved in this storage are serialized with.
+	 * <p>
+	 * Values serialized with a different Yggdrasil, e.g. {@link LazyValue}s loaded from another storage,
+	 * must be serialized again before they are saved here.
+	 *
+	 * @return the Yggdrasil, {@link Variables#yggdrasil} unless this storage uses a {@link ch.njol.yggdrasil.YggdrasilDictionary}.
+	 */
+	public Yggdrasil getYggdrasil() {
+		return Variables.yggdrasil;
+	}
+
 	/**
 	 * Gets the string value at the given key of the given section node.
 	 *
@@ -230,6 +402,20 @@ public abstract class VariablesStorage implements Closeable {
 			}
 		}
 
+		// Set how long changes may be kept in the queue, if present
+		if (sectionNode.getValue("flush interval") != null) {
+			Timespan flushInterval = getValue(sectionNode, "flush interval", Timespan.class);
+			if (flushInterval == null)
+				return false;
+			this.flushInterval = flushInterval.getMilliSeconds();
+		}
+		if (sectionNode.getValue("max staleness") != null) {
+			Timespan maxStaleness = getValue(sectionNode, "max staleness", Timespan.class);
+			if (maxStaleness == null)
+				return false;
+			this.maxStaleness = maxStaleness.getMilliSeconds();
+		}
+
 		// Load the entries custom to the variable storage
 		if (!load_i(sectionNode))
 			return false;
@@ -275,7 +461,7 @@ public abstract class VariablesStorage implements Closeable {
 	protected abstract File getFile(String fileName);
 
 	/**
-	 * Must be locked after {@link Variables#getReadLock()}
+	 * Must be locked after {@link Variables#lockAllForReading()}
 	 * (if that lock is used at all).
 	 */
 	protected final Object connectionLock = new Object();
@@ -375,6 +561,36 @@ public abstract class VariablesStorage implements Closeable {
 	 * @param var the serialized variable.
 	 */
 	final void save(SerializedVariable var) {
+		synchronized (changesQueue) {
+			queueChange(var);
+			changesQueue.notifyAll();
+		}
+	}
+
+	/**
+	 * Saves the given serialized variables, in the given order.
+	 * <p>
+	 * Like {@link #save(SerializedVariable)}, but only acquires the {@link #changesQueue} once.
+	 * May be called from a different thread than Bukkit's main thread.
+	 *
+	 * @param vars the serialized variables.
+	 */
+	final void saveAll(List<SerializedVariable> vars) {
+		synchronized (changesQueue) {
+			for (SerializedVariable var : vars)
+				queueChange(var);
+			changesQueue.notifyAll();
+		}
+	}
+
+	/**
+	 * Adds the given serialized variable to the {@link #changesQueue},
+	 * waiting if the queue is full. The lock of the queue must be held.
+	 *
+	 * @param var the serialized variable.
+	 */
+	private void queueChange(SerializedVariable var) {
+		assert Thread.holdsLock(changesQueue);
 		if (changesQueue.size() > FIRST_WARNING && lastWarning < System.currentTimeMillis() - WARNING_INTERVAL * 1000) {
 			// Too many variables queued up to save, warn the server
 			Skript.warning("Cannot write variables to the database '" + databaseName + "' at sufficient speed; " +
@@ -384,7 +600,8 @@ public abstract class VariablesStorage implements Closeable {
 			lastWarning = System.currentTimeMillis();
 		}
 
-		if (!changesQueue.offer(var)) {
+		// A change of a variable that is already queued doesn't need more space
+		if (changesQueue.size() >= QUEUE_SIZE && !changesQueue.containsKey(var.name)) {
 			// Variable changes queue filled up
 
 			if (lastError < System.currentTimeMillis() - ERROR_INTERVAL * 1000) {
@@ -395,15 +612,41 @@ public abstract class VariablesStorage implements Closeable {
 				lastError = System.currentTimeMillis();
 			}
 
-			// Halt thread until variables queue starts clearing up
-			while (true) {
+			// Save the queued changes right away, and halt thread until variables queue starts clearing up
+			flushRequested = true;
+			changesQueue.notifyAll();
+			while (changesQueue.size() >= QUEUE_SIZE) {
 				try {
 					// REMIND add repetitive error and/or stop saving variables altogether?
-					changesQueue.put(var);
-					break;
+					changesQueue.wait();
 				} catch (InterruptedException ignored) {}
 			}
 		}
+
+		long now = System.currentTimeMillis();
+		if (changesQueue.isEmpty())
+			firstChangeTime = now;
+		lastChangeTime = now;
+
+		changesQueue.put(var.name, var);
+	}
+
+	/**
+	 * Saves the given variable changes.
+	 * <p>
+	 * This is called from the {@link #writeThread} with the changes taken from the {@link #changesQueue}.
+	 * The default implementation {@link #save(String, String, byte[]) saves} the variables one by one.
+	 *
+	 * @param changes the variable changes, in the order the variables were first changed.
+	 */
+	protected void save(List<SerializedVariable> changes) {
+		for (SerializedVariable variable : changes) {
+			Value value = variable.value;
+			if (value != null)
+				save(variable.name, value.type, value.data);
+			else
+				save(variable.name, null, null);
+		}
 	}
 
 	/**
@@ -419,10 +662,14 @@ public abstract class VariablesStorage implements Closeable {
 	@Override
 	public void close() {
 		// Wait for all variable changes to be processed
-		while (changesQueue.size() > 0) {
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException ignored) {}
+		synchronized (changesQueue) {
+			flushRequested = true;
+			changesQueue.notifyAll();
+			while (!changesQueue.isEmpty() || writingChanges) {
+				try {
+					changesQueue.wait();
+				} catch (InterruptedException ignored) {}
+			}
 		}
 
 		// Now safely close storage and interrupt thread
@@ -437,7 +684,10 @@ public abstract class VariablesStorage implements Closeable {
 	 * after calling this method.
 	 */
 	protected void clearChangesQueue() {
-		changesQueue.clear();
+		synchronized (changesQueue) {
+			changesQueue.clear();
+			changesQueue.notifyAll();
+		}
 	}
 
 	/**
@@ -19,6 +19,7 @@
 package ch.njol.yggdrasil;
 
 import ch.njol.util.coll.CollectionUtils;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.EOFException;
 import java.io.IOException;
@@ -38,10 +39,13 @@ public final class DefaultYggdrasilInputStream extends YggdrasilInputStream {
 	
 	private final InputStream in;
 	private final short version;
+	@Nullable
+	private final YggdrasilDictionary dictionary;
 	
 	public DefaultYggdrasilInputStream(Yggdrasil yggdrasil, InputStream in) throws IOException {
 		super(yggdrasil);
 		this.in = in;
+		dictionary = yggdrasil.dictionary;
 		if (readInt() != Yggdrasil.MAGIC_NUMBER)
 			throw new StreamCorruptedException("Not an Yggdrasil stream");
 		version = readShort();
@@ -85,6 +89,13 @@ public final class DefaultYggdrasilInputStream extends YggdrasilInputStream {
 				throw new StreamCorruptedException("Invalid short string reference " + i);
 			return "" + readShortStrings.get(i);
 		}
+		if (length == Yggdrasil.DICTIONARY_REFERENCE && version >= 2) {
+			int id = readUnsignedInt();
+			String s = dictionary == null ? null : dictionary.getString(id);
+			if (s == null)
+				throw new StreamCorruptedException("Invalid dictionary reference " + id + (dictionary == null ? " (no dictionary is used)" : ""));
+			return s;
+		}
 		byte[] d = new byte[length];
 		readFully(d);
 		String s = new String(d, StandardCharsets.UTF_8);
@@ -18,6 +18,8 @@
  */
 package ch.njol.yggdrasil;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
@@ -33,11 +35,14 @@ public final class DefaultYggdrasilOutputStream extends YggdrasilOutputStream {
 	
 	private final OutputStream out;
 	private final short version;
+	@Nullable
+	private final YggdrasilDictionary dictionary;
 	
 	public DefaultYggdrasilOutputStream(Yggdrasil yggdrasil, OutputStream out) throws IOException {
 		super(yggdrasil);
 		this.out = out;
 		version = yggdrasil.version;
+		dictionary = version >= 2 ? yggdrasil.dictionary : null;
 		writeInt(Yggdrasil.MAGIC_NUMBER);
 		writeShort(version);
 	}
@@ -58,6 +63,11 @@ public final class DefaultYggdrasilOutputStream extends YggdrasilOutputStream {
 	 * Writes a class ID or Field name
 	 */
 	private void writeShortString(String string) throws IOException {
+		if (dictionary != null && string.length() > 4) {
+			write(Yggdrasil.DICTIONARY_REFERENCE);
+			writeUnsignedInt(dictionary.getID(string));
+			return;
+		}
 		if (writtenShortStrings.containsKey(string)) {
 			writeTag(T_REFERENCE);
 			if (version <= 1)
@@ -68,7 +78,7 @@ public final class DefaultYggdrasilOutputStream extends YggdrasilOutputStream {
 			if (nextShortStringID < 0)
 				throw new YggdrasilException("Too many field names/class IDs (max: " + Integer.MAX_VALUE + ")");
 			byte[] d = string.getBytes(StandardCharsets.UTF_8);
-			if (d.length >= (T_REFERENCE.tag & 0xFF))
+			if (d.length >= (version >= 2 ? Yggdrasil.DICTIONARY_REFERENCE : T_REFERENCE.tag & 0xFF))
 				throw new YggdrasilException("Field name or Class ID too long: " + string);
 			write(d.length);
 			out.write(d);
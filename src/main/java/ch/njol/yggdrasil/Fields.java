@@ -25,6 +25,9 @@ import org.jetbrains.annotations.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.NotSerializableException;
 import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -35,6 +38,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @NotThreadSafe
 public final class Fields implements Iterable<FieldContext> {
@@ -63,6 +67,12 @@ public final class Fields implements Iterable<FieldContext> {
 			isPrimitiveValue = field.getType().isPrimitive();
 		}
 		
+		FieldContext(FieldAccessor accessor, Object object) {
+			id = accessor.id;
+			value = accessor.get(object);
+			isPrimitiveValue = accessor.primitive;
+		}
+		
 		public String getID() {
 			return id;
 		}
@@ -147,6 +157,18 @@ public final class Fields implements Iterable<FieldContext> {
 			}
 		}
 		
+		/**
+		 * Same as {@link #setField(Object, Field, Yggdrasil)}, for a field known to be neither static nor transient.
+		 */
+		void setField(Object object, FieldAccessor accessor, Yggdrasil yggdrasil) throws StreamCorruptedException {
+			if (accessor.primitive != isPrimitiveValue)
+				throw new StreamCorruptedException("The field " + id + " of " + accessor.field.getDeclaringClass() + " is " + (accessor.primitive ? "" : "not ") + "primitive");
+			if (!accessor.set(object, value)) {
+				if (!(object instanceof YggdrasilRobustSerializable) || !((YggdrasilRobustSerializable) object).incompatibleField(accessor.field, this))
+					yggdrasil.incompatibleField(object, accessor.field, this);
+			}
+		}
+		
 		@Override
 		public int hashCode() {
 			return id.hashCode();
@@ -223,17 +245,106 @@ public final class Fields implements Iterable<FieldContext> {
 		this.yggdrasil = yggdrasil;
 		Class<?> type = object.getClass();
 		assert type != null;
-		for (Field field : getFields(type)) {
-			assert field != null;
+		for (FieldAccessor accessor : getAccessors(type))
+			fields.put(accessor.id, new FieldContext(accessor, object));
+	}
+	
+	private static final Map<Class<?>, Collection<Field>> cache = new ConcurrentHashMap<>(); // Variables are serialized concurrently
+	
+	/**
+	 * A serializable field of a class, with its ID and method handles to access it.
+	 * Resolved once per class by {@link #getAccessors(Class)}.
+	 */
+	static final class FieldAccessor {
+		
+		private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+		private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+		
+		final Field field;
+		final String id;
+		final boolean primitive;
+		
+		/**
+		 * The handles to access the field, null if they can't be created, in which case the field is used directly.
+		 */
+		@Nullable
+		private final MethodHandle getter, setter;
+		
+		FieldAccessor(Field field) {
+			this.field = field;
+			id = Yggdrasil.getID(field);
+			primitive = field.getType().isPrimitive();
+			MethodHandle getter = null, setter = null;
 			try {
-				fields.put(Yggdrasil.getID(field), new FieldContext(field, object));
-			} catch (IllegalArgumentException | IllegalAccessException e) {
+				// The field is accessible, so no further access checks are made
+				getter = MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+				setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+			} catch (IllegalAccessException | RuntimeException e) {
+				getter = setter = null;
+			}
+			this.getter = getter;
+			this.setter = setter;
+		}
+		
+		@Nullable
+		Object get(Object object) {
+			try {
+				MethodHandle getter = this.getter;
+				return getter != null ? (Object) getter.invokeExact(object) : field.get(object);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new YggdrasilException(e);
+			}
+		}
+		
+		/**
+		 * @return Whether the value could be set, i.e. whether its type is compatible with the field
+		 */
+		boolean set(Object object, @Nullable Object value) {
+			MethodHandle setter = this.setter;
+			if (setter != null) {
+				try {
+					setter.invokeExact(object, value);
+					return true;
+				} catch (ClassCastException | NullPointerException e) {
+					// May still be allowed by a widening conversion, which the field supports
+				} catch (RuntimeException | Error e) {
+					throw e;
+				} catch (Throwable e) {
+					throw new YggdrasilException(e);
+				}
+			}
+			try {
+				field.set(object, value);
+				return true;
+			} catch (IllegalArgumentException e) {
+				return false;
+			} catch (IllegalAccessException e) {
 				assert false;
+				return false;
 			}
 		}
+		
 	}
 	
-	private static final Map<Class<?>, Collection<Field>> cache = new HashMap<>();
+	private static final Map<Class<?>, FieldAccessor[]> accessors = new ConcurrentHashMap<>();
+	
+	/**
+	 * Gets the accessors of all fields of the provided class, in the same order as {@link #getFields(Class)}.
+	 */
+	static FieldAccessor[] getAccessors(Class<?> type) throws NotSerializableException {
+		FieldAccessor[] fieldAccessors = accessors.get(type);
+		if (fieldAccessors != null)
+			return fieldAccessors;
+		Collection<Field> fields = getFields(type);
+		fieldAccessors = new FieldAccessor[fields.size()];
+		int i = 0;
+		for (Field field : fields)
+			fieldAccessors[i++] = new FieldAccessor(field);
+		accessors.put(type, fieldAccessors);
+		return fieldAccessors;
+	}
 	
 	/**
 	 * Gets all serializable fields of the provided class, including superclasses.
@@ -281,15 +392,13 @@ public final class Fields implements Iterable<FieldContext> {
 		Set<FieldContext> excessive = new HashSet<>(fields.values());
 		Class<?> type = object.getClass();
 		assert type != null;
-		for (Field field : getFields(type)) {
-			assert field != null;
-			String id = Yggdrasil.getID(field);
-			FieldContext context = fields.get(id);
+		for (FieldAccessor accessor : getAccessors(type)) {
+			FieldContext context = fields.get(accessor.id);
 			if (context == null) {
-				if (!(object instanceof YggdrasilRobustSerializable) || !((YggdrasilRobustSerializable) object).missingField(field))
-					yggdrasil.missingField(object, field);
+				if (!(object instanceof YggdrasilRobustSerializable) || !((YggdrasilRobustSerializable) object).missingField(accessor.field))
+					yggdrasil.missingField(object, accessor.field);
 			} else {
-				context.setField(object, field, yggdrasil);
+				context.setField(object, accessor, yggdrasil);
 			}
 			excessive.remove(context);
 		}
@@ -38,6 +38,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Yggdrasil is a simple data format to store object graphs.
@@ -78,15 +80,71 @@ public final class Yggdrasil {
 	 */
 	public static final int MAGIC_NUMBER = 0x59676700;
 	
-	/** latest protocol version */
-	public static final short LATEST_VERSION = 1; // version 2 is only one minor change currently
+	/**
+	 * latest protocol version
+	 * <p>
+	 * Version 2 writes references in a shorter form, and may write references to a {@link YggdrasilDictionary}
+	 * instead of class IDs and field names. Its reference encoding was previously unused,
+	 * {@link #withDictionary(YggdrasilDictionary)} enables it as dictionaries are only used in version 2 streams.
+	 * <p>
+	 * Every stream starts with the version it was written in, and is read in that version,
+	 * so dictionary references are only accepted in version 2 streams and version 1 streams are read as before.
+	 */
+	public static final short LATEST_VERSION = 2;
+	
+	/**
+	 * The first byte of a reference to a {@link YggdrasilDictionary} entry in version 2 streams,
+	 * in place of the length of a class ID or field name.
+	 */
+	public static final int DICTIONARY_REFERENCE = 0xFE;
 	
 	public final short version;
 	
-	private final List<ClassResolver> classResolvers = new ArrayList<>();
-	private final List<FieldHandler> fieldHandlers = new ArrayList<>();
+	/**
+	 * The dictionary used by streams of this Yggdrasil, see {@link #withDictionary(YggdrasilDictionary)}.
+	 */
+	@Nullable
+	final YggdrasilDictionary dictionary;
+	
+	private final List<ClassResolver> classResolvers;
+	private final List<FieldHandler> fieldHandlers;
+	
+	private final SimpleClassResolver simpleClassResolver;
 	
-	private final SimpleClassResolver simpleClassResolver = new SimpleClassResolver();
+	/**
+	 * What is known about a class with an ID, resolved once per class by {@link #getDescriptor(Class)}.
+	 */
+	private static final class ClassDescriptor {
+		
+		final String id;
+		
+		@Nullable
+		final YggdrasilSerializer<?> serializer;
+		
+		/**
+		 * Whether the class is {@link #isSerializable(Class) serializable}, {@code null} until it has been checked.
+		 */
+		@Nullable
+		volatile Boolean serializable;
+		
+		ClassDescriptor(String id, @Nullable YggdrasilSerializer<?> serializer) {
+			this.id = id;
+			this.serializer = serializer;
+		}
+		
+	}
+	
+	/**
+	 * The descriptors of the classes that have an ID.
+	 * Classes without an ID aren't cached, as {@link ClassResolver}s may start resolving them later.
+	 * Cleared when a class resolver or class is registered.
+	 */
+	private final Map<Class<?>, ClassDescriptor> descriptors;
+	
+	/**
+	 * The classes found for IDs by {@link #getClass(String)}, cleared like {@link #descriptors}.
+	 */
+	private final Map<String, Class<?>> classes;
 	
 	public Yggdrasil() {
 		this(LATEST_VERSION);
@@ -96,10 +154,47 @@ public final class Yggdrasil {
 		if (version <= 0 || version > LATEST_VERSION)
 			throw new YggdrasilException("Unsupported version number");
 		this.version = version;
+		dictionary = null;
+		classResolvers = new ArrayList<>();
+		fieldHandlers = new ArrayList<>();
+		simpleClassResolver = new SimpleClassResolver();
+		descriptors = new ConcurrentHashMap<>();
+		classes = new ConcurrentHashMap<>();
 		classResolvers.add(new JRESerializer());
 		classResolvers.add(simpleClassResolver);
 	}
 	
+	private Yggdrasil(Yggdrasil yggdrasil, YggdrasilDictionary dictionary) {
+		version = LATEST_VERSION;
+		this.dictionary = dictionary;
+		classResolvers = yggdrasil.classResolvers;
+		fieldHandlers = yggdrasil.fieldHandlers;
+		simpleClassResolver = yggdrasil.simpleClassResolver;
+		descriptors = yggdrasil.descriptors;
+		classes = yggdrasil.classes;
+	}
+	
+	/**
+	 * Creates an Yggdrasil of the {@link #LATEST_VERSION latest version} whose streams use the given dictionary.
+	 * <p>
+	 * The returned Yggdrasil shares all registered classes, class resolvers and field handlers with this one,
+	 * including those registered later to either of them.
+	 * 
+	 * @param dictionary The dictionary
+	 * @return The Yggdrasil using the dictionary
+	 */
+	public Yggdrasil withDictionary(YggdrasilDictionary dictionary) {
+		return new Yggdrasil(this, dictionary);
+	}
+	
+	/**
+	 * @return The dictionary used by streams of this Yggdrasil, if any
+	 */
+	@Nullable
+	public YggdrasilDictionary getDictionary() {
+		return dictionary;
+	}
+	
 	public YggdrasilOutputStream newOutputStream(OutputStream out) throws IOException {
 		return new DefaultYggdrasilOutputStream(this, out);
 	}
@@ -109,12 +204,15 @@ public final class Yggdrasil {
 	}
 	
 	public void registerClassResolver(ClassResolver resolver) {
-		if (!classResolvers.contains(resolver))
+		if (!classResolvers.contains(resolver)) {
 			classResolvers.add(resolver);
+			clearCaches();
+		}
 	}
 	
 	public void registerSingleClass(Class<?> type, String id) {
 		simpleClassResolver.registerClass(type, id);
+		clearCaches();
 	}
 	
 	/**
@@ -124,7 +222,39 @@ public final class Yggdrasil {
 		YggdrasilID id = type.getAnnotation(YggdrasilID.class);
 		if (id == null)
 			throw new IllegalArgumentException(type.toString());
-		simpleClassResolver.registerClass(type, id.value());
+		registerSingleClass(type, id.value());
+	}
+	
+	private void clearCaches() {
+		descriptors.clear();
+		classes.clear();
+	}
+	
+	/**
+	 * @return Whether instances of the given class are written with an ID, i.e. whether it may have a {@link ClassDescriptor}
+	 */
+	private static boolean hasID(Class<?> type) {
+		Tag tag = Tag.getType(type);
+		return tag == Tag.T_OBJECT || tag == Tag.T_ENUM;
+	}
+	
+	/**
+	 * Gets the descriptor of the given class, resolving its ID and serializer if this is the first time it's used.
+	 * 
+	 * @return The descriptor, or null if the class has no ID
+	 */
+	@Nullable
+	private ClassDescriptor getDescriptor(Class<?> type) {
+		ClassDescriptor descriptor = descriptors.get(type);
+		if (descriptor != null)
+			return descriptor;
+		// Not computeIfAbsent, as resolvers may use this Yggdrasil recursively
+		String id = resolveID(type);
+		if (id == null)
+			return null;
+		descriptor = new ClassDescriptor(id, resolveSerializer(type));
+		ClassDescriptor previous = descriptors.putIfAbsent(type, descriptor);
+		return previous != null ? previous : descriptor;
 	}
 	
 	public void registerFieldHandler(FieldHandler handler) {
@@ -133,6 +263,17 @@ public final class Yggdrasil {
 	}
 	
 	public boolean isSerializable(Class<?> type) {
+		ClassDescriptor descriptor = hasID(type) ? getDescriptor(type) : null;
+		if (descriptor != null) {
+			Boolean serializable = descriptor.serializable;
+			if (serializable == null)
+				descriptor.serializable = serializable = checkSerializable(type);
+			return serializable;
+		}
+		return checkSerializable(type);
+	}
+	
+	private boolean checkSerializable(Class<?> type) {
 		try {
 			return type.isPrimitive() || type == Object.class || (Enum.class.isAssignableFrom(type) ||
 					PseudoEnum.class.isAssignableFrom(type)) && getIDNoError(type) != null ||
@@ -146,6 +287,14 @@ public final class Yggdrasil {
 	
 	@Nullable
 	YggdrasilSerializer<?> getSerializer(Class<?> type) {
+		ClassDescriptor descriptor = hasID(type) ? getDescriptor(type) : null;
+		if (descriptor != null)
+			return descriptor.serializer;
+		return resolveSerializer(type);
+	}
+	
+	@Nullable
+	private YggdrasilSerializer<?> resolveSerializer(Class<?> type) {
 		for (ClassResolver resolver : classResolvers) {
 			if (resolver instanceof YggdrasilSerializer && resolver.getID(type) != null)
 				return (YggdrasilSerializer<?>) resolver;
@@ -156,20 +305,32 @@ public final class Yggdrasil {
 	public Class<?> getClass(String id) throws StreamCorruptedException {
 		if ("Object".equals(id))
 			return Object.class;
+		Class<?> cached = classes.get(id);
+		if (cached != null)
+			return cached;
 		for (ClassResolver resolver : classResolvers) {
 			Class<?> type = resolver.getClass(id);
 			if (type != null) { // TODO error if not serializable?
 				assert Tag.byName(id) == null && (Tag.getType(type) == Tag.T_OBJECT || Tag.getType(type) == Tag.T_ENUM) : "Tag IDs should not be matched: " + id + " (class resolver: " + resolver + ")";
 				assert id.equals(resolver.getID(type)) : resolver + " returned " + type + " for id " + id + ", but returns id " + resolver.getID(type) + " for that class";
+				classes.put(id, type);
 				return type;
 			}
 		}
 		throw new StreamCorruptedException("No class found for ID " + id);
 	}
 	
-	@SuppressWarnings({"unchecked", "rawtypes"})
 	@Nullable
 	private String getIDNoError(Class<?> type) {
+		if (type == Object.class)
+			return "Object";
+		ClassDescriptor descriptor = getDescriptor(type);
+		return descriptor == null ? null : descriptor.id;
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	@Nullable
+	private String resolveID(Class<?> type) {
 		if (type == Object.class)
 			return "Object";
 		assert Tag.getType(type) == Tag.T_OBJECT || Tag.getType(type) == Tag.T_ENUM;
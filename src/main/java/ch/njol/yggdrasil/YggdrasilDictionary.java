@@ -0,0 +1,101 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.yggdrasil;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary of the class IDs and field names written by Yggdrasil, shared by many streams.
+ * <p>
+ * Streams of an {@link Yggdrasil#withDictionary(YggdrasilDictionary) Yggdrasil using a dictionary} write references
+ * to the dictionary instead of these strings, so streams of similar objects don't repeat the same strings,
+ * but can only be read using the same dictionary.
+ * <p>
+ * Strings are never removed from a dictionary, and their IDs never change. Whoever stores the streams must also store
+ * the strings of the dictionary, and {@link #add(int, String) add} them back before reading the streams again.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class YggdrasilDictionary {
+	
+	private final List<String> strings = new ArrayList<>();
+	private final Map<String, Integer> ids = new HashMap<>();
+	
+	/**
+	 * Gets the ID of the given string, adding it to this dictionary if it isn't in it yet.
+	 */
+	public synchronized int getID(String string) {
+		Integer id = ids.get(string);
+		if (id != null)
+			return id;
+		id = strings.size();
+		strings.add(string);
+		ids.put(string, id);
+		return id;
+	}
+	
+	/**
+	 * @return The string with the given ID, or null if there's no such string
+	 */
+	@Nullable
+	public synchronized String getString(int id) {
+		return id >= 0 && id < strings.size() ? strings.get(id) : null;
+	}
+	
+	/**
+	 * Adds a string that was read from where this dictionary is stored.
+	 * 
+	 * @param id The ID of the string, must be the next ID of this dictionary unless the string is already in it
+	 * @throws StreamCorruptedException If the ID is already used by a different string, or the ID of the previous string is missing
+	 */
+	public synchronized void add(int id, String string) throws StreamCorruptedException {
+		if (id < strings.size()) {
+			if (!strings.get(id).equals(string))
+				throw new StreamCorruptedException("Dictionary entry " + id + " is '" + strings.get(id) + "', but was read as '" + string + "'");
+			return;
+		}
+		if (id != strings.size())
+			throw new StreamCorruptedException("Dictionary entry " + id + " read before entry " + strings.size());
+		if (ids.containsKey(string))
+			throw new StreamCorruptedException("Dictionary entries " + ids.get(string) + " and " + id + " are both '" + string + "'");
+		strings.add(string);
+		ids.put(string, id);
+	}
+	
+	/**
+	 * @return The amount of strings in this dictionary, which is also the ID the next string will get
+	 */
+	public synchronized int size() {
+		return strings.size();
+	}
+	
+	/**
+	 * @return The strings with IDs from the given ID on, in the order of their IDs
+	 */
+	public synchronized List<String> getStrings(int fromID) {
+		return new ArrayList<>(strings.subList(Math.min(fromID, strings.size()), strings.size()));
+	}
+	
+}
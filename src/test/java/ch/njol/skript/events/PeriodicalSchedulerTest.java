@@ -0,0 +1,67 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.events;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongToIntFunction;
+
+import org.junit.Test;
+
+public class PeriodicalSchedulerTest {
+
+	@Test
+	public void testPhase() {
+		// A task first run at tick 13 with a period of 4 runs at every tick with a remainder of 1
+		assertEquals(1, PeriodicalScheduler.getPhase(10, 3, 4));
+		assertEquals(13 % 20, PeriodicalScheduler.getPhase(10, 3, 20));
+		// A task can't run at the current tick anymore
+		assertEquals(1, PeriodicalScheduler.getPhase(0, 0, 4));
+		assertEquals(0, PeriodicalScheduler.getPhase(0, 1, 1));
+	}
+
+	@Test
+	public void testSpread() {
+		Map<Long, Integer> sizes = new HashMap<>();
+		assertEquals(3, PeriodicalScheduler.spreadPhase(3, 20, phase -> sizes.getOrDefault(phase, 0)));
+
+		sizes.put(3L, 2);
+		sizes.put(4L, 1);
+		assertEquals(5, PeriodicalScheduler.spreadPhase(3, 20, phase -> sizes.getOrDefault(phase, 0)));
+
+		// The first of the least used phases is taken, wrapping around the period
+		for (long phase = 0; phase < 5; phase++)
+			sizes.put(phase, 2);
+		sizes.put(1L, 1);
+		sizes.put(2L, 1);
+		assertEquals(1, PeriodicalScheduler.spreadPhase(3, 5, phase -> sizes.getOrDefault(phase, 0)));
+	}
+
+	@Test
+	public void testSpreadLimit() {
+		long period = PeriodicalScheduler.MAX_SPREAD * 2;
+		// Only the phase just out of reach is unused
+		LongToIntFunction sizes = phase -> phase == PeriodicalScheduler.MAX_SPREAD ? 0 : 1;
+		assertEquals(0, PeriodicalScheduler.spreadPhase(0, period, sizes));
+		assertEquals(PeriodicalScheduler.MAX_SPREAD, PeriodicalScheduler.spreadPhase(1, period, sizes));
+	}
+
+}
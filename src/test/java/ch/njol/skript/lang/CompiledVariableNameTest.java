@@ -0,0 +1,99 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ch.njol.skript.lang.util.SimpleLiteral;
+import ch.njol.skript.variables.Variables;
+
+public class CompiledVariableNameTest {
+
+	private static final Expression<?> E = new SimpleLiteral<>("e", false);
+	private static final Expression<?> F = new SimpleLiteral<>("f", false);
+
+	private static final Object[][] NAMES = {
+		{"a"},
+		{"stats::", E, "::kills"},
+		{"a:", E, ":b"},
+		{"a:", E, "::b"},
+		{"a::", E, ":b"},
+		{"a:::", E},
+		{E, ":::b"},
+		{E, "::", F},
+		{E, F, "::x"},
+		{"a:", E, "::", F, ":b"},
+		{"a:", ":b"},
+		{"a", "::", E, "::"},
+		{"a::"},
+		{"a::::b"},
+		{"list::", E, "::*"},
+	};
+
+	private static final String[] VALUES = {"", "x", "X", "*", ":", "y:", "::z"};
+
+	@Test
+	public void testMatchesSplitName() {
+		for (Object[] strings : NAMES) {
+			CompiledVariableName name = new CompiledVariableName(strings);
+			for (String e : VALUES) {
+				for (String f : VALUES) {
+					Map<Expression<?>, String> values = new IdentityHashMap<>();
+					values.put(E, e);
+					values.put(F, f);
+					for (boolean lowerCase : new boolean[] {false, true}) {
+						StringBuilder fullName = new StringBuilder();
+						for (Object string : strings)
+							fullName.append(string instanceof String ? (String) string : values.get(string));
+						String built = lowerCase ? fullName.toString().toLowerCase(Locale.ENGLISH) : fullName.toString();
+
+						String[] parts = name.getParts(lowerCase, values::get);
+						if (parts != null)
+							assertArrayEquals(Arrays.toString(strings) + " with " + values.values(), Variables.splitVariableName(built), parts);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFallback() {
+		Map<Expression<?>, String> empty = new IdentityHashMap<>();
+		empty.put(E, "");
+		assertNull(new CompiledVariableName(new Object[] {"a:", E, ":b"}).getParts(false, empty::get));
+		assertNull(new CompiledVariableName(new Object[] {"a:", E, "::b"}).getParts(false, empty::get));
+		assertNull(new CompiledVariableName(new Object[] {"stats::", E, "::kills"}).getParts(false, empty::get));
+
+		Map<Expression<?>, String> value = new IdentityHashMap<>();
+		value.put(E, "x");
+		assertNotNull(new CompiledVariableName(new Object[] {"a:", E, ":b"}).getParts(false, value::get));
+		assertArrayEquals(new String[] {"stats", "x", "kills"},
+			new CompiledVariableName(new Object[] {"stats::", E, "::kills"}).getParts(false, value::get));
+	}
+
+}
@@ -0,0 +1,79 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+	@Test
+	public void testRollover() {
+		long start = TimerWheel.getCurrentTick();
+		long[] delays = {1, 2, TimerWheel.SLOTS - 1, TimerWheel.SLOTS, TimerWheel.SLOTS + 1, TimerWheel.SLOTS * 2 + 5};
+		List<Long> ran = new ArrayList<>();
+		for (long delay : delays)
+			TimerWheel.schedule(() -> ran.add(TimerWheel.getCurrentTick() - start), delay, start);
+
+		for (int i = 0; i < TimerWheel.SLOTS * 3; i++)
+			TimerWheel.tick();
+
+		List<Long> expected = new ArrayList<>();
+		for (long delay : delays)
+			expected.add(delay);
+		assertEquals(expected, ran);
+		assertEquals(0, TimerWheel.getPending());
+	}
+
+	@Test
+	public void testOrder() {
+		long start = TimerWheel.getCurrentTick();
+		List<String> ran = new ArrayList<>();
+		TimerWheel.schedule(() -> {
+			ran.add("a");
+			TimerWheel.schedule(() -> ran.add("c"), 1, TimerWheel.getCurrentTick());
+		}, 1, start);
+		TimerWheel.schedule(() -> ran.add("b"), 1, start);
+		// At least one tick is used, and tasks due at the same tick run in the order they were scheduled
+		TimerWheel.schedule(() -> ran.add("d"), 0, start + 1);
+
+		TimerWheel.tick();
+		assertEquals(List.of("a", "b"), ran);
+		TimerWheel.tick();
+		assertEquals(List.of("a", "b", "d", "c"), ran);
+		assertEquals(0, TimerWheel.getPending());
+	}
+
+	@Test
+	public void testScheduledDuringTick() {
+		// The current tick was read just before the driving task ran, so the task is due at a tick that has passed
+		long start = TimerWheel.getCurrentTick();
+		List<Long> ran = new ArrayList<>();
+		TimerWheel.schedule(() -> ran.add(TimerWheel.getCurrentTick() - start), 1, start - 1);
+
+		TimerWheel.tick();
+		assertEquals(List.of(1L), ran);
+		assertEquals(0, TimerWheel.getPending());
+	}
+
+}
@@ -0,0 +1,182 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BinaryLogStorageTest {
+
+	@Test
+	public void testRecords() throws IOException {
+		File log = File.createTempFile("variables", ".bin");
+		log.deleteOnExit();
+
+		byte[] first = BinaryLogStorage.encodeRecord("a::1", "string", new byte[] {1, 2, 3});
+		byte[] second = BinaryLogStorage.encodeRecord("a::2", null, null);
+		byte[] third = BinaryLogStorage.encodeRecord("b", "long", new byte[] {4});
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(log))) {
+			BinaryLogStorage.writeHeader(out);
+			out.write(first);
+			out.write(second);
+			// A torn write of the third record
+			out.write(Arrays.copyOf(third, third.length - 1));
+		}
+
+		List<SerializedVariable> variables = new ArrayList<>();
+		List<Long> positions = new ArrayList<>();
+		long intactLength = BinaryLogStorage.readLog(log, (variable, position) -> {
+			variables.add(variable);
+			positions.add(position);
+		});
+
+		assertEquals(BinaryLogStorage.HEADER_SIZE + first.length + second.length, intactLength);
+		assertEquals(2, variables.size());
+		assertEquals(Arrays.asList((long) BinaryLogStorage.HEADER_SIZE, (long) BinaryLogStorage.HEADER_SIZE + first.length), positions);
+
+		SerializedVariable.Value value = variables.get(0).value;
+		assert value != null;
+		assertEquals("a::1", variables.get(0).name);
+		assertEquals("string", value.type);
+		assertArrayEquals(new byte[] {1, 2, 3}, value.data);
+
+		assertEquals("a::2", variables.get(1).name);
+		assertNull(variables.get(1).value);
+	}
+
+	@Test
+	public void testChecksum() throws IOException {
+		File log = File.createTempFile("variables", ".bin");
+		log.deleteOnExit();
+
+		byte[] record = BinaryLogStorage.encodeRecord("a", "string", new byte[] {1, 2, 3});
+		record[record.length - 1]++;
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(log))) {
+			BinaryLogStorage.writeHeader(out);
+			out.write(record);
+		}
+
+		assertEquals(BinaryLogStorage.HEADER_SIZE, BinaryLogStorage.readLog(log, (variable, position) -> {
+			throw new AssertionError("Corrupted record was read: " + variable.name);
+		}));
+	}
+
+	@Test
+	public void testCompaction() throws IOException, InterruptedException {
+		File directory = Files.createTempDirectory("variables").toFile();
+		directory.deleteOnExit();
+		File base = new File(directory, "variables.bin");
+		File first = new File(directory, "variables.bin.1");
+		File second = new File(directory, "variables.bin.2");
+		File active = new File(directory, "variables.bin.3");
+		File compacted = new File(directory, "variables.bin.compacting");
+		for (File file : new File[] {base, first, second, active, compacted})
+			file.deleteOnExit();
+
+		writeLog(base, record("a", 1), record("b", 2), record("c", 3));
+		writeLog(first, record("a", 10), deletion("b"), record("d", 4));
+		writeLog(second, deletion("c"), record("e", 5), record("a", 11));
+		writeLog(active, record("f", 6));
+
+		// Changes keep being appended to the active segment while the sealed segments are compacted
+		Thread compaction = new Thread(() -> {
+			try {
+				BinaryLogStorage.writeCompacted(Arrays.asList(base, first, second), compacted);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		compaction.start();
+		try (FileOutputStream out = new FileOutputStream(active, true)) {
+			out.write(record("g", 7));
+			out.write(deletion("d"));
+			out.write(record("a", 12));
+		}
+		compaction.join();
+
+		Map<String, Byte> compactedValues = new HashMap<>();
+		compactedValues.put("a", (byte) 11);
+		compactedValues.put("d", (byte) 4);
+		compactedValues.put("e", (byte) 5);
+		assertEquals(compactedValues, replay(compacted));
+		// Only the last record of each variable that is still set is kept
+		assertEquals(BinaryLogStorage.HEADER_SIZE + record("a", 11).length + record("d", 4).length + record("e", 5).length,
+			compacted.length());
+
+		// Reloading the compacted base file and the active segment gives the same variables as the full log
+		Files.move(compacted.toPath(), base.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Map<String, Byte> values = new HashMap<>();
+		values.put("a", (byte) 12);
+		values.put("e", (byte) 5);
+		values.put("f", (byte) 6);
+		values.put("g", (byte) 7);
+		assertEquals(values, replay(base, active));
+	}
+
+	private static byte[] record(String name, int value) {
+		return BinaryLogStorage.encodeRecord(name, "byte", new byte[] {(byte) value});
+	}
+
+	private static byte[] deletion(String name) {
+		return BinaryLogStorage.encodeRecord(name, null, null);
+	}
+
+	private static void writeLog(File log, byte[]... records) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(log))) {
+			BinaryLogStorage.writeHeader(out);
+			for (byte[] record : records)
+				out.write(record);
+		}
+	}
+
+	/**
+	 * Replays the given log files like the storage does when loading.
+	 */
+	private static Map<String, Byte> replay(File... logFiles) throws IOException {
+		Map<String, Byte> values = new HashMap<>();
+		for (File logFile : logFiles) {
+			BinaryLogStorage.readLog(logFile, (variable, position) -> {
+				SerializedVariable.Value value = variable.value;
+				if (value == null) {
+					values.remove(variable.name);
+				} else {
+					values.put(variable.name, value.data[0]);
+				}
+			});
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LocalVariablesFrameTest {
+
+	@Test
+	public void testSlots() {
+		LocalVariableSlots slots = new LocalVariableSlots();
+		int x = slots.assignSlot("x");
+		int y = slots.assignSlot("y");
+		assertEquals(x, slots.assignSlot("x"));
+
+		LocalVariablesFrame frame = new LocalVariablesFrame();
+		// Set by name before the slots are known, e.g. a function parameter
+		frame.setVariable("x", null, 1);
+		frame.setVariable("x::1", null, 2);
+
+		frame.setVariable(slots, y, "y", 3);
+		assertEquals(1, frame.getVariable(slots, x, "x"));
+		assertEquals(1, frame.getVariable("x"));
+		assertEquals(2, frame.getVariable("x::1"));
+		assertEquals(3, frame.getVariable(new String[] {"y"}));
+
+		frame.setVariable("y", null, null);
+		assertNull(frame.getVariable(slots, y, "y"));
+	}
+
+	@Test
+	public void testOtherSlots() {
+		LocalVariableSlots slots = new LocalVariableSlots();
+		LocalVariableSlots otherSlots = new LocalVariableSlots();
+		int x = slots.assignSlot("x");
+		otherSlots.assignSlot("z");
+		int otherX = otherSlots.assignSlot("x");
+
+		LocalVariablesFrame frame = new LocalVariablesFrame();
+		frame.setVariable(slots, x, "x", 1);
+		assertEquals(1, frame.getVariable(otherSlots, otherX, "x"));
+		frame.setVariable(otherSlots, otherX, "x", 2);
+		assertEquals(2, frame.getVariable(slots, x, "x"));
+
+		LocalVariablesFrame copy = frame.copy();
+		copy.setVariable(slots, x, "x", 3);
+		assertEquals(2, frame.getVariable(slots, x, "x"));
+		assertEquals(3, copy.getVariable("x"));
+	}
+
+}
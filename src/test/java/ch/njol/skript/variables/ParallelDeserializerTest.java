@@ -0,0 +1,65 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.variables.SerializedVariable.Value;
+
+public class ParallelDeserializerTest {
+
+	@Test
+	public void testDeletionAfterValue() {
+		Value value = Classes.serialize("value");
+		assert value != null;
+
+		// Applied like variableLoaded does while loading
+		Map<String, Object> loaded = new LinkedHashMap<>();
+		try (ParallelDeserializer deserializer = new ParallelDeserializer((name, deserialized) -> {
+			if (deserialized == null) {
+				loaded.remove(name);
+			} else {
+				loaded.put(name, deserialized);
+			}
+		}, false)) {
+			// Enough values for the deleted ones to be deserialized by the workers
+			for (int i = 0; i < 5000; i++)
+				deserializer.add("var::" + i, value.type, () -> value.data);
+			deserializer.addDeletion("var::0");
+			deserializer.addDeletion("var::4999");
+			deserializer.add("var::4999", value.type, () -> value.data);
+			deserializer.addDeletion("var::4998");
+			deserializer.flush();
+			assertEquals(0, deserializer.getFailed().size());
+		}
+
+		assertFalse(loaded.containsKey("var::0"));
+		assertEquals("value", loaded.get("var::4999"));
+		assertFalse(loaded.containsKey("var::4998"));
+		assertEquals(4998, loaded.size());
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TrieVariablesMapTest {
+
+	@Test
+	public void testSingleVariables() {
+		TrieVariablesMap map = new TrieVariablesMap();
+		map.setVariable("a", 1);
+		map.setVariable("a::b", 2);
+		map.setVariable("a::b::c", 3);
+
+		assertEquals(1, map.getVariable("a"));
+		assertEquals(2, map.getVariable("a::b"));
+		assertEquals(3, map.getVariable("a::b::c"));
+		assertNull(map.getVariable("a::c"));
+		assertEquals(3, map.size());
+
+		map.setVariable("a::b", null);
+		assertNull(map.getVariable("a::b"));
+		assertEquals(3, map.getVariable("a::b::c"));
+		assertEquals(2, map.size());
+
+		map.setVariable("a::b::c", null);
+		assertNull(map.getVariable("a::b::*"));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testListVariables() {
+		TrieVariablesMap map = new TrieVariablesMap();
+		map.setVariable("list", "self");
+		map.setVariable("list::10", 10);
+		map.setVariable("list::2", 2);
+		map.setVariable("list::1", 1);
+		map.setVariable("list::1::x", "x");
+
+		Map<String, Object> list = (Map<String, Object>) map.getVariable("list::*");
+		assert list != null;
+		List<String> keys = new ArrayList<>(list.keySet());
+		assertEquals(List.of("1", "2", "10"), keys.subList(1, keys.size()));
+		assertEquals("self", list.get(null));
+		assertEquals(1, ((Map<String, Object>) list.get("1")).get(null));
+		assertEquals(5, map.size());
+
+		map.setVariable("list::*", null);
+		assertNull(map.getVariable("list::*"));
+		assertEquals("self", map.getVariable("list"));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testMatchesHashTreeMap() {
+		VariablesMap trie = new TrieVariablesMap();
+		VariablesMap hashTree = new HashTreeVariablesMap();
+		String[] names = {"a", "a::1", "a::2::x", "b::1", "b::2", "a::2", "c"};
+		for (int i = 0; i < names.length; i++) {
+			trie.setVariable(names[i], i);
+			hashTree.setVariable(names[i], i);
+		}
+		trie.setVariable("b::*", null);
+		hashTree.setVariable("b::*", null);
+		trie.setVariable("a::1", null);
+		hashTree.setVariable("a::1", null);
+
+		for (String name : names)
+			assertEquals(name, hashTree.getVariable(name), trie.getVariable(name));
+		assertEquals(hashTree.size(), trie.size());
+
+		for (String name : names)
+			assertEquals(name, hashTree.getVariable(name), trie.getVariable(Variables.splitVariableName(name)));
+		assertEquals(hashTree.getVariable("a::*"), trie.getVariable(new String[] {"a", "*"}));
+		assertEquals(trie.getVariable("a::*"), hashTree.getVariable(new String[] {"a", "*"}));
+
+		VariablesMap copy = trie.copy();
+		copy.setVariable("a", null);
+		assertEquals(0, trie.getVariable("a"));
+		assertEquals(trie.size() - 1, copy.size());
+	}
+
+	@Test
+	public void testSetByParts() {
+		VariablesMap trie = new TrieVariablesMap();
+		VariablesMap hashTree = new HashTreeVariablesMap();
+		String[] names = {"a", "a::1", "a::2::x", "b::1", "b::2", "a::2", "b::*", "a::1"};
+		for (int i = 0; i < names.length; i++) {
+			Object value = names[i].endsWith("*") || i == names.length - 1 ? null : i;
+			trie.setVariable(Variables.splitVariableName(names[i]), value);
+			hashTree.setVariable(Variables.splitVariableName(names[i]), value);
+		}
+
+		for (String name : names)
+			assertEquals(name, hashTree.getVariable(name), trie.getVariable(name));
+		assertEquals(hashTree.getVariable("a::*"), trie.getVariable("a::*"));
+		assertEquals(hashTree.size(), trie.size());
+	}
+
+	@Test
+	public void testCopyOnWrite() {
+		VariablesMap map = new TrieVariablesMap();
+		map.setVariable("list::1::a", 1);
+		map.setVariable("list::2", 2);
+		map.setVariable("other::1", 3);
+
+		VariablesMap copy = map.copy();
+		copy.setVariable("list::1::a", 4);
+		map.setVariable("list::2", 5);
+		copy.setVariable("list::3", 6);
+		map.setVariable("other::*", null);
+
+		assertEquals(1, map.getVariable("list::1::a"));
+		assertEquals(4, copy.getVariable("list::1::a"));
+		assertEquals(5, map.getVariable("list::2"));
+		assertEquals(2, copy.getVariable("list::2"));
+		assertNull(map.getVariable("list::3"));
+		assertNull(map.getVariable("other::1"));
+		assertEquals(3, copy.getVariable("other::1"));
+		assertEquals(2, map.size());
+		assertEquals(4, copy.size());
+
+		// Copies of copies
+		VariablesMap copyOfCopy = copy.copy();
+		copyOfCopy.setVariable("list::1::a", null);
+		assertEquals(4, copy.getVariable("list::1::a"));
+		assertNull(copyOfCopy.getVariable("list::1::a"));
+	}
+
+}
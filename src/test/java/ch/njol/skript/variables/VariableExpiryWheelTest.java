@@ -0,0 +1,106 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class VariableExpiryWheelTest {
+
+	@Test
+	public void testExpiry() {
+		VariableExpiryWheel wheel = new VariableExpiryWheel(1000);
+		wheel.schedule("a", 1001);
+		wheel.schedule("b", 1000 + VariableExpiryWheel.SLOTS);
+		wheel.schedule("c", 1000 + VariableExpiryWheel.SLOTS * VariableExpiryWheel.SLOTS + 7);
+		wheel.schedule("d", 500);
+
+		assertEquals(List.of("a", "d"), sorted(wheel.advance(1001)));
+		assertEquals(List.of(), wheel.advance(999 + VariableExpiryWheel.SLOTS));
+		assertEquals(List.of("b"), wheel.advance(1000 + VariableExpiryWheel.SLOTS));
+		assertEquals(List.of(), wheel.advance(1006 + VariableExpiryWheel.SLOTS * VariableExpiryWheel.SLOTS));
+		assertEquals(List.of("c"), wheel.advance(1007 + VariableExpiryWheel.SLOTS * VariableExpiryWheel.SLOTS));
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void testReplaceAndCancel() {
+		VariableExpiryWheel wheel = new VariableExpiryWheel(0);
+		wheel.schedule("a", 10);
+		wheel.schedule("a", 20);
+		wheel.schedule("b", 10);
+		assertTrue(wheel.cancel("b"));
+
+		assertEquals(List.of(), wheel.advance(15));
+		assertEquals(List.of("a"), wheel.advance(25));
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void testAllDeadlines() {
+		long maxDelay = 1L << 25; // Beyond the highest level
+		long[] delays = {1, 63, 64, 65, 4095, 4096, 4097, 262143, 262144, 300000, 16777215, 16777216, maxDelay};
+		for (long start : new long[] {0, 1, 63, 4097, 123456789}) {
+			VariableExpiryWheel wheel = new VariableExpiryWheel(start);
+			for (long delay : delays)
+				wheel.schedule("" + delay, start + delay);
+
+			// Advance in uneven steps, checking each variable expires exactly when it should
+			long tick = start;
+			int expired = 0;
+			while (expired < delays.length) {
+				long next = tick + 1 + (tick % 3) * 1000;
+				for (String name : wheel.advance(next)) {
+					long deadline = start + Long.parseLong(name);
+					assertTrue(name + " from " + start, deadline > tick && deadline <= next);
+					expired++;
+				}
+				tick = next;
+			}
+			assertTrue(wheel.isEmpty());
+		}
+	}
+
+	@Test
+	public void testExactHigherLevelDeadlines() {
+		long[] delays = {64, 128, 4096, 4160, 262144};
+		for (long delay : delays) {
+			VariableExpiryWheel wheel = new VariableExpiryWheel(0);
+			wheel.schedule("a", delay);
+
+			// Reaching the slot of a higher level at the deadline must expire the variable at once
+			assertEquals(List.of(), wheel.advance(delay - 1));
+			assertEquals("delay " + delay, List.of("a"), wheel.advance(delay));
+			assertTrue(wheel.isEmpty());
+		}
+	}
+
+	private static List<String> sorted(List<String> list) {
+		List<String> copy = new ArrayList<>(list);
+		Collections.sort(copy);
+		return copy;
+	}
+
+}
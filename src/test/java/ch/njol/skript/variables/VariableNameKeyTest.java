@@ -0,0 +1,70 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+public class VariableNameKeyTest {
+
+	@Test
+	public void testEqualsFullName() {
+		String[] names = {"a", "a::b", "list::1::x", "a::", "::", "ünïcödé::☃", ""};
+		for (String name : names) {
+			VariableNameKey key = new VariableNameKey(name.split("::", -1));
+			assertEquals(name, name.hashCode(), key.hashCode());
+			assertTrue(name, key.equals(name));
+			assertEquals(name, key.toString());
+		}
+
+		VariableNameKey key = new VariableNameKey(new String[] {"a", "b"});
+		assertFalse(key.equals("a:b"));
+		assertFalse(key.equals("a::bc"));
+		assertFalse(key.equals("ab"));
+		assertTrue(key.equals(new VariableNameKey(new String[] {"a", "b"})));
+	}
+
+	@Test
+	public void testLookup() {
+		Map<String, Object> hashMap = new HashMap<>();
+		Map<String, Object> concurrentMap = new ConcurrentHashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			hashMap.put("list::" + i, i);
+			concurrentMap.put("list::" + i, i);
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			VariableNameKey key = new VariableNameKey(new String[] {"list", "" + i});
+			assertEquals(i, hashMap.get(key));
+			assertEquals(i, concurrentMap.get(key));
+		}
+		assertNull(hashMap.get(new VariableNameKey(new String[] {"list", "1000"})));
+		assertEquals(1, hashMap.remove(new VariableNameKey(new String[] {"list", "1"})));
+		assertNull(hashMap.get("list::1"));
+	}
+
+}
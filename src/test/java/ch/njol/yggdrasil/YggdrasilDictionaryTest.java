@@ -0,0 +1,117 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.yggdrasil;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class YggdrasilDictionaryTest {
+
+	public static class ExampleObject implements YggdrasilSerializable {
+		String someString;
+		int[] someNumbers;
+		ExampleObject other;
+	}
+
+	private static byte[] write(Yggdrasil yggdrasil, Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (YggdrasilOutputStream out = yggdrasil.newOutputStream(bytes)) {
+			out.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static ExampleObject read(Yggdrasil yggdrasil, byte[] data) throws IOException {
+		try (YggdrasilInputStream in = yggdrasil.newInputStream(new ByteArrayInputStream(data))) {
+			return (ExampleObject) in.readObject();
+		}
+	}
+
+	private static ExampleObject example() {
+		ExampleObject object = new ExampleObject();
+		object.someString = "a";
+		object.someNumbers = new int[] {1, 2};
+		object.other = new ExampleObject();
+		object.other.someString = "b";
+		return object;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Yggdrasil yggdrasil = new Yggdrasil((short) 1);
+		yggdrasil.registerSingleClass(ExampleObject.class, "ExampleObject");
+		YggdrasilDictionary dictionary = new YggdrasilDictionary();
+		Yggdrasil withDictionary = yggdrasil.withDictionary(dictionary);
+
+		byte[] plain = write(yggdrasil, example());
+		byte[] compact = write(withDictionary, example());
+		assertTrue(compact.length < plain.length);
+		assertEquals(Set.of("ExampleObject", "someString", "someNumbers", "other"), new HashSet<>(dictionary.getStrings(0)));
+
+		ExampleObject object = read(withDictionary, compact);
+		assertEquals("a", object.someString);
+		assertArrayEquals(new int[] {1, 2}, object.someNumbers);
+		assertEquals("b", object.other.someString);
+
+		// Streams of the old version can still be read
+		assertEquals("b", read(withDictionary, plain).other.someString);
+
+		// A dictionary loaded again can read the same streams
+		YggdrasilDictionary loaded = new YggdrasilDictionary();
+		List<String> strings = dictionary.getStrings(0);
+		for (int i = 0; i < strings.size(); i++)
+			loaded.add(i, strings.get(i));
+		assertEquals("b", read(yggdrasil.withDictionary(loaded), compact).other.someString);
+
+		try {
+			read(new Yggdrasil(), compact);
+			fail();
+		} catch (StreamCorruptedException ignored) {}
+	}
+
+	@Test
+	public void testAdd() throws IOException {
+		YggdrasilDictionary dictionary = new YggdrasilDictionary();
+		dictionary.add(0, "first");
+		dictionary.add(0, "first");
+		assertEquals(1, dictionary.getID("second"));
+		try {
+			dictionary.add(1, "other");
+			fail();
+		} catch (StreamCorruptedException ignored) {}
+		try {
+			dictionary.add(3, "third");
+			fail();
+		} catch (StreamCorruptedException ignored) {}
+		assertEquals(2, dictionary.size());
+	}
+
+}
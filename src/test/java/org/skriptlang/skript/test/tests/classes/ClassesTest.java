@@ -48,8 +48,8 @@ public class ClassesTest {
 	public void serializationTest() {
 		Object[] random = {
 				// Java
-				(byte) 127, (short) 2000, -1600000, 1L << 40, -1.5f, 13.37,
-				"String",
+				(byte) 127, (short) 2000, -1600000, 1L << 40, -1.5f, 13.37, true, 'c',
+				"String", "", new String(new char[0x8000]).replace('\0', 's'), // long strings have a longer length prefix
 				
 				// Skript
 				SkriptColor.BLACK, StructureType.RED_MUSHROOM, WeatherType.THUNDER,